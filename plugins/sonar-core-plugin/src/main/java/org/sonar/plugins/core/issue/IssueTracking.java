@@ -22,10 +22,14 @@ package org.sonar.plugins.core.issue;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.issue.internal.DefaultIssue;
@@ -41,6 +45,11 @@ import java.util.*;
 
 public class IssueTracking implements BatchExtension {
 
+  /**
+   * Maximum number of pairs of lines compared when recognizing blocks
+   */
+  private static final int MAX_LINE_PAIRS = 250000;
+
   private final LastSnapshots lastSnapshots;
   private final SonarIndex index;
 
@@ -94,19 +103,10 @@ public class IssueTracking implements BatchExtension {
     }
 
     // Match the key of the issue. (For manual issues)
-    for (DefaultIssue newIssue : newIssues) {
-      mapIssue(newIssue, findLastIssueWithSameKey(newIssue, result.unmatchedForRule(newIssue.ruleKey())), result);
-    }
+    mapIssuesWithSameSearchKey(newIssues, SearchKey.KEY, result);
 
     // Try first to match issues on same rule with same line and with same checksum (but not necessarily with same message)
-    for (DefaultIssue newIssue : newIssues) {
-      if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameLineAndChecksum(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
-      }
-    }
+    mapIssuesWithSameSearchKey(newIssues, SearchKey.LINE_AND_CHECKSUM, result);
   }
 
   private void mapNewissues(String referenceSource, Collection<DefaultIssue> newIssues, String source, IssueTrackingResult result) {
@@ -157,52 +157,104 @@ public class IssueTracking implements BatchExtension {
       }
     }
 
-    // Check if remaining number of lines exceeds threshold
-    if (lastIssuesByLines.keySet().size() * newIssuesByLines.keySet().size() < 250000) {
-      List<LinePair> possibleLinePairs = Lists.newArrayList();
-      for (Integer oldLine : lastIssuesByLines.keySet()) {
-        for (Integer newLine : newIssuesByLines.keySet()) {
-          int weight = rec.computeLengthOfMaximalBlock(oldLine - 1, newLine - 1);
-          possibleLinePairs.add(new LinePair(oldLine, newLine, weight));
+    mapLinePairs(hashedReference, hashedSource, hashedComparator, rec, lastIssuesByLines, newIssuesByLines, result);
+  }
+
+  /**
+   * Maps issues of pairs of lines, by decreasing length of the block of identical lines that contains them,
+   * then by increasing distance between lines.
+   */
+  private void mapLinePairs(HashedSequence<StringText> hashedReference, HashedSequence<StringText> hashedSource, HashedSequenceComparator<StringText> hashedComparator,
+                            ViolationTrackingBlocksRecognizer rec, Multimap<Integer, IssueDto> lastIssuesByLines, Multimap<Integer, DefaultIssue> newIssuesByLines,
+                            IssueTrackingResult result) {
+    int[] oldLines = Ints.toArray(lastIssuesByLines.keySet());
+    int[] newLines = Ints.toArray(newIssuesByLines.keySet());
+
+    // Only pairs of identical lines belong to a block, so other pairs are not weighted
+    Multimap<Integer, Integer> newLineIndexesByHash = ArrayListMultimap.create();
+    for (int j = 0; j < newLines.length; j++) {
+      newLineIndexesByHash.put(hashedComparator.hash(hashedSource, newLines[j] - 1), j);
+    }
+    long weightedPairsCount = 0;
+    for (int oldLine : oldLines) {
+      weightedPairsCount += newLineIndexesByHash.get(hashedComparator.hash(hashedReference, oldLine - 1)).size();
+    }
+
+    // Check if number of pairs exceeds threshold
+    if (weightedPairsCount < MAX_LINE_PAIRS) {
+      List<LinePair> weightedPairs = Lists.newArrayList();
+      for (int oldLine : oldLines) {
+        for (Integer j : newLineIndexesByHash.get(hashedComparator.hash(hashedReference, oldLine - 1))) {
+          int weight = rec.computeLengthOfMaximalBlock(oldLine - 1, newLines[j] - 1);
+          if (weight > 0) {
+            weightedPairs.add(new LinePair(oldLine, newLines[j], weight));
+          }
         }
       }
-      Collections.sort(possibleLinePairs, LINE_PAIR_COMPARATOR);
-      for (LinePair linePair : possibleLinePairs) {
+      Collections.sort(weightedPairs, LINE_PAIR_COMPARATOR);
+      for (LinePair linePair : weightedPairs) {
         // High probability that lineA has been moved to lineB, so we can map all Issues on lineA to all Issues on lineB
         map(newIssuesByLines.get(linePair.lineB), lastIssuesByLines.get(linePair.lineA), result);
       }
     }
+
+    // Check if remaining number of lines exceeds threshold
+    if ((long) oldLines.length * newLines.length < MAX_LINE_PAIRS) {
+      int pairsCount = oldLines.length * newLines.length;
+      // Pairs are encoded as distance between lines then position of pair, and sorted without being instantiated.
+      // Pairs which have already been mapped are mapped again, but without effect.
+      long[] pairs = new long[pairsCount];
+      for (int i = 0; i < oldLines.length; i++) {
+        for (int j = 0; j < newLines.length; j++) {
+          int pair = i * newLines.length + j;
+          pairs[pair] = (long) Math.abs(oldLines[i] - newLines[j]) * pairsCount + pair;
+        }
+      }
+      Arrays.sort(pairs);
+      for (long encodedPair : pairs) {
+        int pair = (int) (encodedPair % pairsCount);
+        map(newIssuesByLines.get(newLines[pair % newLines.length]), lastIssuesByLines.get(oldLines[pair / newLines.length]), result);
+      }
+    }
   }
 
   private void mapIssuesOnSameRule(Collection<DefaultIssue> newIssues, IssueTrackingResult result) {
     // Try then to match issues on same rule with same message and with same checksum
-    for (DefaultIssue newIssue : newIssues) {
-      if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameChecksumAndMessage(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
-      }
-    }
+    mapIssuesWithSameSearchKey(newIssues, SearchKey.CHECKSUM_AND_MESSAGE, result);
 
     // Try then to match issues on same rule with same line and with same message
-    for (DefaultIssue newIssue : newIssues) {
-      if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameLineAndMessage(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
-      }
-    }
+    mapIssuesWithSameSearchKey(newIssues, SearchKey.LINE_AND_MESSAGE, result);
 
     // Last check: match issue if same rule and same checksum but different line and different message
     // See SONAR-2812
+    mapIssuesWithSameSearchKey(newIssues, SearchKey.CHECKSUM, result);
+  }
+
+  /**
+   * Each new issue which is not mapped yet is mapped to the first unmatched last issue with the same rule and the same search key.
+   * Last issues are indexed by search key, so that new issues are not compared to each last issue.
+   */
+  private void mapIssuesWithSameSearchKey(Collection<DefaultIssue> newIssues, SearchKey searchKey, IssueTrackingResult result) {
+    // keep the order of last issues, as the first matching one is selected
+    Multimap<List<Object>, IssueDto> lastIssuesBySearchKey = LinkedListMultimap.create();
+    Set<RuleKey> ruleKeys = Sets.newHashSet();
     for (DefaultIssue newIssue : newIssues) {
-      if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameChecksum(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
+      if (isNotAlreadyMapped(newIssue, result) && ruleKeys.add(newIssue.ruleKey())) {
+        for (IssueDto lastIssue : result.unmatchedForRule(newIssue.ruleKey())) {
+          lastIssuesBySearchKey.put(Arrays.<Object>asList(newIssue.ruleKey(), searchKey.of(lastIssue)), lastIssue);
+        }
+      }
+    }
+
+    if (!lastIssuesBySearchKey.isEmpty()) {
+      for (DefaultIssue newIssue : newIssues) {
+        if (isNotAlreadyMapped(newIssue, result)) {
+          Iterator<IssueDto> lastIssues = lastIssuesBySearchKey.get(Arrays.<Object>asList(newIssue.ruleKey(), searchKey.of(newIssue))).iterator();
+          if (lastIssues.hasNext()) {
+            mapIssue(newIssue, lastIssues.next(), result);
+            lastIssues.remove();
+          }
+        }
       }
     }
   }
@@ -240,84 +292,82 @@ public class IssueTracking implements BatchExtension {
     return lastIssuesByLines;
   }
 
-  private IssueDto findLastIssueWithSameChecksum(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameChecksum(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
+  private boolean isNotAlreadyMapped(IssueDto pastIssue, IssueTrackingResult result) {
+    return result.unmatched().contains(pastIssue);
   }
 
-  private IssueDto findLastIssueWithSameLineAndMessage(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameLine(newIssue, pastIssue) && isSameMessage(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
+  private boolean isNotAlreadyMapped(DefaultIssue newIssue, IssueTrackingResult result) {
+    return !result.isMatched(newIssue);
   }
 
-  private IssueDto findLastIssueWithSameChecksumAndMessage(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameChecksum(newIssue, pastIssue) && isSameMessage(newIssue, pastIssue)) {
-        return pastIssue;
-      }
+  private void mapIssue(DefaultIssue issue, @Nullable IssueDto ref, IssueTrackingResult result) {
+    if (ref != null) {
+      result.setMatch(issue, ref);
     }
-    return null;
   }
 
-  private IssueDto findLastIssueWithSameLineAndChecksum(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameLine(newIssue, pastIssue) && isSameChecksum(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
   }
 
-  private IssueDto findLastIssueWithSameKey(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameKey(newIssue, pastIssue)) {
-        return pastIssue;
+  /**
+   * Fields, in addition to rule, that must be equal for a new issue to match a last issue
+   */
+  private abstract static class SearchKey {
+    abstract Object of(DefaultIssue newIssue);
+
+    abstract Object of(IssueDto lastIssue);
+
+    static final SearchKey KEY = new SearchKey() {
+      Object of(DefaultIssue newIssue) {
+        return newIssue.key();
       }
-    }
-    return null;
-  }
 
-  private boolean isNotAlreadyMapped(IssueDto pastIssue, IssueTrackingResult result) {
-    return result.unmatched().contains(pastIssue);
-  }
+      Object of(IssueDto lastIssue) {
+        return lastIssue.getKee();
+      }
+    };
 
-  private boolean isNotAlreadyMapped(DefaultIssue newIssue, IssueTrackingResult result) {
-    return !result.isMatched(newIssue);
-  }
+    static final SearchKey LINE_AND_CHECKSUM = new SearchKey() {
+      Object of(DefaultIssue newIssue) {
+        return Arrays.asList(newIssue.line(), newIssue.checksum());
+      }
 
-  private boolean isSameChecksum(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(pastIssue.getChecksum(), newIssue.checksum());
-  }
+      Object of(IssueDto lastIssue) {
+        return Arrays.asList(lastIssue.getLine(), lastIssue.getChecksum());
+      }
+    };
 
-  private boolean isSameLine(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(pastIssue.getLine(), newIssue.line());
-  }
+    static final SearchKey CHECKSUM_AND_MESSAGE = new SearchKey() {
+      Object of(DefaultIssue newIssue) {
+        return Arrays.asList(newIssue.checksum(), newIssue.message());
+      }
 
-  private boolean isSameMessage(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(newIssue.message(), pastIssue.getMessage());
-  }
+      Object of(IssueDto lastIssue) {
+        return Arrays.asList(lastIssue.getChecksum(), lastIssue.getMessage());
+      }
+    };
 
-  private boolean isSameKey(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(newIssue.key(), pastIssue.getKee());
-  }
+    static final SearchKey LINE_AND_MESSAGE = new SearchKey() {
+      Object of(DefaultIssue newIssue) {
+        return Arrays.asList(newIssue.line(), newIssue.message());
+      }
 
-  private void mapIssue(DefaultIssue issue, @Nullable IssueDto ref, IssueTrackingResult result) {
-    if (ref != null) {
-      result.setMatch(issue, ref);
-    }
-  }
+      Object of(IssueDto lastIssue) {
+        return Arrays.asList(lastIssue.getLine(), lastIssue.getMessage());
+      }
+    };
 
-  @Override
-  public String toString() {
-    return getClass().getSimpleName();
+    static final SearchKey CHECKSUM = new SearchKey() {
+      Object of(DefaultIssue newIssue) {
+        return newIssue.checksum();
+      }
+
+      Object of(IssueDto lastIssue) {
+        return lastIssue.getChecksum();
+      }
+    };
   }
 
   private static class LinePair {
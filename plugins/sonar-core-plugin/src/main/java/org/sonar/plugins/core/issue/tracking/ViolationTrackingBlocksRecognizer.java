@@ -20,6 +20,7 @@
 package org.sonar.plugins.core.issue.tracking;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
 import org.sonar.plugins.core.issue.tracking.HashedSequence;
 import org.sonar.plugins.core.issue.tracking.HashedSequenceComparator;
 import org.sonar.plugins.core.issue.tracking.StringText;
@@ -27,12 +28,19 @@ import org.sonar.plugins.core.issue.tracking.StringTextComparator;
 
 import javax.annotation.Nullable;
 
+import java.util.Map;
+
 public class ViolationTrackingBlocksRecognizer {
 
   private final HashedSequence<StringText> a;
   private final HashedSequence<StringText> b;
   private final HashedSequenceComparator<StringText> cmp;
 
+  /**
+   * Bounds of the last block found on each diagonal, i.e. for each difference between line numbers of the two texts
+   */
+  private final Map<Integer, int[]> lastBlockByDiagonal = Maps.newHashMap();
+
   @VisibleForTesting
   public ViolationTrackingBlocksRecognizer(String referenceSource, String source) {
     this.a = HashedSequence.wrap(new StringText(referenceSource), StringTextComparator.IGNORE_WHITESPACE);
@@ -62,23 +70,22 @@ public class ViolationTrackingBlocksRecognizer {
     if (!cmp.equals(a, startA, b, startB)) {
       return 0;
     }
-    int length = 0;
-    int ai = startA;
-    int bi = startB;
-    while (ai < a.length() && bi < b.length() && cmp.equals(a, ai, b, bi)) {
-      ai++;
-      bi++;
-      length++;
-    }
-    ai = startA;
-    bi = startB;
-    while (ai >= 0 && bi >= 0 && cmp.equals(a, ai, b, bi)) {
-      ai--;
-      bi--;
-      length++;
+    // all the pairs of lines of a block are on the same diagonal and share its length
+    int diagonal = startB - startA;
+    int[] block = lastBlockByDiagonal.get(diagonal);
+    if (block == null || startA < block[0] || block[1] <= startA) {
+      int end = startA;
+      while (end < a.length() && end + diagonal < b.length() && cmp.equals(a, end, b, end + diagonal)) {
+        end++;
+      }
+      int start = startA;
+      while (start > 0 && start + diagonal > 0 && cmp.equals(a, start - 1, b, start - 1 + diagonal)) {
+        start--;
+      }
+      block = new int[] {start, end};
+      lastBlockByDiagonal.put(diagonal, block);
     }
-    // Note that position (startA, startB) was counted twice
-    return length - 1;
+    return block[1] - block[0];
   }
 
 }
@@ -19,9 +19,9 @@
  */
 package org.sonar.plugins.core.timemachine;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.sonar.api.batch.Decorator;
@@ -29,18 +29,28 @@ import org.sonar.api.batch.DecoratorBarriers;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.batch.DependsUpon;
-import org.sonar.api.batch.TimeMachine;
-import org.sonar.api.batch.TimeMachineQuery;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.model.MeasureModel;
+import org.sonar.api.database.model.ResourceModel;
+import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
 import org.sonar.batch.components.TimeMachineConfiguration;
 import org.sonar.core.DryRunIncompatible;
 
+import javax.persistence.Query;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @DryRunIncompatible
 @DependedUpon(DecoratorBarriers.END_OF_TIME_MACHINE)
@@ -48,14 +58,22 @@ public class TendencyDecorator implements Decorator {
 
   public static final String PROP_DAYS_DESCRIPTION = "Number of days the tendency should be calculated on.";
 
-  private TimeMachine timeMachine;
-  private TimeMachineQuery query;
+  static final int PAGE_SIZE = 10000;
+
+  private DatabaseSession session;
   private TendencyAnalyser analyser;
   private TimeMachineConfiguration configuration;
   private List<Metric> metrics;
 
-  public TendencyDecorator(TimeMachine timeMachine, MetricFinder metricFinder, TimeMachineConfiguration configuration) {
-    this.timeMachine = timeMachine;
+  /**
+   * Past values of the module and of its directories which are not decorated yet : resource id -> metric id -> values sorted by date
+   */
+  private final Map<Integer, Map<Integer, PastValues>> pastValuesByResourceId = Maps.newHashMap();
+  private final Set<Integer> loadedMetricIds = Sets.newHashSet();
+  private final Set<Integer> decoratedResourceIds = Sets.newHashSet();
+
+  public TendencyDecorator(DatabaseSession session, MetricFinder metricFinder, TimeMachineConfiguration configuration) {
+    this.session = session;
     this.analyser = new TendencyAnalyser();
     this.configuration = configuration;
     this.metrics = Lists.newLinkedList();
@@ -66,9 +84,9 @@ public class TendencyDecorator implements Decorator {
     }
   }
 
-  TendencyDecorator(TimeMachine timeMachine, TimeMachineQuery query, TendencyAnalyser analyser, TimeMachineConfiguration configuration) {
-    this.timeMachine = timeMachine;
-    this.query = query;
+  TendencyDecorator(DatabaseSession session, List<Metric> metrics, TendencyAnalyser analyser, TimeMachineConfiguration configuration) {
+    this.session = session;
+    this.metrics = metrics;
     this.analyser = analyser;
     this.configuration = configuration;
   }
@@ -78,51 +96,149 @@ public class TendencyDecorator implements Decorator {
     return metrics;
   }
 
-  protected TimeMachineQuery initQuery(Project project) {
-    int days = configuration.getTendencyPeriodInDays();
-
-    query = new TimeMachineQuery(null) // resource is set after
-        .setFrom(DateUtils.addDays(project.getAnalysisDate(), -days))
-        .setToCurrentAnalysis(true)
-        .setMetrics(metrics);
-    return query;
-  }
-
-  protected TimeMachineQuery resetQuery(Project project, Resource resource) {
-    if (query == null) {
-      initQuery(project);
-    }
-    query.setResource(resource);
-    return query;
-  }
-
   public boolean shouldExecuteOnProject(Project project) {
     return true;
   }
 
   public void decorate(Resource resource, DecoratorContext context) {
     if (shouldDecorateResource(resource)) {
-      resetQuery(context.getProject(), resource);
-      List<Object[]> fields = timeMachine.getMeasuresFields(query);
-      ListMultimap<Metric, Double> valuesPerMetric = ArrayListMultimap.create();
-      for (Object[] field : fields) {
-        valuesPerMetric.put((Metric) field[1], (Double) field[2]);
-      }
-
-      for (Metric metric : query.getMetrics()) {
+      Map<Integer, Measure> measuresByMetricId = Maps.newLinkedHashMap();
+      for (Metric metric : metrics) {
         Measure measure = context.getMeasure(metric);
         if (measure != null) {
-          List<Double> values = valuesPerMetric.get(metric);
-          values.add(measure.getValue());
-
-          measure.setTendency(analyser.analyseLevel(valuesPerMetric.get(metric)));
-          context.saveMeasure(measure);
+          measuresByMetricId.put(metric.getId(), measure);
         }
       }
+
+      Map<Integer, PastValues> pastValuesByMetricId = null;
+      if (resource.getId() != null) {
+        loadPastValues(context.getProject(), measuresByMetricId.keySet());
+        // each resource is decorated once, so its values are not kept in memory
+        pastValuesByMetricId = pastValuesByResourceId.remove(resource.getId());
+        decoratedResourceIds.add(resource.getId());
+      }
+
+      for (Map.Entry<Integer, Measure> entry : measuresByMetricId.entrySet()) {
+        Measure measure = entry.getValue();
+        PastValues pastValues = pastValuesByMetricId != null ? pastValuesByMetricId.get(entry.getKey()) : null;
+        List<Double> values = pastValues != null ? pastValues.toList() : Lists.<Double>newArrayList();
+        values.add(measure.getValue());
+
+        measure.setTendency(analyser.analyseLevel(values));
+        context.saveMeasure(measure);
+      }
     }
   }
 
   private boolean shouldDecorateResource(Resource resource) {
     return StringUtils.equals(Scopes.PROJECT, resource.getScope()) || StringUtils.equals(Scopes.DIRECTORY, resource.getScope());
   }
+
+  /**
+   * Past values of the module and of all its directories are loaded at once, instead of one query per resource. Only the metrics
+   * which have a measure on the decorated resource are loaded, and only when they were not loaded yet, so that all the metrics
+   * are usually loaded by the first resource. Rows are read by pages of measure ids, so that each page is selected by index
+   * and not by offset, and the values of the resources which are already decorated are not kept.
+   */
+  private void loadPastValues(Project project, Collection<Integer> metricIds) {
+    Set<Integer> missingMetricIds = Sets.newHashSet(metricIds);
+    missingMetricIds.removeAll(loadedMetricIds);
+    if (project.getId() == null || missingMetricIds.isEmpty()) {
+      return;
+    }
+    loadedMetricIds.addAll(missingMetricIds);
+
+    Query query = session.createQuery("SELECT m.id, s.resourceId, m.metricId, m.value, s.createdAt"
+        + " FROM " + MeasureModel.class.getSimpleName() + " m, " + Snapshot.class.getSimpleName() + " s, " + ResourceModel.class.getSimpleName() + " r"
+        + " WHERE m.snapshotId=s.id AND s.resourceId=r.id"
+        + " AND (r.id=:projectId OR (r.rootId=:projectId AND r.scope=:directory))"
+        + " AND s.status=:status AND s.qualifier<>:lib"
+        + " AND m.characteristic IS NULL AND m.personId IS NULL AND m.ruleId IS NULL AND m.rulePriority IS NULL"
+        + " AND m.metricId IN (:metricIds) AND s.createdAt>=:from AND s.createdAt<=:to"
+        + " AND m.id>:lastId"
+        + " ORDER BY m.id")
+        .setParameter("projectId", project.getId())
+        .setParameter("directory", Scopes.DIRECTORY)
+        .setParameter("status", Snapshot.STATUS_PROCESSED)
+        .setParameter("lib", Qualifiers.LIBRARY)
+        .setParameter("metricIds", missingMetricIds)
+        .setParameter("from", DateUtils.addDays(project.getAnalysisDate(), -configuration.getTendencyPeriodInDays()))
+        .setParameter("to", project.getAnalysisDate())
+        .setMaxResults(PAGE_SIZE);
+
+    long lastId = 0L;
+    List<Object[]> rows;
+    do {
+      rows = query.setParameter("lastId", lastId).getResultList();
+      for (Object[] row : rows) {
+        lastId = (Long) row[0];
+        Integer resourceId = (Integer) row[1];
+        if (!decoratedResourceIds.contains(resourceId)) {
+          getPastValues(resourceId, (Integer) row[2]).add(((Date) row[4]).getTime(), (Double) row[3]);
+        }
+      }
+    } while (rows.size() == PAGE_SIZE);
+  }
+
+  private PastValues getPastValues(Integer resourceId, Integer metricId) {
+    Map<Integer, PastValues> pastValuesByMetricId = pastValuesByResourceId.get(resourceId);
+    if (pastValuesByMetricId == null) {
+      pastValuesByMetricId = Maps.newHashMap();
+      pastValuesByResourceId.put(resourceId, pastValuesByMetricId);
+    }
+    PastValues pastValues = pastValuesByMetricId.get(metricId);
+    if (pastValues == null) {
+      pastValues = new PastValues();
+      pastValuesByMetricId.put(metricId, pastValues);
+    }
+    return pastValues;
+  }
+
+  /**
+   * Values are not boxed. Null values are kept as NaN, because their position is taken into account by {@link TendencyAnalyser}.
+   * Values are added by measure id, and sorted by date of snapshot when read.
+   */
+  private static final class PastValues {
+    private long[] dates = new long[4];
+    private double[] values = new double[4];
+    private int size = 0;
+
+    void add(long date, Double value) {
+      if (size == values.length) {
+        dates = Arrays.copyOf(dates, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      dates[size] = date;
+      values[size] = value != null ? value : Double.NaN;
+      size++;
+    }
+
+    List<Double> toList() {
+      sortByDate();
+      List<Double> list = Lists.newArrayListWithCapacity(size + 1);
+      for (int i = 0; i < size; i++) {
+        list.add(Double.isNaN(values[i]) ? null : values[i]);
+      }
+      return list;
+    }
+
+    /**
+     * Insertion sort, which is stable so that values of the same date stay sorted by measure id. Measure ids usually
+     * follow the dates of snapshots, so values are already sorted.
+     */
+    private void sortByDate() {
+      for (int i = 1; i < size; i++) {
+        long date = dates[i];
+        double value = values[i];
+        int j = i - 1;
+        while (j >= 0 && dates[j] > date) {
+          dates[j + 1] = dates[j];
+          values[j + 1] = values[j];
+          j--;
+        }
+        dates[j + 1] = date;
+        values[j + 1] = value;
+      }
+    }
+  }
 }
@@ -36,6 +36,7 @@ import org.sonar.core.issue.db.IssueDto;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.fest.assertions.Assertions.assertThat;
@@ -313,6 +314,33 @@ public class IssueTrackingTest {
     assertThat(result.matching(newIssue5)).isSameAs(referenceIssue1);
   }
 
+  @Test
+  public void should_track_issues_based_on_blocks_recognition_on_large_file() throws Exception {
+    // too many lines with issues to compare all the pairs of lines
+    StringBuilder referenceSource = new StringBuilder();
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      source.append("added line ").append(i).append('\n');
+    }
+    List<IssueDto> referenceIssues = newArrayList();
+    List<DefaultIssue> newIssues = newArrayList();
+    for (int i = 1; i <= 1000; i++) {
+      String line = "statement " + (i % 100) + "\n";
+      referenceSource.append(line);
+      source.append(line);
+      referenceIssues.add(newReferenceIssue("old message " + i, i, "squid", "AvoidCycle", "old checksum " + i));
+      newIssues.add(newDefaultIssue("new message " + i, i + 10, RuleKey.of("squid", "AvoidCycle"), "new checksum " + i));
+    }
+    when(lastSnapshots.getSource(project)).thenReturn(referenceSource.toString());
+
+    IssueTrackingResult result = new IssueTrackingResult();
+    tracking.mapIssues(newIssues, referenceIssues, source.toString(), project, result);
+
+    for (int i = 0; i < newIssues.size(); i++) {
+      assertThat(result.matching(newIssues.get(i))).isSameAs(referenceIssues.get(i));
+    }
+  }
+
   private static String load(String name) throws IOException {
     return Resources.toString(IssueTrackingTest.class.getResource("IssueTrackingTest/" + name + ".txt"), Charsets.UTF_8);
   }
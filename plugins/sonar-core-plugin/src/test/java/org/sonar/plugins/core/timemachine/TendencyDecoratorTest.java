@@ -19,16 +19,17 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.batch.DecoratorContext;
-import org.sonar.api.batch.TimeMachine;
-import org.sonar.api.batch.TimeMachineQuery;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.components.TimeMachineConfiguration;
+import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -40,23 +41,32 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.matchers.JUnitMatchers.hasItems;
 import static org.mockito.Mockito.*;
 
-public class TendencyDecoratorTest {
+public class TendencyDecoratorTest extends AbstractDbUnitTestCase {
+
+  private Metric lines = new Metric.Builder("ncloc", "Lines", Metric.ValueType.INT).create().setId(1);
+  private Metric coverage = new Metric.Builder("coverage", "Coverage", Metric.ValueType.PERCENT).create().setId(2);
+  private Project project;
+  private TendencyAnalyser analyser;
+  private TendencyDecorator decorator;
+
+  @Before
+  public void setUp() throws ParseException {
+    project = new Project("group:artifact");
+    project.setId(1);
+    project.setAnalysisDate(date("2009-12-25"));
+    analyser = mock(TendencyAnalyser.class);
+    decorator = new TendencyDecorator(getSession(), Arrays.asList(lines, coverage), analyser, newConf());
+  }
 
   @Test
-  public void initQuery() throws ParseException {
-    Project project = mock(Project.class);
-    when(project.getAnalysisDate()).thenReturn(date("2009-12-25"));
-
+  public void shouldDependUponNumericMetrics() {
     MetricFinder metricFinder = mock(MetricFinder.class);
     when(metricFinder.findAll()).thenReturn(Arrays.asList(CoreMetrics.LINES, CoreMetrics.COVERAGE, CoreMetrics.COVERAGE_LINE_HITS_DATA, CoreMetrics.PROFILE));
 
     TendencyDecorator decorator = new TendencyDecorator(null, metricFinder, newConf());
 
-    TimeMachineQuery query = decorator.initQuery(project);
-    assertThat(query.getMetrics().size(), is(2));
-    assertThat(query.getMetrics(), hasItems(CoreMetrics.LINES, CoreMetrics.COVERAGE));
-    assertThat(query.getFrom(), is(date("2009-11-25")));
-    assertThat(query.isToCurrentAnalysis(), is(true));
+    assertThat(decorator.dependsUponMetrics().size(), is(2));
+    assertThat(decorator.dependsUponMetrics(), hasItems(CoreMetrics.LINES, CoreMetrics.COVERAGE));
   }
 
   private TimeMachineConfiguration newConf() {
@@ -66,48 +76,97 @@ public class TendencyDecoratorTest {
   }
 
   @Test
-  public void includeCurrentMeasures() throws ParseException {
-    TendencyAnalyser analyser = mock(TendencyAnalyser.class);
-    TimeMachineQuery query = new TimeMachineQuery(null).setMetrics(CoreMetrics.LINES, CoreMetrics.COVERAGE);
-    TimeMachine timeMachine = mock(TimeMachine.class);
-
-    when(timeMachine.getMeasuresFields(query)).thenReturn(Arrays.<Object[]>asList(
-        new Object[]{date("2009-12-01"), CoreMetrics.LINES, 1200.0},
-        new Object[]{date("2009-12-01"), CoreMetrics.COVERAGE, 80.5},
-        new Object[]{date("2009-12-02"), CoreMetrics.LINES, 1300.0},
-        new Object[]{date("2009-12-02"), CoreMetrics.COVERAGE, 79.6},
-        new Object[]{date("2009-12-15"), CoreMetrics.LINES, 1150.0}
-    ));
+  public void includeCurrentMeasures() {
+    setupData("shared");
 
-    DecoratorContext context = mock(DecoratorContext.class);
-    when(context.getMeasure(CoreMetrics.LINES)).thenReturn(new Measure(CoreMetrics.LINES, 1400.0));
-    when(context.getMeasure(CoreMetrics.COVERAGE)).thenReturn(new Measure(CoreMetrics.LINES, 90.0));
+    DecoratorContext context = mockContext();
+    when(context.getMeasure(lines)).thenReturn(new Measure(lines, 1400.0));
+    when(context.getMeasure(coverage)).thenReturn(new Measure(coverage, 90.0));
 
-    TendencyDecorator decorator = new TendencyDecorator(timeMachine, query, analyser, newConf());
-    decorator.decorate(new JavaPackage("org.foo"), context);
+    decorator.decorate(project, context);
 
-    verify(analyser).analyseLevel(Arrays.asList(1200.0, 1300.0, 1150.0, 1400.0));
-    verify(analyser).analyseLevel(Arrays.asList(80.5, 79.6, 90.0));
+    verify(analyser).analyseLevel(Arrays.asList(1200.0, 1300.0, 1400.0));
+    verify(analyser).analyseLevel(Arrays.asList(80.5, 90.0));
   }
 
   @Test
-  public void noTendencyIfNoCurrentMeasures() throws ParseException {
-    TendencyAnalyser analyser = mock(TendencyAnalyser.class);
-    TimeMachineQuery query = new TimeMachineQuery(null).setMetrics(CoreMetrics.LINES, CoreMetrics.COVERAGE);
-    TimeMachine timeMachine = mock(TimeMachine.class);
+  public void sortPastMeasuresByDate() {
+    setupData("olderMeasuresInsertedLater");
 
-    when(timeMachine.getMeasuresFields(query)).thenReturn(Arrays.<Object[]>asList(
-        new Object[]{date("2009-12-01"), CoreMetrics.LINES, 1200.0},
-        new Object[]{date("2009-12-02"), CoreMetrics.LINES, 1300.0}
-    ));
+    DecoratorContext context = mockContext();
+    when(context.getMeasure(lines)).thenReturn(new Measure(lines, 1400.0));
 
-    DecoratorContext context = mock(DecoratorContext.class);
-    TendencyDecorator decorator = new TendencyDecorator(timeMachine, query, analyser, newConf());
+    decorator.decorate(project, context);
+
+    verify(analyser).analyseLevel(Arrays.asList(1200.0, 1300.0, 1400.0));
+  }
+
+  @Test
+  public void loadPastMeasuresOfDirectories() {
+    setupData("shared");
+
+    JavaPackage directory = new JavaPackage("org.sonar");
+    directory.setId(2);
+    DecoratorContext directoryContext = mockContext();
+    when(directoryContext.getMeasure(lines)).thenReturn(new Measure(lines, 130.0));
+    decorator.decorate(directory, directoryContext);
+
+    verify(analyser).analyseLevel(Arrays.asList(110.0, 120.0, 130.0));
+
+    DecoratorContext projectContext = mockContext();
+    when(projectContext.getMeasure(lines)).thenReturn(new Measure(lines, 1400.0));
+    decorator.decorate(project, projectContext);
+
+    verify(analyser).analyseLevel(Arrays.asList(1200.0, 1300.0, 1400.0));
+  }
+
+  @Test
+  public void loadPastMeasuresOfMetricsMissingOnPreviousResources() {
+    setupData("shared");
+
+    JavaPackage directory = new JavaPackage("org.sonar");
+    directory.setId(2);
+    DecoratorContext directoryContext = mockContext();
+    when(directoryContext.getMeasure(lines)).thenReturn(new Measure(lines, 130.0));
+    decorator.decorate(directory, directoryContext);
+
+    DecoratorContext projectContext = mockContext();
+    when(projectContext.getMeasure(lines)).thenReturn(new Measure(lines, 1400.0));
+    when(projectContext.getMeasure(coverage)).thenReturn(new Measure(coverage, 90.0));
+    decorator.decorate(project, projectContext);
+
+    verify(analyser).analyseLevel(Arrays.asList(110.0, 120.0, 130.0));
+    verify(analyser).analyseLevel(Arrays.asList(1200.0, 1300.0, 1400.0));
+    verify(analyser).analyseLevel(Arrays.asList(80.5, 90.0));
+  }
+
+  @Test
+  public void noPastMeasuresOfNewDirectory() {
+    setupData("shared");
+
+    DecoratorContext context = mockContext();
+    when(context.getMeasure(lines)).thenReturn(new Measure(lines, 130.0));
+    decorator.decorate(new JavaPackage("org.foo"), context);
+
+    verify(analyser).analyseLevel(Arrays.asList(130.0));
+  }
+
+  @Test
+  public void noTendencyIfNoCurrentMeasures() {
+    setupData("shared");
+
+    DecoratorContext context = mockContext();
     decorator.decorate(new JavaPackage("org.foo"), context);
 
     verify(analyser, never()).analyseLevel(anyList());
   }
 
+  private DecoratorContext mockContext() {
+    DecoratorContext context = mock(DecoratorContext.class);
+    when(context.getProject()).thenReturn(project);
+    return context;
+  }
+
   private Date date(String date) throws ParseException {
     return new SimpleDateFormat("yyyy-MM-dd").parse(date);
   }
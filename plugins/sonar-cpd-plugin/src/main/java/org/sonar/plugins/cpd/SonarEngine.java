@@ -21,7 +21,6 @@
 package org.sonar.plugins.cpd;
 
 import com.google.common.collect.Iterables;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +42,7 @@ import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.utils.SonarException;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.BlockChunker;
+import org.sonar.duplications.detector.original.SortedRunsCloneDetectionAlgorithm;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.CloneIndex;
@@ -58,18 +58,17 @@ import org.sonar.plugins.cpd.index.SonarDuplicationsIndex;
 import javax.annotation.Nullable;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -84,6 +83,18 @@ public class SonarEngine extends CpdEngine {
    */
   private static final int TIMEOUT = 5 * 60;
 
+  /**
+   * Number of threads used to index and to detect duplications of several files concurrently. Default value is 1.
+   */
+  public static final String THREADS_PROPERTY = "sonar.cpd.threads";
+
+  /**
+   * Algorithm used to detect duplications: "suffixtree" (default) or "sortedruns", which provides the same results as the
+   * original index-based algorithm with a running time linear in the number of candidate blocks.
+   */
+  public static final String DETECTOR_PROPERTY = "sonar.cpd.detector";
+  public static final String SORTED_RUNS_DETECTOR = "sortedruns";
+
   private final IndexFactory indexFactory;
   private final ModuleFileSystem fileSystem;
   private final PathResolver pathResolver;
@@ -124,77 +135,176 @@ public class SonarEngine extends CpdEngine {
   private SonarDuplicationsIndex createIndex(Project project, List<File> sourceFiles) {
     final SonarDuplicationsIndex index = indexFactory.create(project);
 
-    TokenChunker tokenChunker = JavaTokenProducer.build();
-    StatementChunker statementChunker = JavaStatementBuilder.build();
-    BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
-
-    for (File file : sourceFiles) {
-      LOG.debug("Populating index from {}", file);
-      Resource<?> resource = getResource(file);
-      String resourceKey = getFullKey(project, resource);
-
-      List<Statement> statements;
-
-      Reader reader = null;
-      try {
-        reader = new InputStreamReader(new FileInputStream(file), fileSystem.sourceCharset());
-        statements = statementChunker.chunk(tokenChunker.chunk(reader));
-      } catch (FileNotFoundException e) {
-        throw new SonarException(e);
-      } finally {
-        IOUtils.closeQuietly(reader);
+    int threads = threads();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    // chunkers are not thread-safe
+    ThreadLocal<Chunkers> chunkers = new ThreadLocal<Chunkers>() {
+      @Override
+      protected Chunkers initialValue() {
+        return new Chunkers();
       }
-
-      List<Block> blocks = blockChunker.chunk(resourceKey, statements);
-      index.insert(resource, blocks);
+    };
+    try {
+      LinkedList<PendingChunking> pendings = new LinkedList<PendingChunking>();
+      for (File file : sourceFiles) {
+        if (pendings.size() >= threads) {
+          insert(index, pendings.removeFirst());
+        }
+        LOG.debug("Populating index from {}", file);
+        Resource<?> resource = getResource(file);
+        String resourceKey = getFullKey(project, resource);
+        Future<List<Block>> future = executorService.submit(new ChunkingTask(chunkers, file, resourceKey, fileSystem.sourceCharset()));
+        pendings.add(new PendingChunking(resource, future));
+      }
+      while (!pendings.isEmpty()) {
+        insert(index, pendings.removeFirst());
+      }
+    } finally {
+      executorService.shutdown();
     }
 
     return index;
   }
 
+  /**
+   * Blocks are inserted on the calling thread, in the same order as source files.
+   */
+  private static void insert(SonarDuplicationsIndex index, PendingChunking pending) {
+    try {
+      index.insert(pending.resource, pending.future.get());
+    } catch (InterruptedException e) {
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SonarException) {
+        throw (SonarException) e.getCause();
+      }
+      throw new SonarException(e);
+    }
+  }
+
+  private static class PendingChunking {
+    private final Resource<?> resource;
+    private final Future<List<Block>> future;
+
+    PendingChunking(Resource<?> resource, Future<List<Block>> future) {
+      this.resource = resource;
+      this.future = future;
+    }
+  }
+
+  static class ChunkingTask implements Callable<List<Block>> {
+    private final ThreadLocal<Chunkers> chunkers;
+    private final File file;
+    private final String resourceKey;
+    private final Charset charset;
+
+    ChunkingTask(ThreadLocal<Chunkers> chunkers, File file, String resourceKey, Charset charset) {
+      this.chunkers = chunkers;
+      this.file = file;
+      this.resourceKey = resourceKey;
+      this.charset = charset;
+    }
+
+    public List<Block> call() {
+      return chunkers.get().chunk(file, resourceKey, charset);
+    }
+  }
+
+  static class Chunkers {
+    private final TokenChunker tokenChunker = JavaTokenProducer.build();
+    private final StatementChunker statementChunker = JavaStatementBuilder.build();
+    private final BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+
+    List<Block> chunk(File file, String resourceKey, Charset charset) {
+      List<Statement> statements = statementChunker.chunk(tokenChunker.chunk(file, charset));
+      return blockChunker.chunk(resourceKey, statements);
+    }
+  }
+
   private void detect(SonarDuplicationsIndex index, SensorContext context, Project project, List<File> sourceFiles) {
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    int threads = threads();
+    boolean sortedRuns = SORTED_RUNS_DETECTOR.equals(settings.getString(DETECTOR_PROPERTY));
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
     try {
+      // at most one pending detection per thread, so that each task starts as soon as it is submitted
+      LinkedList<PendingDetection> pendings = new LinkedList<PendingDetection>();
       for (File file : sourceFiles) {
+        if (pendings.size() >= threads) {
+          saveDetection(context, pendings.removeFirst());
+        }
         LOG.debug("Detection of duplications for {}", file);
         Resource<?> resource = getResource(file);
         String resourceKey = getFullKey(project, resource);
 
         Collection<Block> fileBlocks = index.getByResource(resource, resourceKey);
-
-        List<CloneGroup> clones;
-        try {
-          clones = executorService.submit(new Task(index, fileBlocks)).get(TIMEOUT, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-          clones = null;
-          LOG.warn("Timeout during detection of duplications for " + file, e);
-        } catch (InterruptedException e) {
-          throw new SonarException(e);
-        } catch (ExecutionException e) {
-          throw new SonarException(e);
-        }
-
-        save(context, resource, clones);
+        pendings.add(new PendingDetection(file, resource, executorService.submit(new Task(index, fileBlocks, sortedRuns))));
+      }
+      while (!pendings.isEmpty()) {
+        saveDetection(context, pendings.removeFirst());
       }
     } finally {
       executorService.shutdown();
     }
   }
 
+  /**
+   * Measures are saved on the calling thread, in the same order as source files.
+   */
+  private static void saveDetection(SensorContext context, PendingDetection pending) {
+    List<CloneGroup> clones;
+    try {
+      long remainingTime = TimeUnit.SECONDS.toMillis(TIMEOUT) - (System.currentTimeMillis() - pending.submittedAt);
+      clones = pending.future.get(Math.max(0L, remainingTime), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      clones = null;
+      pending.future.cancel(true);
+      LOG.warn("Timeout during detection of duplications for " + pending.file, e);
+    } catch (InterruptedException e) {
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      throw new SonarException(e);
+    }
+
+    save(context, pending.resource, clones);
+  }
+
+  private static class PendingDetection {
+    private final File file;
+    private final Resource<?> resource;
+    private final Future<List<CloneGroup>> future;
+    private final long submittedAt;
+
+    PendingDetection(File file, Resource<?> resource, Future<List<CloneGroup>> future) {
+      this.file = file;
+      this.resource = resource;
+      this.future = future;
+      this.submittedAt = System.currentTimeMillis();
+    }
+  }
+
   static class Task implements Callable<List<CloneGroup>> {
     private final CloneIndex index;
     private final Collection<Block> fileBlocks;
+    private final boolean sortedRuns;
 
-    public Task(CloneIndex index, Collection<Block> fileBlocks) {
+    public Task(CloneIndex index, Collection<Block> fileBlocks, boolean sortedRuns) {
       this.index = index;
       this.fileBlocks = fileBlocks;
+      this.sortedRuns = sortedRuns;
     }
 
     public List<CloneGroup> call() {
+      if (sortedRuns) {
+        return SortedRunsCloneDetectionAlgorithm.detect(index, fileBlocks);
+      }
       return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
     }
   }
 
+  private int threads() {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
+
   protected Resource<?> getResource(File file) {
     String relativePath = pathResolver.relativePath(fileSystem.sourceDirs(), file).path();
     return JavaFile.fromRelativePath(relativePath, false);
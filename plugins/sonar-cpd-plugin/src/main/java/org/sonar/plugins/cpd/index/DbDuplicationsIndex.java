@@ -21,6 +21,8 @@ package org.sonar.plugins.cpd.index;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -30,14 +32,29 @@ import org.sonar.core.duplication.DuplicationUnitDto;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Candidates of cross-project detection are loaded for the whole module with a single query, when the first file is
+ * prepared, and are kept in a compact form: resource keys are replaced by integer ids and hashes are packed into longs.
+ * Once loaded the index is never modified, so {@link #getByHash(ByteArray)} can be called concurrently.
+ * <p>
+ * Blocks of the module are buffered and written to the database by large batches, instead of one batch per file.
+ * </p>
+ */
 public class DbDuplicationsIndex {
 
-  private final Map<ByteArray, Collection<Block>> cache = Maps.newHashMap();
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  /**
+   * Maximum number of buffered units before they are written to the database.
+   */
+  static final int MAX_PENDING_UNITS = 10000;
 
   private final ResourcePersister resourcePersister;
   private final int currentProjectSnapshotId;
@@ -46,6 +63,10 @@ public class DbDuplicationsIndex {
 
   private DuplicationDao dao;
 
+  private final List<DuplicationUnitDto> pendingUnits = Lists.newArrayList();
+
+  private volatile Candidates candidates;
+
   public DbDuplicationsIndex(ResourcePersister resourcePersister, Project currentProject, DuplicationDao dao) {
     this.dao = dao;
     this.resourcePersister = resourcePersister;
@@ -60,50 +81,44 @@ public class DbDuplicationsIndex {
     return resourcePersister.getSnapshotOrFail(resource).getId();
   }
 
+  /**
+   * Loads candidates of all the files of the module. Must be called after insertion of blocks of all files,
+   * subsequent calls have no effect.
+   */
   public void prepareCache(Resource resource) {
-    int resourceSnapshotId = getSnapshotIdFor(resource);
-    List<DuplicationUnitDto> units = dao.selectCandidates(resourceSnapshotId, lastSnapshotId, languageKey);
-    cache.clear();
-    // TODO Godin: maybe remove conversion of units to blocks?
-    for (DuplicationUnitDto unit : units) {
-      String hash = unit.getHash();
-      String resourceKey = unit.getResourceKey();
-      int indexInFile = unit.getIndexInFile();
-      int startLine = unit.getStartLine();
-      int endLine = unit.getEndLine();
-
-      // TODO Godin: in fact we could work directly with id instead of key - this will allow to decrease memory consumption
-      Block block = Block.builder()
-          .setResourceId(resourceKey)
-          .setBlockHash(new ByteArray(hash))
-          .setIndexInFile(indexInFile)
-          .setLines(startLine, endLine)
-          .build();
-
-      // Group blocks by hash
-      Collection<Block> sameHash = cache.get(block.getBlockHash());
-      if (sameHash == null) {
-        sameHash = Lists.newArrayList();
-        cache.put(block.getBlockHash(), sameHash);
-      }
-      sameHash.add(block);
+    if (candidates == null) {
+      synchronized (this) {
+        if (candidates == null) {
+          // blocks of the module are required to find candidates
+          flush();
+          candidates = loadCandidates();
+        }
+      }
     }
   }
 
+  private Candidates loadCandidates() {
+    final CandidatesBuilder builder = new CandidatesBuilder();
+    dao.selectCandidatesOfProject(currentProjectSnapshotId, lastSnapshotId, languageKey, new ResultHandler() {
+      public void handleResult(ResultContext context) {
+        builder.add((DuplicationUnitDto) context.getResultObject());
+      }
+    });
+    return builder.build();
+  }
+
   public Collection<Block> getByHash(ByteArray hash) {
-    Collection<Block> result = cache.get(hash);
-    if (result != null) {
-      return result;
-    } else {
+    Candidates loaded = candidates;
+    if (loaded == null) {
       return Collections.emptyList();
     }
+    return loaded.getByHash(hash);
   }
 
   public void insert(Resource resource, Collection<Block> blocks) {
     int resourceSnapshotId = getSnapshotIdFor(resource);
 
     // TODO Godin: maybe remove conversion of blocks to units?
-    List<DuplicationUnitDto> units = Lists.newArrayList();
     for (Block block : blocks) {
       DuplicationUnitDto unit = new DuplicationUnitDto(
           currentProjectSnapshotId,
@@ -112,10 +127,207 @@ public class DbDuplicationsIndex {
           block.getIndexInFile(),
           block.getStartLine(),
           block.getEndLine());
-      units.add(unit);
+      pendingUnits.add(unit);
+    }
+    if (pendingUnits.size() >= MAX_PENDING_UNITS) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes buffered units to the database.
+   */
+  void flush() {
+    if (!pendingUnits.isEmpty()) {
+      dao.insert(pendingUnits);
+      pendingUnits.clear();
+    }
+  }
+
+  /**
+   * Hashes produced by {@link org.sonar.duplications.block.BlockChunker} have 8 bytes, so they are packed into a long.
+   */
+  private static long pack(int[] ints) {
+    return ((long) ints[0] << 32) | (ints[1] & 0xFFFFFFFFL);
+  }
+
+  private static final class CandidatesBuilder {
+    private final Map<String, Integer> resourceIds = Maps.newHashMap();
+    private final List<String> resourceKeys = Lists.newArrayList();
+
+    private int size;
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    private int[] resources = new int[INITIAL_CAPACITY];
+    private int[] indexesInFile = new int[INITIAL_CAPACITY];
+    private int[] startLines = new int[INITIAL_CAPACITY];
+    private int[] endLines = new int[INITIAL_CAPACITY];
+
+    void add(DuplicationUnitDto unit) {
+      if (unit.getHash().length() != 16) {
+        // can't match hashes of blocks of current module
+        return;
+      }
+      ensureCapacity();
+      hashes[size] = pack(new ByteArray(unit.getHash()).toIntArray());
+      resources[size] = resourceId(unit.getResourceKey());
+      indexesInFile[size] = unit.getIndexInFile();
+      startLines[size] = unit.getStartLine();
+      endLines[size] = unit.getEndLine();
+      size++;
+    }
+
+    private int resourceId(String resourceKey) {
+      Integer id = resourceIds.get(resourceKey);
+      if (id == null) {
+        id = resourceKeys.size();
+        resourceIds.put(resourceKey, id);
+        resourceKeys.add(resourceKey);
+      }
+      return id;
+    }
+
+    private void ensureCapacity() {
+      if (size == hashes.length) {
+        int newCapacity = hashes.length * 2;
+        hashes = Arrays.copyOf(hashes, newCapacity);
+        resources = Arrays.copyOf(resources, newCapacity);
+        indexesInFile = Arrays.copyOf(indexesInFile, newCapacity);
+        startLines = Arrays.copyOf(startLines, newCapacity);
+        endLines = Arrays.copyOf(endLines, newCapacity);
+      }
     }
 
-    dao.insert(units);
+    Candidates build() {
+      // sort positions by hash, then copy columns in that order
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      sort(order, 0, size - 1);
+      Candidates result = new Candidates(size, resourceKeys.toArray(new String[resourceKeys.size()]));
+      for (int i = 0; i < size; i++) {
+        int from = order[i];
+        result.hashes[i] = hashes[from];
+        result.resources[i] = resources[from];
+        result.indexesInFile[i] = indexesInFile[from];
+        result.startLines[i] = startLines[from];
+        result.endLines[i] = endLines[from];
+      }
+      return result;
+    }
+
+    /**
+     * Quicksort of positions, without boxing. Positions are compared by hash, then by position, so that the sort is
+     * deterministic and candidates with the same hash stay in the order of the database.
+     */
+    private void sort(int[] order, int from, int to) {
+      while (to - from >= INSERTION_SORT_THRESHOLD) {
+        int pivot = order[medianOfThree(order, from, from + (to - from) / 2, to)];
+        int i = from;
+        int j = to;
+        while (i <= j) {
+          while (compare(order[i], pivot) < 0) {
+            i++;
+          }
+          while (compare(order[j], pivot) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(order, i, j);
+            i++;
+            j--;
+          }
+        }
+        // recurse on the smaller part, so that the depth of the stack is logarithmic
+        if (j - from < to - i) {
+          sort(order, from, j);
+          from = i;
+        } else {
+          sort(order, i, to);
+          to = j;
+        }
+      }
+      for (int i = from + 1; i <= to; i++) {
+        for (int j = i; j > from && compare(order[j - 1], order[j]) > 0; j--) {
+          swap(order, j - 1, j);
+        }
+      }
+    }
+
+    private int medianOfThree(int[] order, int a, int b, int c) {
+      if (compare(order[a], order[b]) < 0) {
+        if (compare(order[b], order[c]) < 0) {
+          return b;
+        }
+        return compare(order[a], order[c]) < 0 ? c : a;
+      }
+      if (compare(order[a], order[c]) < 0) {
+        return a;
+      }
+      return compare(order[b], order[c]) < 0 ? c : b;
+    }
+
+    private int compare(int position1, int position2) {
+      long h1 = hashes[position1];
+      long h2 = hashes[position2];
+      if (h1 != h2) {
+        return h1 < h2 ? -1 : 1;
+      }
+      return position1 < position2 ? -1 : (position1 == position2 ? 0 : 1);
+    }
+
+    private static void swap(int[] order, int i, int j) {
+      int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+  }
+
+  /**
+   * Immutable columns of candidate blocks, sorted by hash.
+   */
+  private static final class Candidates {
+    private final String[] resourceKeys;
+    private final long[] hashes;
+    private final int[] resources;
+    private final int[] indexesInFile;
+    private final int[] startLines;
+    private final int[] endLines;
+
+    Candidates(int size, String[] resourceKeys) {
+      this.resourceKeys = resourceKeys;
+      this.hashes = new long[size];
+      this.resources = new int[size];
+      this.indexesInFile = new int[size];
+      this.startLines = new int[size];
+      this.endLines = new int[size];
+    }
+
+    Collection<Block> getByHash(ByteArray hash) {
+      int[] ints = hash.toIntArray();
+      if (ints.length != 2) {
+        return Collections.emptyList();
+      }
+      long packed = pack(ints);
+      int index = Arrays.binarySearch(hashes, packed);
+      if (index < 0) {
+        return Collections.emptyList();
+      }
+      while (index > 0 && hashes[index - 1] == packed) {
+        index--;
+      }
+      List<Block> result = Lists.newArrayList();
+      Block.Builder builder = Block.builder();
+      for (; index < hashes.length && hashes[index] == packed; index++) {
+        result.add(builder
+            .setResourceId(resourceKeys[resources[index]])
+            .setBlockHash(hash)
+            .setIndexInFile(indexesInFile[index])
+            .setLines(startLines[index], endLines[index])
+            .build());
+      }
+      return result;
+    }
   }
 
 }
@@ -19,19 +19,31 @@
  */
 package org.sonar.plugins.cpd;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.scan.filesystem.PathResolver.RelativePath;
 import org.sonar.api.test.IsMeasure;
+import org.sonar.duplications.block.Block;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.plugins.cpd.index.IndexFactory;
+import org.sonar.plugins.cpd.index.SonarDuplicationsIndex;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -42,13 +54,18 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class SonarEngineTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private SensorContext context;
   private Resource<?> resource;
 
@@ -171,6 +188,77 @@ public class SonarEngineTest {
           + "</g></duplications>")));
   }
 
+  @Test
+  public void should_detect_duplications_of_several_files_concurrently() throws Exception {
+    analyseCopiesOfSameFile(new Settings().setProperty(SonarEngine.THREADS_PROPERTY, 2));
+  }
+
+  @Test
+  public void should_detect_duplications_with_sorted_runs() throws Exception {
+    analyseCopiesOfSameFile(new Settings().setProperty(SonarEngine.DETECTOR_PROPERTY, SonarEngine.SORTED_RUNS_DETECTOR));
+  }
+
+  @Test
+  public void should_index_files_in_order_when_chunking_concurrently() throws Exception {
+    java.io.File dir = temp.newFolder();
+    List<java.io.File> files = Lists.newArrayList();
+    for (int i = 0; i < 8; i++) {
+      StringBuilder source = new StringBuilder("package foo;\npublic class Foo" + i + " {\n  public void bar() {\n");
+      // files of different sizes, so that chunkings do not end in the order they are submitted
+      for (int j = 0; j < (8 - i) * 20; j++) {
+        source.append("    System.out.println(\"line ").append(i).append(j).append("\");\n");
+      }
+      source.append("  }\n}\n");
+      java.io.File file = new java.io.File(dir, "foo/Foo" + i + ".java");
+      FileUtils.write(file, source.toString(), Charsets.UTF_8.name());
+      files.add(file);
+    }
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+    when(fileSystem.files(any(FileQuery.class))).thenReturn(files);
+    when(fileSystem.sourceDirs()).thenReturn(Arrays.asList(dir));
+    when(fileSystem.sourceCharset()).thenReturn(Charsets.UTF_8);
+    SonarDuplicationsIndex index = spy(new SonarDuplicationsIndex());
+    IndexFactory indexFactory = mock(IndexFactory.class);
+    when(indexFactory.create(any(Project.class))).thenReturn(index);
+
+    new SonarEngine(indexFactory, fileSystem, new PathResolver(), new Settings().setProperty(SonarEngine.THREADS_PROPERTY, 4))
+        .analyse(new Project("project"), context);
+
+    InOrder inOrder = inOrder(index);
+    for (int i = 0; i < 8; i++) {
+      List<Block> expectedBlocks = new SonarEngine.Chunkers().chunk(files.get(i), "project:foo.Foo" + i, Charsets.UTF_8);
+      assertThat(expectedBlocks).isNotEmpty();
+      inOrder.verify(index).insert(eq(new JavaFile("foo.Foo" + i)), eq(expectedBlocks));
+    }
+  }
+
+  private void analyseCopiesOfSameFile(Settings settings) throws Exception {
+    java.io.File dir = temp.newFolder();
+    StringBuilder source = new StringBuilder("package foo;\npublic class Foo {\n  public void bar() {\n");
+    for (int i = 0; i < 30; i++) {
+      source.append("    System.out.println(\"line ").append(i).append("\");\n");
+    }
+    source.append("  }\n}\n");
+    List<java.io.File> files = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      java.io.File file = new java.io.File(dir, "foo/Foo" + i + ".java");
+      FileUtils.write(file, source.toString(), Charsets.UTF_8.name());
+      files.add(file);
+    }
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+    when(fileSystem.files(any(FileQuery.class))).thenReturn(files);
+    when(fileSystem.sourceDirs()).thenReturn(Arrays.asList(dir));
+    when(fileSystem.sourceCharset()).thenReturn(Charsets.UTF_8);
+    IndexFactory indexFactory = mock(IndexFactory.class);
+    when(indexFactory.create(any(Project.class))).thenReturn(new SonarDuplicationsIndex());
+
+    new SonarEngine(indexFactory, fileSystem, new PathResolver(), settings).analyse(new Project("project"), context);
+
+    for (int i = 0; i < 4; i++) {
+      verify(context).saveMeasure(new JavaFile("foo.Foo" + i), CoreMetrics.DUPLICATED_FILES, 1d);
+    }
+  }
+
   private CloneGroup newCloneGroup(ClonePart... parts) {
     return CloneGroup.builder().setLength(0).setOrigin(parts[0]).setParts(Arrays.asList(parts)).build();
   }
@@ -0,0 +1,102 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.Project;
+import org.sonar.batch.index.ResourcePersister;
+import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DbDuplicationsIndexTest {
+
+  ResourcePersister resourcePersister = mock(ResourcePersister.class);
+  DuplicationDao dao = mock(DuplicationDao.class);
+  Project project = new Project("foo");
+  JavaFile file = new JavaFile("Foo");
+  DbDuplicationsIndex index;
+
+  @Before
+  public void setUp() {
+    Snapshot projectSnapshot = new Snapshot();
+    projectSnapshot.setId(1);
+    Snapshot fileSnapshot = new Snapshot();
+    fileSnapshot.setId(2);
+    when(resourcePersister.getSnapshotOrFail(project)).thenReturn(projectSnapshot);
+    when(resourcePersister.getSnapshotOrFail(file)).thenReturn(fileSnapshot);
+    index = new DbDuplicationsIndex(resourcePersister, project, dao);
+  }
+
+  @Test
+  public void should_insert_blocks_before_loading_candidates() {
+    index.insert(file, Arrays.asList(newBlock(1)));
+    index.insert(file, Arrays.asList(newBlock(2)));
+    verify(dao, never()).insert(anyCollection());
+
+    index.prepareCache(file);
+
+    InOrder inOrder = inOrder(dao);
+    inOrder.verify(dao).insert(anyCollection());
+    inOrder.verify(dao).selectCandidatesOfProject(anyInt(), any(Integer.class), anyString(), any(ResultHandler.class));
+  }
+
+  @Test
+  public void should_insert_blocks_by_large_batches() {
+    Block[] blocks = new Block[DbDuplicationsIndex.MAX_PENDING_UNITS];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = newBlock(i);
+    }
+    Collection<Block> fileBlocks = Arrays.asList(blocks);
+    index.insert(file, fileBlocks);
+    index.insert(file, fileBlocks);
+
+    verify(dao, times(2)).insert(anyCollection());
+  }
+
+  private static Block newBlock(int indexInFile) {
+    return Block.builder()
+        .setResourceId("foo:Foo")
+        .setBlockHash(new ByteArray(1L))
+        .setIndexInFile(indexInFile)
+        .setLines(1, 2)
+        .build();
+  }
+
+}
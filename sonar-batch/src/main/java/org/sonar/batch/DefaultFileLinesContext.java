@@ -22,7 +22,6 @@ package org.sonar.batch;
 import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.measures.FileLinesContext;
@@ -31,8 +30,6 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.PersistenceMode;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
-import org.sonar.api.utils.KeyValueFormat;
-import org.sonar.api.utils.KeyValueFormat.Converter;
 
 import java.util.Map;
 
@@ -46,9 +43,9 @@ public class DefaultFileLinesContext implements FileLinesContext {
   private final Resource resource;
 
   /**
-   * metric key -> line -> value
+   * metric key -> values by line
    */
-  private final Map<String, Map<Integer, Object>> map = Maps.newHashMap();
+  private final Map<String, LineValues> map = Maps.newHashMap();
 
   public DefaultFileLinesContext(SonarIndex index, Resource resource) {
     Preconditions.checkNotNull(index);
@@ -61,20 +58,20 @@ public class DefaultFileLinesContext implements FileLinesContext {
     Preconditions.checkNotNull(metricKey);
     Preconditions.checkArgument(line > 0);
 
-    setValue(metricKey, line, value);
+    getOrCreateLines(metricKey).setInt(line, value);
   }
 
   public Integer getIntValue(String metricKey, int line) {
     Preconditions.checkNotNull(metricKey);
     Preconditions.checkArgument(line > 0);
 
-    Map lines = map.get(metricKey);
+    LineValues lines = map.get(metricKey);
     if (lines == null) {
       // not in memory, so load
-      lines = loadData(metricKey, KeyValueFormat.newIntegerConverter());
+      lines = LineValues.parseInts(loadData(metricKey));
       map.put(metricKey, lines);
     }
-    return (Integer) lines.get(line);
+    return lines.getInt(line);
   }
 
   public void setStringValue(String metricKey, int line, String value) {
@@ -82,68 +79,63 @@ public class DefaultFileLinesContext implements FileLinesContext {
     Preconditions.checkArgument(line > 0);
     Preconditions.checkNotNull(value);
 
-    setValue(metricKey, line, value);
+    getOrCreateLines(metricKey).setString(line, value);
   }
 
   public String getStringValue(String metricKey, int line) {
     Preconditions.checkNotNull(metricKey);
     Preconditions.checkArgument(line > 0);
 
-    Map lines = map.get(metricKey);
+    LineValues lines = map.get(metricKey);
     if (lines == null) {
       // not in memory, so load
-      lines = loadData(metricKey, KeyValueFormat.newStringConverter());
+      lines = LineValues.parseStrings(loadData(metricKey));
       map.put(metricKey, lines);
     }
-    return (String) lines.get(line);
+    return lines.getString(line);
   }
 
-  private Map<Integer, Object> getOrCreateLines(String metricKey) {
-    Map<Integer, Object> lines = map.get(metricKey);
+  private LineValues getOrCreateLines(String metricKey) {
+    LineValues lines = map.get(metricKey);
     if (lines == null) {
-      lines = Maps.newHashMap();
+      lines = new LineValues();
       map.put(metricKey, lines);
     }
     return lines;
   }
 
-  private void setValue(String metricKey, int line, Object value) {
-    getOrCreateLines(metricKey).put(line, value);
-  }
-
   public void save() {
-    for (Map.Entry<String, Map<Integer, Object>> entry : map.entrySet()) {
+    for (Map.Entry<String, LineValues> entry : map.entrySet()) {
       String metricKey = entry.getKey();
-      Map<Integer, Object> lines = entry.getValue();
+      LineValues lines = entry.getValue();
       if (shouldSave(lines)) {
-        String data = KeyValueFormat.format(lines);
         Measure measure = new Measure(metricKey)
             .setPersistenceMode(PersistenceMode.DATABASE)
-            .setData(data);
+            .setData(lines.format());
         index.addMeasure(resource, measure);
-        entry.setValue(ImmutableMap.copyOf(lines));
+        lines.setReadOnly();
       }
     }
   }
 
-  private Map loadData(String metricKey, Converter converter) {
+  private String loadData(String metricKey) {
     // FIXME no way to load measure only by key
     Measure measure = index.getMeasure(resource, new Metric(metricKey));
     if (measure == null || measure.getData() == null) {
       // no such measure
-      return ImmutableMap.of();
+      return "";
     }
-    return ImmutableMap.copyOf(KeyValueFormat.parse(measure.getData(), KeyValueFormat.newIntegerConverter(), converter));
+    return measure.getData();
   }
 
   /**
    * Checks that measure was not saved.
    *
-   * @see #loadData(String, Converter)
+   * @see #loadData(String)
    * @see #save()
    */
-  private boolean shouldSave(Map<Integer, Object> lines) {
-    return !(lines instanceof ImmutableMap);
+  private boolean shouldSave(LineValues lines) {
+    return !lines.isReadOnly();
   }
 
   @Override
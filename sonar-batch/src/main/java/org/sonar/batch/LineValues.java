@@ -0,0 +1,193 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.sonar.api.utils.KeyValueFormat;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Values of a metric by line. Lines are indexes of arrays, so that neither lines nor integer values are boxed.
+ * Values are formatted and parsed with the syntax of {@link KeyValueFormat}: "line1=value1;line2=value2".
+ *
+ * @since 3.6
+ */
+final class LineValues {
+
+  private static final int[] NO_INTS = new int[0];
+  private static final String[] NO_STRINGS = new String[0];
+  private static final int MIN_CAPACITY = 16;
+
+  private final BitSet intLines = new BitSet();
+  private int[] ints = NO_INTS;
+  private String[] strings = NO_STRINGS;
+  private boolean readOnly = false;
+
+  void setInt(int line, int value) {
+    checkWritable();
+    if (line >= ints.length) {
+      ints = Arrays.copyOf(ints, newCapacity(ints.length, line));
+    }
+    ints[line] = value;
+    intLines.set(line);
+    if (line < strings.length) {
+      strings[line] = null;
+    }
+  }
+
+  @CheckForNull
+  Integer getInt(int line) {
+    return intLines.get(line) ? ints[line] : null;
+  }
+
+  void setString(int line, String value) {
+    checkWritable();
+    if (line >= strings.length) {
+      strings = Arrays.copyOf(strings, newCapacity(strings.length, line));
+    }
+    strings[line] = value;
+    intLines.clear(line);
+  }
+
+  @CheckForNull
+  String getString(int line) {
+    return line < strings.length ? strings[line] : null;
+  }
+
+  boolean isReadOnly() {
+    return readOnly;
+  }
+
+  LineValues setReadOnly() {
+    this.readOnly = true;
+    return this;
+  }
+
+  private void checkWritable() {
+    if (readOnly) {
+      throw new UnsupportedOperationException("Values can not be modified");
+    }
+  }
+
+  private static int newCapacity(int capacity, int line) {
+    return Math.max(line + 1, Math.max(MIN_CAPACITY, capacity + (capacity >> 1)));
+  }
+
+  /**
+   * Lines are sorted in ascending order.
+   */
+  String format() {
+    StringBuilder sb = new StringBuilder();
+    int maxLine = Math.max(ints.length, strings.length);
+    for (int line = 1; line < maxLine; line++) {
+      if (intLines.get(line)) {
+        appendLine(sb, line).append(ints[line]);
+      } else if (line < strings.length && strings[line] != null) {
+        appendLine(sb, line).append(strings[line]);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static StringBuilder appendLine(StringBuilder sb, int line) {
+    if (sb.length() > 0) {
+      sb.append(KeyValueFormat.PAIR_SEPARATOR);
+    }
+    return sb.append(line).append(KeyValueFormat.FIELD_SEPARATOR);
+  }
+
+  static LineValues parseInts(String data) {
+    return parse(data, true);
+  }
+
+  static LineValues parseStrings(String data) {
+    return parse(data, false);
+  }
+
+  /**
+   * Pairs are read in place: only the string values are extracted from data. Pairs without line are ignored, as well as
+   * integer values which are blank. String values can be empty.
+   */
+  private static LineValues parse(String data, boolean intValues) {
+    LineValues values = new LineValues();
+    int length = data.length();
+    int start = 0;
+    while (start < length) {
+      int end = data.indexOf(KeyValueFormat.PAIR_SEPARATOR, start);
+      if (end < 0) {
+        end = length;
+      }
+      int separator = data.indexOf(KeyValueFormat.FIELD_SEPARATOR, start);
+      if (separator > start && separator < end) {
+        int line = parseInt(data, start, separator, -1);
+        if (line > 0) {
+          if (intValues) {
+            if (!isBlank(data, separator + 1, end)) {
+              values.setInt(line, parseInt(data, separator + 1, end, 0));
+            }
+          } else {
+            values.setString(line, data.substring(separator + 1, end));
+          }
+        }
+      }
+      start = end + 1;
+    }
+    return values.setReadOnly();
+  }
+
+  private static boolean isBlank(String data, int start, int end) {
+    for (int index = start; index < end; index++) {
+      if (!Character.isWhitespace(data.charAt(index))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@link NumberUtils#toInt(String, int)} on the given range of data, without extracting it.
+   */
+  private static int parseInt(String data, int start, int end, int defaultValue) {
+    boolean negative = data.charAt(start) == '-';
+    int index = negative ? start + 1 : start;
+    if (index == end || end - index > 9) {
+      // let Integer#parseInt deal with overflows
+      return NumberUtils.toInt(data.substring(start, end), defaultValue);
+    }
+    int result = 0;
+    for (; index < end; index++) {
+      int digit = data.charAt(index) - '0';
+      if (digit < 0 || digit > 9) {
+        return NumberUtils.toInt(data.substring(start, end), defaultValue);
+      }
+      result = result * 10 + digit;
+    }
+    return negative ? -result : result;
+  }
+
+  @Override
+  public String toString() {
+    return format();
+  }
+}
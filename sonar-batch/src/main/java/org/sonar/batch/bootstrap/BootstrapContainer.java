@@ -28,7 +28,6 @@ import org.sonar.api.platform.ComponentContainer;
 import org.sonar.api.platform.PluginMetadata;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.api.utils.UriReader;
-import org.sonar.batch.components.PastMeasuresLoader;
 import org.sonar.batch.components.PastSnapshotFinder;
 import org.sonar.batch.components.PastSnapshotFinderByDate;
 import org.sonar.batch.components.PastSnapshotFinderByDays;
@@ -40,6 +39,7 @@ import org.sonar.core.i18n.I18nManager;
 import org.sonar.core.i18n.RuleI18nManager;
 import org.sonar.core.metric.CacheMetricFinder;
 import org.sonar.core.persistence.DaoUtils;
+import org.sonar.core.persistence.DryRunCache;
 import org.sonar.core.persistence.DatabaseVersion;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.persistence.SemaphoreUpdater;
@@ -107,6 +107,7 @@ public class BootstrapContainer extends ComponentContainer {
       JpaDatabaseSession.class,
       BatchDatabaseSessionFactory.class,
       DaoUtils.getDaoClasses(),
+      DryRunCache.class,
       PurgeProfiler.class
     );
   }
@@ -132,7 +133,6 @@ public class BootstrapContainer extends ComponentContainer {
       PastSnapshotFinderByPreviousAnalysis.class,
       PastSnapshotFinderByVersion.class,
       PastSnapshotFinderByPreviousVersion.class,
-      PastMeasuresLoader.class,
       PastSnapshotFinder.class,
       DefaultModelFinder.class
     );
@@ -30,10 +30,13 @@ import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseProperties;
 import org.sonar.api.utils.SonarException;
+import org.sonar.home.cache.FileCache;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 
 import static org.sonar.api.utils.HttpDownloader.HttpException;
 
@@ -48,27 +51,30 @@ public class DryRunDatabase implements BatchComponent {
   private static final String URL = "jdbc:h2:";
   private static final String USER = "sonar";
   private static final String PASSWORD = "sonar";
+  private static final String DATABASE_FILENAME = "dryrun.h2.db";
 
   private final Settings settings;
   private final ServerClient server;
   private final TempDirectories tempDirectories;
+  private final FileCache fileCache;
   private ProjectReactor reactor;
 
-  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories, @Nullable ProjectReactor reactor) {
+  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories, FileCache fileCache, @Nullable ProjectReactor reactor) {
     this.settings = settings;
     this.server = server;
     this.tempDirectories = tempDirectories;
+    this.fileCache = fileCache;
     this.reactor = reactor;
   }
 
-  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories) {
-    this(settings, server, tempDirectories, null);
+  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories, FileCache fileCache) {
+    this(settings, server, tempDirectories, fileCache, null);
   }
 
   public void start() {
     if (settings.getBoolean(CoreProperties.DRY_RUN)) {
       LOG.info("Dry run");
-      File databaseFile = tempDirectories.getFile("", "dryrun.h2.db");
+      File databaseFile = tempDirectories.getFile("", DATABASE_FILENAME);
       downloadDatabase(databaseFile);
 
       String databasePath = StringUtils.removeEnd(databaseFile.getAbsolutePath(), ".h2.db");
@@ -78,12 +84,17 @@ public class DryRunDatabase implements BatchComponent {
 
   private void downloadDatabase(File toFile) {
     String projectKey = null;
+    String query = "";
+    if (reactor != null) {
+      projectKey = StringUtils.defaultString(reactor.getRoot().getKey());
+      query = "?project=" + projectKey;
+    }
     try {
-      if (reactor == null) {
-        server.download("/batch_bootstrap/db", toFile);
+      String hash = requestDatabaseHash("/batch_bootstrap/db_hash" + query);
+      if (StringUtils.isBlank(hash)) {
+        server.download("/batch_bootstrap/db" + query, toFile);
       } else {
-        projectKey = StringUtils.defaultString(reactor.getRoot().getKey());
-        server.download("/batch_bootstrap/db?project=" + projectKey, toFile);
+        copyFromCache(hash, "/batch_bootstrap/db" + query, toFile);
       }
       LOG.debug("Dry Run database size: {}", FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(toFile)));
     } catch (SonarException e) {
@@ -95,6 +106,39 @@ public class DryRunDatabase implements BatchComponent {
     }
   }
 
+  /**
+   * The hash of the database is available since Sonar 3.6. Returns null when the server can't provide it.
+   */
+  @CheckForNull
+  private String requestDatabaseHash(String url) {
+    try {
+      return StringUtils.trimToNull(server.request(url, false));
+    } catch (HttpException e) {
+      if (e.getResponseCode() == 404) {
+        return null;
+      }
+      throw new SonarException(e);
+    }
+  }
+
+  private void copyFromCache(String hash, final String url, File toFile) {
+    try {
+      File cachedFile = fileCache.get(DATABASE_FILENAME, hash, new FileCache.Downloader() {
+        public void download(String filename, File toCacheFile) throws IOException {
+          server.download(url, toCacheFile);
+        }
+      });
+      // the database is updated during analysis, so the cached file must not be used directly
+      FileUtils.copyFile(cachedFile, toFile);
+    } catch (IllegalStateException e) {
+      // the database has been regenerated on server side since the request of its hash
+      LOG.debug("Fail to use the cached Dry Run database", e);
+      server.download(url, toFile);
+    } catch (IOException e) {
+      throw new SonarException("Fail to copy the Dry Run database to " + toFile, e);
+    }
+  }
+
   private void replaceSettings(String databasePath) {
     settings
       .removeProperty("sonar.jdbc.schema")
@@ -28,7 +28,9 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -38,6 +40,7 @@ public class PastMeasuresLoader implements BatchExtension {
 
   private Map<Integer, Metric> metricByIds;
   private DatabaseSession session;
+  private final Map<Integer, PastMeasuresTable> tablesByRootSnapshotId = Maps.newHashMap();
 
   public PastMeasuresLoader(DatabaseSession session, MetricFinder metricFinder) {
     this(session, metricFinder.findAll());
@@ -57,13 +60,47 @@ public class PastMeasuresLoader implements BatchExtension {
     return metricByIds.values();
   }
 
+  /**
+   * Past measures of projects, modules and directories are loaded at once for the whole past analysis, when they are requested
+   * for the first time, instead of being requested resource by resource. They are kept until the end of the analysis of the project,
+   * as this component is registered in the project container.
+   */
   public List<Object[]> getPastMeasures(Resource resource, PastSnapshot projectPastSnapshot) {
     if (projectPastSnapshot != null && projectPastSnapshot.getProjectSnapshot() != null) {
+      if (Scopes.PROJECT.equals(resource.getScope()) || Scopes.DIRECTORY.equals(resource.getScope())) {
+        return getPastMeasuresTable(projectPastSnapshot.getProjectSnapshot()).getPastMeasures(resource.getEffectiveKey());
+      }
       return getPastMeasures(resource.getEffectiveKey(), projectPastSnapshot.getProjectSnapshot());
     }
     return Collections.emptyList();
   }
 
+  synchronized PastMeasuresTable getPastMeasuresTable(Snapshot projectPastSnapshot) {
+    Integer rootSnapshotId = (Integer) ObjectUtils.defaultIfNull(projectPastSnapshot.getRootId(), projectPastSnapshot.getId());
+    PastMeasuresTable table = tablesByRootSnapshotId.get(rootSnapshotId);
+    if (table == null) {
+      table = new PastMeasuresTable(selectPastMeasuresOfProjectsAndDirectories(rootSnapshotId));
+      tablesByRootSnapshotId.put(rootSnapshotId, table);
+    }
+    return table;
+  }
+
+  private List<Object[]> selectPastMeasuresOfProjectsAndDirectories(Integer rootSnapshotId) {
+    // measures are ordered by snapshot, so that the measures of a resource are consecutive
+    String sql = "select p.kee, m.metric_id, m.characteristic_id, m.person_id, m.rule_id, m.value from project_measures m, snapshots s, projects p" +
+      " where m.snapshot_id=s.id and s.project_id=p.id and m.metric_id in (:metricIds) " +
+      "       and (s.root_snapshot_id=:rootSnapshotId or s.id=:rootSnapshotId) " +
+      "       and s.status=:status and s.scope in (:scopes) and p.qualifier<>:lib" +
+      " order by s.id";
+    return session.createNativeQuery(sql)
+      .setParameter("metricIds", metricByIds.keySet())
+      .setParameter("rootSnapshotId", rootSnapshotId)
+      .setParameter("status", Snapshot.STATUS_PROCESSED)
+      .setParameter("scopes", Arrays.asList(Scopes.PROJECT, Scopes.DIRECTORY))
+      .setParameter("lib", Qualifiers.LIBRARY)
+      .getResultList();
+  }
+
   public List<Object[]> getPastMeasures(String resourceKey, Snapshot projectPastSnapshot) {
     String sql = "select m.metric_id, m.characteristic_id, m.person_id, m.rule_id, m.value from project_measures m, snapshots s" +
       " where m.snapshot_id=s.id and m.metric_id in (:metricIds) " +
@@ -0,0 +1,113 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.components;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Past measures of all the resources of a past analysis, kept in primitive columns. The measures of a resource are stored in
+ * consecutive rows, so that they can be retrieved without any database request.
+ *
+ * @since 3.6
+ */
+class PastMeasuresTable {
+
+  // ids are strictly positive
+  private static final int NULL_ID = 0;
+
+  private final Map<String, int[]> rowRangeByResourceKey = Maps.newHashMap();
+  private final int[] metricIds;
+  private final int[] characteristicIds;
+  private final int[] personIds;
+  private final int[] ruleIds;
+  private final double[] values;
+  private final boolean[] hasValues;
+
+  /**
+   * @param rows resource key, metric id, characteristic id, person id, rule id and value, grouped by resource
+   */
+  PastMeasuresTable(List<Object[]> rows) {
+    int size = rows.size();
+    metricIds = new int[size];
+    characteristicIds = new int[size];
+    personIds = new int[size];
+    ruleIds = new int[size];
+    values = new double[size];
+    hasValues = new boolean[size];
+
+    String currentResourceKey = null;
+    int firstRow = 0;
+    for (int i = 0; i < size; i++) {
+      Object[] row = rows.get(i);
+      String resourceKey = (String) row[0];
+      if (!resourceKey.equals(currentResourceKey)) {
+        addRowRange(currentResourceKey, firstRow, i);
+        currentResourceKey = resourceKey;
+        firstRow = i;
+      }
+      metricIds[i] = ((Number) row[1]).intValue();
+      characteristicIds[i] = toId(row[2]);
+      personIds[i] = toId(row[3]);
+      ruleIds[i] = toId(row[4]);
+      hasValues[i] = row[5] != null;
+      values[i] = hasValues[i] ? ((Number) row[5]).doubleValue() : 0.0;
+    }
+    addRowRange(currentResourceKey, firstRow, size);
+  }
+
+  private void addRowRange(String resourceKey, int from, int to) {
+    if (resourceKey != null) {
+      rowRangeByResourceKey.put(resourceKey, new int[] {from, to});
+    }
+  }
+
+  /**
+   * @return rows in the same format than {@link PastMeasuresLoader#getPastMeasures(String, org.sonar.api.database.model.Snapshot)}
+   */
+  List<Object[]> getPastMeasures(String resourceKey) {
+    int[] range = rowRangeByResourceKey.get(resourceKey);
+    if (range == null) {
+      return Collections.emptyList();
+    }
+    List<Object[]> result = Lists.newArrayListWithCapacity(range[1] - range[0]);
+    for (int i = range[0]; i < range[1]; i++) {
+      result.add(new Object[] {metricIds[i], fromId(characteristicIds[i]), fromId(personIds[i]), fromId(ruleIds[i]), hasValues[i] ? values[i] : null});
+    }
+    return result;
+  }
+
+  int size() {
+    return metricIds.length;
+  }
+
+  private static int toId(Object column) {
+    // can be BigDecimal on Oracle
+    return column != null ? ((Number) column).intValue() : NULL_ID;
+  }
+
+  private static Integer fromId(int id) {
+    return id != NULL_ID ? id : null;
+  }
+}
@@ -37,9 +37,11 @@ import org.sonar.api.utils.SonarException;
 import javax.persistence.NonUniqueResultException;
 import javax.persistence.Query;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public final class DefaultResourcePersister implements ResourcePersister {
@@ -50,6 +52,12 @@ public final class DefaultResourcePersister implements ResourcePersister {
   private final SnapshotCache snapshotCache;
   private final ResourceCache resourceCache;
 
+  // detached copies of the existing files and directories of the current module by lower-case key, null if the key is duplicated
+  private final Map<String, ResourceModel> modelsByKey = Maps.newHashMap();
+  private Integer modelsRootId;
+  // files and directories saved since the last commit
+  private boolean uncommitted = false;
+
   public DefaultResourcePersister(DatabaseSession session, ResourcePermissions permissions, SnapshotCache snapshotCache, ResourceCache resourceCache) {
     this.session = session;
     this.permissions = permissions;
@@ -103,6 +111,7 @@ public final class DefaultResourcePersister implements ResourcePersister {
     snapshot.setBuildDate(new Date());
     snapshot = session.save(snapshot);
     session.commit();
+    uncommitted = false;
 
     if (!permissions.hasRoles(project)) {
       permissions.grantDefaultRoles(project);
@@ -179,6 +188,7 @@ public final class DefaultResourcePersister implements ResourcePersister {
       snapshot = session.save(snapshot);
     }
     session.commit();
+    uncommitted = false;
     return snapshot;
   }
 
@@ -198,23 +208,84 @@ public final class DefaultResourcePersister implements ResourcePersister {
   }
 
   /**
-   * Everything except project and library
+   * Everything except project and library. Resources and snapshots are not committed one by one, but by batches of
+   * {@link DatabaseSession#BATCH_SIZE} saves. As MyBatis uses other connections, the components which insert rows referencing
+   * them through MyBatis (measures, sources) call {@link #commit()} before.
    */
   private Snapshot persistFileOrDirectory(Project project, Resource resource, Resource parentReference) {
-    ResourceModel model = findOrCreateModel(resource);
     Snapshot projectSnapshot = snapshotsByResource.get(project);
-    model.setRootId(projectSnapshot.getResourceId());
-    model = session.save(model);
+    ResourceModel model = findOrCreateModel(projectSnapshot.getResourceId(), resource);
     resource.setId(model.getId());
 
     Snapshot parentSnapshot = (Snapshot) ObjectUtils.defaultIfNull(getSnapshot(parentReference), projectSnapshot);
     Snapshot snapshot = new Snapshot(model, parentSnapshot);
     snapshot.setBuildDate(new Date());
     snapshot = session.save(snapshot);
-    session.commit();
+    uncommitted = true;
     return snapshot;
   }
 
+  /**
+   * The existing files and directories of the module are loaded with a single request. Those which are not changed by
+   * the analysis are neither loaded again nor updated. Other resources are searched by key, as they may be new or
+   * attached to another module.
+   */
+  private ResourceModel findOrCreateModel(Integer rootId, Resource resource) {
+    if (!rootId.equals(modelsRootId)) {
+      loadModels(rootId);
+    }
+    String key = resource.getEffectiveKey();
+    ResourceModel model = key != null ? modelsByKey.get(lowerCase(key)) : null;
+    if (model == null || !key.equals(model.getKey())) {
+      // let the database decide whether keys which differ only by case are equal
+      model = findOrCreateModel(resource);
+      model.setRootId(rootId);
+      return session.save(model);
+    }
+    List<Object> state = state(model);
+    mergeModel(model, resource);
+    if (!state.equals(state(model))) {
+      ResourceModel entity = session.getEntity(ResourceModel.class, model.getId());
+      mergeModel(entity, resource);
+      entity.setRootId(rootId);
+      session.save(entity);
+    }
+    return model;
+  }
+
+  private void loadModels(Integer rootId) {
+    modelsByKey.clear();
+    modelsRootId = rootId;
+    // scalar values are selected, so that models are not attached to the session
+    Query query = session.createQuery("SELECT r.id, r.key, r.name, r.longName, r.description, r.enabled, r.scope, r.qualifier, r.languageKey"
+      + " FROM " + ResourceModel.class.getSimpleName() + " r WHERE r.rootId=:rootId");
+    query.setParameter("rootId", rootId);
+    List<Object[]> rows = query.getResultList();
+    for (Object[] row : rows) {
+      ResourceModel model = new ResourceModel((String) row[6], (String) row[1], (String) row[7], rootId, (String) row[2]);
+      model.setId((Integer) row[0]);
+      model.setLongName((String) row[3]);
+      model.setDescription((String) row[4]);
+      model.setEnabled((Boolean) row[5]);
+      model.setLanguageKey((String) row[8]);
+      String lowerCaseKey = lowerCase(model.getKey());
+      // a duplicated key is not kept, so that the resource is searched by findOrCreateModel(Resource)
+      modelsByKey.put(lowerCaseKey, modelsByKey.containsKey(lowerCaseKey) ? null : model);
+    }
+  }
+
+  /**
+   * Columns which can be updated by {@link #mergeModel(ResourceModel, Resource)}
+   */
+  private static List<Object> state(ResourceModel model) {
+    return Arrays.<Object>asList(model.getName(), model.getLongName(), model.getDescription(), model.getEnabled(), model.getScope(),
+      model.getQualifier(), model.getLanguageKey());
+  }
+
+  private static String lowerCase(String key) {
+    return key.toLowerCase(Locale.ENGLISH);
+  }
+
   public Snapshot getLastSnapshot(Snapshot snapshot, boolean onlyOlder) {
     String hql = "SELECT s FROM " + Snapshot.class.getSimpleName() + " s WHERE s.last=:last AND s.resourceId=:resourceId";
     if (onlyOlder) {
@@ -229,7 +300,18 @@ public final class DefaultResourcePersister implements ResourcePersister {
     return session.getSingleResult(query, null);
   }
 
+  public void commit() {
+    if (uncommitted) {
+      session.commit();
+      uncommitted = false;
+    }
+  }
+
   public void clear() {
+    commit();
+    modelsByKey.clear();
+    modelsRootId = null;
+
     // we keep cache of projects
     for (Iterator<Map.Entry<Resource, Snapshot>> it = snapshotsByResource.entrySet().iterator(); it.hasNext();) {
       Map.Entry<Resource, Snapshot> entry = it.next();
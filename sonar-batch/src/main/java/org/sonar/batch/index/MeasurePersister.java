@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.database.model.MeasureMapper;
@@ -35,6 +36,7 @@ import org.sonar.api.resources.ResourceUtils;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.SonarException;
+import org.sonar.core.persistence.BatchSession;
 import org.sonar.core.persistence.MyBatis;
 
 import java.util.Collection;
@@ -67,6 +69,8 @@ public final class MeasurePersister {
   public void dump() {
     LoggerFactory.getLogger(getClass()).debug("{} measures to dump", unsavedMeasuresByResource.size());
 
+    // snapshots are inserted through another connection, see DefaultResourcePersister
+    resourcePersister.commit();
     insert(getMeasuresToSave());
   }
 
@@ -89,6 +93,7 @@ public final class MeasurePersister {
 
   private MeasureModel insertOrUpdate(Resource resource, Measure measure) {
     Snapshot snapshot = resourcePersister.getSnapshotOrFail(resource);
+    resourcePersister.commit();
     if (measure.getId() != null) {
       return update(measure, snapshot);
     }
@@ -163,7 +168,31 @@ public final class MeasurePersister {
     return model;
   }
 
-  private void insert(Iterable<MeasureModelAndDetails> values) {
+  /**
+   * Delayed measures without data are inserted through JDBC batches, flushed every {@link BatchSession#MAX_BATCH_SIZE} statements
+   * and committed at once. Measures with data are still inserted one by one, as the generated id is required by MEASURE_DATA.
+   */
+  private void insert(List<MeasureModelAndDetails> values) {
+    List<MeasureModelAndDetails> withData = Lists.newArrayList();
+    List<MeasureModelAndDetails> withoutData = Lists.newArrayList();
+    for (MeasureModelAndDetails value : values) {
+      if (value.getMeasureModel().getMeasureData() != null) {
+        withData.add(value);
+      } else {
+        withoutData.add(value);
+      }
+    }
+    insertOneByOne(withData);
+    try {
+      batchInsert(withoutData);
+    } catch (RuntimeException e) {
+      // the batch has been rolled back and the statement in error is unknown. Insert one by one to get a contextual error message (SONAR-4066).
+      LoggerFactory.getLogger(getClass()).warn("Fail to batch insert measures, inserting them one by one", e);
+      insertOneByOne(withoutData);
+    }
+  }
+
+  private void insertOneByOne(Iterable<MeasureModelAndDetails> values) {
     SqlSession session = mybatis.openSession();
     try {
       MeasureMapper mapper = session.getMapper(MeasureMapper.class);
@@ -186,6 +215,31 @@ public final class MeasurePersister {
     }
   }
 
+  /**
+   * {@link BatchSession} is not used as it commits every {@link BatchSession#MAX_BATCH_SIZE} statements: all the measures
+   * must be committed at once, so that nothing is left in database when falling back to insertions one by one.
+   */
+  private void batchInsert(Iterable<MeasureModelAndDetails> values) {
+    SqlSession session = mybatis.getSessionFactory().openSession(ExecutorType.BATCH);
+    try {
+      MeasureMapper mapper = session.getMapper(MeasureMapper.class);
+      int count = 0;
+      for (MeasureModelAndDetails value : values) {
+        mapper.batchInsert(value.getMeasureModel());
+        count++;
+        if (count % BatchSession.MAX_BATCH_SIZE == 0) {
+          session.flushStatements();
+        }
+      }
+      session.commit();
+    } catch (RuntimeException e) {
+      session.rollback();
+      throw e;
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   private MeasureModel insert(Measure measure, Snapshot snapshot) {
     MeasureModel value = model(measure);
     value.setSnapshotId(snapshot.getId());
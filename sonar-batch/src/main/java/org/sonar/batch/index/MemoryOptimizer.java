@@ -19,7 +19,6 @@
  */
 package org.sonar.batch.index;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,22 +31,32 @@ import org.sonar.api.database.model.MeasureModel;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.PersistenceMode;
 
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
+ * The data of database measures are evicted from heap once persisted. They are kept in a
+ * batch {@link Cache}, so reloading them does not require any database request. The last reloaded measures
+ * are kept in heap between two decorators, up to {@link #WINDOW_SIZE} measures.
+ *
  * @since 2.7
  */
 public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecutionHandler, DecoratorsPhaseHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(MemoryOptimizer.class);
 
-  private List<Measure> loadedMeasures = Lists.newArrayList();
+  static final int WINDOW_SIZE = 500;
+
+  // ordered by access, the eldest measure being the least recently reloaded
+  private Map<Long, Measure> loadedMeasures = new LinkedHashMap<Long, Measure>(16, 0.75f, true);
   private Map<Long, Integer> dataIdByMeasureId = Maps.newHashMap();
+  private Cache<Long, String> dataCache;
   private DatabaseSession session;
 
-  public MemoryOptimizer(DatabaseSession session) {
+  public MemoryOptimizer(DatabaseSession session, Caches caches) {
     this.session = session;
+    this.dataCache = caches.createCache("measureData");
   }
 
   /**
@@ -60,38 +69,64 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
         if (LOG.isDebugEnabled()) {
           LOG.debug("Remove data measure from memory: " + measure.getMetricKey() + ", id=" + measure.getId());
         }
+        if (measure.getData() != null) {
+          dataCache.put(measure.getId(), measure.getData());
+        }
         measure.unsetData();
+        loadedMeasures.remove(measure.getId());
         dataIdByMeasureId.put(measure.getId(), data.getId());
       }
     }
   }
 
   public Measure reloadMeasure(Measure measure) {
-    if (measure.getId() != null && dataIdByMeasureId.containsKey(measure.getId()) && !measure.hasData()) {
-      Integer dataId = dataIdByMeasureId.get(measure.getId());
-      MeasureData data = session.getSingleResult(MeasureData.class, "id", dataId);
-      if (data == null) {
-        LoggerFactory.getLogger(getClass()).error("The MEASURE_DATA row with id " + dataId + " is lost");
-
+    if (measure.getId() != null && dataIdByMeasureId.containsKey(measure.getId())) {
+      if (measure.hasData()) {
+        // still in the window
+        loadedMeasures.get(measure.getId());
       } else {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Reload the data measure: " + measure.getMetricKey() + ", id=" + measure.getId());
+        String data = loadData(measure.getId());
+        if (data != null) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Reload the data measure: " + measure.getMetricKey() + ", id=" + measure.getId());
+          }
+          measure.setData(data);
+          loadedMeasures.put(measure.getId(), measure);
         }
-        measure.setData(data.getText());
-        loadedMeasures.add(measure);
       }
     }
     return measure;
   }
 
+  private String loadData(Long measureId) {
+    String data = dataCache.get(measureId);
+    if (data == null) {
+      Integer dataId = dataIdByMeasureId.get(measureId);
+      MeasureData measureData = session.getSingleResult(MeasureData.class, "id", dataId);
+      if (measureData == null) {
+        LoggerFactory.getLogger(getClass()).error("The MEASURE_DATA row with id " + dataId + " is lost");
+      } else {
+        data = measureData.getText();
+      }
+    }
+    return data;
+  }
+
   public void flushMemory() {
-    if (LOG.isDebugEnabled() && !loadedMeasures.isEmpty()) {
-      LOG.debug("Flush " + loadedMeasures.size() + " data measures from memory: ");
+    shrinkMemory(0);
+  }
+
+  void shrinkMemory(int maxLoadedMeasures) {
+    int count = loadedMeasures.size() - maxLoadedMeasures;
+    if (LOG.isDebugEnabled() && count > 0) {
+      LOG.debug("Flush " + count + " data measures from memory: ");
     }
-    for (Measure measure : loadedMeasures) {
-      measure.unsetData();
+    Iterator<Measure> it = loadedMeasures.values().iterator();
+    while (count > 0 && it.hasNext()) {
+      it.next().unsetData();
+      it.remove();
+      count--;
     }
-    loadedMeasures.clear();
   }
 
   boolean isTracked(Long measureId) {
@@ -107,12 +142,13 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
 
   public void onDecoratorExecution(DecoratorExecutionEvent event) {
     if (event.isEnd()) {
-      flushMemory();
+      shrinkMemory(WINDOW_SIZE);
     }
   }
 
   public void onDecoratorsPhase(DecoratorsPhaseEvent event) {
     if (event.isEnd()) {
+      flushMemory();
       session.commit();
     }
   }
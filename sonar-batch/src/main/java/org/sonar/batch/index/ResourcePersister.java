@@ -51,5 +51,13 @@ public interface ResourcePersister {
    */
   Snapshot getLastSnapshot(Snapshot snapshot, boolean onlyOlder);
 
+  /**
+   * Commits the resources and snapshots which are not committed yet, so that rows referencing them can be inserted
+   * through MyBatis. Does nothing if all of them are already committed.
+   *
+   * @since 3.6
+   */
+  void commit();
+
   void clear();
 }
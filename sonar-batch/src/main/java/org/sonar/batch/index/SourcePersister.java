@@ -19,24 +19,45 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.database.model.SnapshotSource;
 import org.sonar.api.resources.DuplicatedSourceException;
 import org.sonar.api.resources.Resource;
+import org.sonar.core.persistence.BatchSession;
+import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.jdbc.SnapshotSourceDao;
 
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Sources are not inserted one by one but queued, then written through a batch session when
+ * the queue reaches the size defined by the property {@link #FLUSH_SIZE_PROPERTY}.
+ */
 public final class SourcePersister {
 
+  public static final String FLUSH_SIZE_PROPERTY = "sonar.sources.flushSize";
+  static final int DEFAULT_FLUSH_SIZE = BatchSession.MAX_BATCH_SIZE;
+
   private DatabaseSession session;
   private Set<Integer> savedSnapshotIds = Sets.newHashSet();
+  private Map<Integer, String> unsavedSourcesBySnapshotId = Maps.newLinkedHashMap();
   private ResourcePersister resourcePersister;
+  private MyBatis mybatis;
+  private SnapshotSourceDao dao;
+  private int flushSize;
 
-  public SourcePersister(DatabaseSession session, ResourcePersister resourcePersister) {
+  public SourcePersister(DatabaseSession session, ResourcePersister resourcePersister, MyBatis mybatis, SnapshotSourceDao dao, Settings settings) {
     this.session = session;
     this.resourcePersister = resourcePersister;
+    this.mybatis = mybatis;
+    this.dao = dao;
+    int size = settings.getInt(FLUSH_SIZE_PROPERTY);
+    this.flushSize = size > 0 ? size : DEFAULT_FLUSH_SIZE;
   }
 
   public void saveSource(Resource resource, String source) {
@@ -44,20 +65,47 @@ public final class SourcePersister {
     if (isCached(snapshot)) {
       throw new DuplicatedSourceException(resource);
     }
-    session.save(new SnapshotSource(snapshot.getId(), source));
-    session.commit();
+    unsavedSourcesBySnapshotId.put(snapshot.getId(), source);
     addToCache(snapshot);
+    if (unsavedSourcesBySnapshotId.size() >= flushSize) {
+      flush();
+    }
   }
 
   public String getSource(Resource resource) {
     SnapshotSource source = null;
     Snapshot snapshot = resourcePersister.getSnapshot(resource);
     if (snapshot!=null && snapshot.getId()!=null) {
+      String unsavedSource = unsavedSourcesBySnapshotId.get(snapshot.getId());
+      if (unsavedSource != null) {
+        return unsavedSource;
+      }
       source = session.getSingleResult(SnapshotSource.class, "snapshotId", snapshot.getId());
     }
     return source!=null ? source.getData() : null;
   }
 
+  /**
+   * Write the queued sources to database.
+   */
+  public void flush() {
+    if (unsavedSourcesBySnapshotId.isEmpty()) {
+      return;
+    }
+    // snapshots are inserted through another connection, see DefaultResourcePersister
+    resourcePersister.commit();
+    BatchSession batchSession = mybatis.openBatchSession();
+    try {
+      for (Map.Entry<Integer, String> entry : unsavedSourcesBySnapshotId.entrySet()) {
+        dao.insert(batchSession, entry.getKey(), entry.getValue());
+      }
+      batchSession.commit();
+    } finally {
+      MyBatis.closeQuietly(batchSession);
+    }
+    unsavedSourcesBySnapshotId.clear();
+  }
+
   private boolean isCached(Snapshot snapshot) {
     return savedSnapshotIds.contains(snapshot.getId());
   }
@@ -67,6 +115,7 @@ public final class SourcePersister {
   }
 
   public void clear() {
+    flush();
     savedSnapshotIds.clear();
   }
 }
@@ -25,6 +25,8 @@ import org.sonar.api.batch.BatchExtensionDictionnary;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafe;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.utils.SonarException;
@@ -34,26 +36,45 @@ import org.sonar.batch.events.EventBus;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads used to execute the decorators annotated with {@link ThreadSafe}. Default value is 1: all the decorators
+   * are executed sequentially.
+   *
+   * @since 3.6
+   */
+  public static final String THREADS_PROPERTY = "sonar.decorators.threads";
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
   private Project project;
+  private Settings settings;
 
   public DecoratorsExecutor(BatchExtensionDictionnary batchExtDictionnary,
-      Project project, SonarIndex index, EventBus eventBus) {
+      Project project, SonarIndex index, EventBus eventBus, Settings settings) {
     this.decoratorsSelector = new DecoratorsSelector(batchExtDictionnary);
     this.index = index;
     this.eventBus = eventBus;
     this.project = project;
+    this.settings = settings;
   }
 
   public void execute() {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    decorateResource(project, decorators, true);
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads > 1 && hasThreadSafeDecorator(decorators)) {
+      decorateConcurrently(project, decorators, threads);
+    } else {
+      decorateResource(project, decorators, true);
+    }
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
@@ -75,10 +96,14 @@ public class DecoratorsExecutor implements BatchComponent {
   }
 
   void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
+    eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
+    decorate(decorator, context, resource);
+    eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
+  }
+
+  private static void decorate(Decorator decorator, DecoratorContext context, Resource resource) {
     try {
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
       decorator.decorate(resource, context);
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
 
     } catch (Exception e) {
       // SONAR-2278 the resource should not be lost in exception stacktrace.
@@ -86,4 +111,114 @@ public class DecoratorsExecutor implements BatchComponent {
     }
   }
 
+  private static boolean hasThreadSafeDecorator(Collection<Decorator> decorators) {
+    for (Decorator decorator : decorators) {
+      if (isThreadSafe(decorator)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isThreadSafe(Decorator decorator) {
+    return decorator.getClass().isAnnotationPresent(ThreadSafe.class);
+  }
+
+  /**
+   * Resources are grouped by height in the tree, leaves first, so that the children of a resource are all decorated before it.
+   * Decorators are executed in order on each group. A {@link ThreadSafe} decorator is executed concurrently on the resources
+   * of the group, between a single pair of {@link DecoratorExecutionEvent}s fired by the calling thread. Other decorators are
+   * executed by the calling thread, one resource at a time, as in sequential mode.
+   */
+  DecoratorContext decorateConcurrently(Resource root, Collection<Decorator> decorators, int threads) {
+    List<List<DecoratedResource>> resourcesByHeight = Lists.newArrayList();
+    DecoratedResource decoratedRoot = createContexts(root, true, resourcesByHeight);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (List<DecoratedResource> resources : resourcesByHeight) {
+        for (Decorator decorator : decorators) {
+          if (resources.size() > 1 && isThreadSafe(decorator)) {
+            executeConcurrently(executor, decorator, resources);
+          } else {
+            for (DecoratedResource resource : resources) {
+              executeDecorator(decorator, resource.context, resource.resource);
+            }
+          }
+        }
+        for (DecoratedResource resource : resources) {
+          if (resource != decoratedRoot) {
+            resource.context.setReadOnly(true);
+          }
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return decoratedRoot.context;
+  }
+
+  private DecoratedResource createContexts(Resource resource, boolean executeDecorators, List<List<DecoratedResource>> resourcesByHeight) {
+    List<DecoratorContext> childrenContexts = Lists.newArrayList();
+    int height = 0;
+    for (Resource child : index.getChildren(resource)) {
+      boolean isModule = (child instanceof Project);
+      DecoratedResource decoratedChild = createContexts(child, !isModule, resourcesByHeight);
+      childrenContexts.add(decoratedChild.context);
+      height = Math.max(height, decoratedChild.height + 1);
+    }
+
+    DecoratedResource decorated = new DecoratedResource(resource, new SynchronizedDecoratorContext(resource, index, childrenContexts), height);
+    if (executeDecorators) {
+      while (resourcesByHeight.size() <= height) {
+        resourcesByHeight.add(Lists.<DecoratedResource>newArrayList());
+      }
+      resourcesByHeight.get(height).add(decorated);
+    } else {
+      decorated.context.setReadOnly(true);
+    }
+    return decorated;
+  }
+
+  private void executeConcurrently(ExecutorService executor, final Decorator decorator, List<DecoratedResource> resources) {
+    eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
+    List<Future<?>> futures = Lists.newArrayList();
+    for (final DecoratedResource resource : resources) {
+      futures.add(executor.submit(new Runnable() {
+        public void run() {
+          decorate(decorator, resource.context, resource.resource);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      waitFor(future);
+    }
+    eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Decoration has been interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SonarException) {
+        throw (SonarException) e.getCause();
+      }
+      throw new SonarException("Fail to decorate resources", e.getCause());
+    }
+  }
+
+  private static class DecoratedResource {
+    private final Resource resource;
+    private final DefaultDecoratorContext context;
+    private final int height;
+
+    DecoratedResource(Resource resource, DefaultDecoratorContext context, int height) {
+      this.resource = resource;
+      this.context = context;
+      this.height = height;
+    }
+  }
+
 }
@@ -29,6 +29,8 @@ import org.sonar.batch.index.DefaultIndex;
 import org.sonar.batch.index.PersistenceManager;
 import org.sonar.batch.index.ScanPersister;
 import org.sonar.batch.scan.JsonReport;
+import org.sonar.batch.scan.filesystem.DefaultModuleFileSystem;
+import org.sonar.batch.scan.filesystem.FileHashes;
 import org.sonar.batch.scan.filesystem.FileSystemLogger;
 import org.sonar.batch.scan.maven.MavenPhaseExecutor;
 import org.sonar.batch.scan.maven.MavenPluginsConfigurator;
@@ -61,13 +63,16 @@ public final class PhaseExecutor {
   private ScanPersister[] persisters;
   private FileSystemLogger fsLogger;
   private final JsonReport jsonReport;
+  private final DefaultModuleFileSystem fs;
+  private final FileHashes fileHashes;
 
   public PhaseExecutor(Phases phases, DecoratorsExecutor decoratorsExecutor, MavenPhaseExecutor mavenPhaseExecutor,
                        MavenPluginsConfigurator mavenPluginsConfigurator, InitializersExecutor initializersExecutor,
                        PostJobsExecutor postJobsExecutor, SensorsExecutor sensorsExecutor,
                        PersistenceManager persistenceManager, SensorContext sensorContext, DefaultIndex index,
                        EventBus eventBus, UpdateStatusJob updateStatusJob, ProjectInitializer pi,
-                       ScanPersister[] persisters, FileSystemLogger fsLogger, JsonReport jsonReport) {
+                       ScanPersister[] persisters, FileSystemLogger fsLogger, JsonReport jsonReport,
+                       DefaultModuleFileSystem fs, FileHashes fileHashes) {
     this.phases = phases;
     this.decoratorsExecutor = decoratorsExecutor;
     this.mavenPhaseExecutor = mavenPhaseExecutor;
@@ -84,15 +89,18 @@ public final class PhaseExecutor {
     this.persisters = persisters;
     this.fsLogger = fsLogger;
     this.jsonReport = jsonReport;
+    this.fs = fs;
+    this.fileHashes = fileHashes;
   }
 
   public PhaseExecutor(Phases phases, DecoratorsExecutor decoratorsExecutor, MavenPhaseExecutor mavenPhaseExecutor,
                        MavenPluginsConfigurator mavenPluginsConfigurator, InitializersExecutor initializersExecutor,
                        PostJobsExecutor postJobsExecutor, SensorsExecutor sensorsExecutor,
                        PersistenceManager persistenceManager, SensorContext sensorContext, DefaultIndex index,
-                       EventBus eventBus, ProjectInitializer pi, ScanPersister[] persisters, FileSystemLogger fsLogger, JsonReport jsonReport) {
+                       EventBus eventBus, ProjectInitializer pi, ScanPersister[] persisters, FileSystemLogger fsLogger, JsonReport jsonReport,
+                       DefaultModuleFileSystem fs, FileHashes fileHashes) {
     this(phases, decoratorsExecutor, mavenPhaseExecutor, mavenPluginsConfigurator, initializersExecutor, postJobsExecutor,
-      sensorsExecutor, persistenceManager, sensorContext, index, eventBus, null, pi, persisters, fsLogger, jsonReport);
+      sensorsExecutor, persistenceManager, sensorContext, index, eventBus, null, pi, persisters, fsLogger, jsonReport, fs, fileHashes);
   }
 
   /**
@@ -119,6 +127,7 @@ public final class PhaseExecutor {
     }
     persistenceManager.dump();
     persistenceManager.setDelayedMode(false);
+    fs.writeHashes();
 
     if (module.isRoot()) {
       jsonReport.execute();
@@ -134,6 +143,7 @@ public final class PhaseExecutor {
       if (phases.isEnabled(Phases.Phase.POSTJOB)) {
         postJobsExecutor.execute(sensorContext);
       }
+      fileHashes.save();
     }
     cleanMemory();
     eventBus.fireEvent(new ProjectAnalysisEvent(module, false));
@@ -0,0 +1,166 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.phases;
+
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.batch.Event;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.MeasuresFilter;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rules.Violation;
+import org.sonar.api.violations.ViolationQuery;
+import org.sonar.batch.DefaultDecoratorContext;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decorator context used when decorators are executed in parallel. The index is not thread-safe, so all
+ * the calls are serialized on it.
+ *
+ * @since 3.6
+ */
+class SynchronizedDecoratorContext extends DefaultDecoratorContext {
+
+  private final SonarIndex index;
+
+  SynchronizedDecoratorContext(Resource resource, SonarIndex index, List<DecoratorContext> childrenContexts) {
+    super(resource, index, childrenContexts);
+    this.index = index;
+  }
+
+  @Override
+  public Project getProject() {
+    synchronized (index) {
+      return super.getProject();
+    }
+  }
+
+  @Override
+  public <M> M getMeasures(MeasuresFilter<M> filter) {
+    synchronized (index) {
+      return super.getMeasures(filter);
+    }
+  }
+
+  @Override
+  public Measure getMeasure(Metric metric) {
+    synchronized (index) {
+      return super.getMeasure(metric);
+    }
+  }
+
+  @Override
+  public Collection<Measure> getChildrenMeasures(MeasuresFilter filter) {
+    synchronized (index) {
+      return super.getChildrenMeasures(filter);
+    }
+  }
+
+  @Override
+  public DecoratorContext saveMeasure(Measure measure) {
+    synchronized (index) {
+      return super.saveMeasure(measure);
+    }
+  }
+
+  @Override
+  public DecoratorContext saveMeasure(Metric metric, Double value) {
+    synchronized (index) {
+      return super.saveMeasure(metric, value);
+    }
+  }
+
+  @Override
+  public List<Violation> getViolations(ViolationQuery violationQuery) {
+    synchronized (index) {
+      return super.getViolations(violationQuery);
+    }
+  }
+
+  @Override
+  public List<Violation> getViolations() {
+    synchronized (index) {
+      return super.getViolations();
+    }
+  }
+
+  @Override
+  public Dependency saveDependency(Dependency dependency) {
+    synchronized (index) {
+      return super.saveDependency(dependency);
+    }
+  }
+
+  @Override
+  public Set<Dependency> getDependencies() {
+    synchronized (index) {
+      return super.getDependencies();
+    }
+  }
+
+  @Override
+  public Collection<Dependency> getIncomingDependencies() {
+    synchronized (index) {
+      return super.getIncomingDependencies();
+    }
+  }
+
+  @Override
+  public Collection<Dependency> getOutgoingDependencies() {
+    synchronized (index) {
+      return super.getOutgoingDependencies();
+    }
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    synchronized (index) {
+      return super.getEvents();
+    }
+  }
+
+  @Override
+  public Event createEvent(String name, String description, String category, Date date) {
+    synchronized (index) {
+      return super.createEvent(name, description, category, date);
+    }
+  }
+
+  @Override
+  public void deleteEvent(Event event) {
+    synchronized (index) {
+      super.deleteEvent(event);
+    }
+  }
+
+  @Override
+  public DefaultDecoratorContext saveViolation(Violation violation, boolean force) {
+    synchronized (index) {
+      return super.saveViolation(violation, force);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Scopes;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.index.ResourcePersister;
+import org.sonar.core.persistence.DryRunCache;
 
 import javax.persistence.Query;
 
@@ -42,14 +43,17 @@ public class UpdateStatusJob implements BatchComponent {
   private ResourcePersister resourcePersister;
   private Settings settings;
   private Project project;
+  private DryRunCache dryRunCache;
 
-  public UpdateStatusJob(Settings settings, ServerClient server, DatabaseSession session, ResourcePersister resourcePersister, Project project, Snapshot snapshot) {
+  public UpdateStatusJob(Settings settings, ServerClient server, DatabaseSession session, ResourcePersister resourcePersister, Project project, Snapshot snapshot,
+                         DryRunCache dryRunCache) {
     this.session = session;
     this.server = server;
     this.resourcePersister = resourcePersister;
     this.project = project;
     this.snapshot = snapshot;
     this.settings = settings;
+    this.dryRunCache = dryRunCache;
   }
 
   public void execute() {
@@ -76,6 +80,8 @@ public class UpdateStatusJob implements BatchComponent {
     boolean isLast = (previousLastSnapshot == null || previousLastSnapshot.getCreatedAt().before(snapshot.getCreatedAt()));
     setFlags(snapshot, isLast, Snapshot.STATUS_PROCESSED);
     if (!settings.getBoolean(CoreProperties.DRY_RUN)) {
+      dryRunCache.reportResourceModification(snapshot.getRootProjectId() != null ? snapshot.getRootProjectId() : snapshot.getResourceId());
+
       String baseUrl = settings.getString(CoreProperties.SERVER_BASE_URL);
       if (baseUrl.equals(settings.getDefaultValue(CoreProperties.SERVER_BASE_URL))) {
         // If server base URL was not configured in Sonar server then is is better to take URL configured on batch side
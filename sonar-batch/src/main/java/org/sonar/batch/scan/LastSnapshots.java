@@ -19,30 +19,42 @@
  */
 package org.sonar.batch.scan;
 
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
-import org.sonar.api.database.DatabaseSession;
-import org.sonar.api.database.model.ResourceModel;
-import org.sonar.api.database.model.Snapshot;
-import org.sonar.api.database.model.SnapshotSource;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
 import org.sonar.api.utils.HttpDownloader;
+import org.sonar.batch.ProjectTree;
 import org.sonar.batch.bootstrap.ServerClient;
+import org.sonar.batch.index.Cache;
+import org.sonar.batch.index.Caches;
+import org.sonar.core.source.jdbc.SnapshotSourceDao;
+import org.sonar.core.source.jdbc.SnapshotSourceDto;
 
-import javax.persistence.Query;
-
+/**
+ * Sources of the last analysis. They are loaded from database in a single query for the whole project
+ * the first time a source is requested, then kept in a disk-backed cache. In dry-run mode sources
+ * are downloaded file per file and cached as well.
+ */
 public class LastSnapshots implements BatchComponent {
 
   private final Settings settings;
-  private final DatabaseSession session;
+  private final SnapshotSourceDao dao;
   private final ServerClient server;
+  private final ProjectTree projectTree;
+  private final Caches caches;
+  private Cache<String, String> sources;
+  private boolean loaded = false;
 
-  public LastSnapshots(Settings settings, DatabaseSession session, ServerClient server) {
+  public LastSnapshots(Settings settings, SnapshotSourceDao dao, ServerClient server, ProjectTree projectTree, Caches caches) {
     this.settings = settings;
-    this.session = session;
+    this.dao = dao;
     this.server = server;
+    this.projectTree = projectTree;
+    this.caches = caches;
   }
 
   public String getSource(Resource resource) {
@@ -58,6 +70,15 @@ public class LastSnapshots implements BatchComponent {
   }
 
   private String loadSourceFromWs(Resource resource) {
+    String source = sources().get(resource.getEffectiveKey());
+    if (source == null) {
+      source = downloadSource(resource);
+      sources().put(resource.getEffectiveKey(), source);
+    }
+    return source;
+  }
+
+  private String downloadSource(Resource resource) {
     try {
       return server.request("/api/sources?resource=" + resource.getEffectiveKey() + "&format=txt", false);
     } catch (HttpDownloader.HttpException he) {
@@ -69,21 +90,30 @@ public class LastSnapshots implements BatchComponent {
   }
 
   private String loadSourceFromDb(Resource resource) {
-    Snapshot snapshot = getSnapshot(resource);
-    if (snapshot != null) {
-      SnapshotSource source = session.getSingleResult(SnapshotSource.class, "snapshotId", snapshot.getId());
-      if (source != null) {
-        return source.getData();
-      }
+    if (!loaded) {
+      loadSourcesOfProject();
+      loaded = true;
     }
-    return "";
+    String source = sources().get(resource.getEffectiveKey());
+    return source != null ? source : "";
   }
 
-  private Snapshot getSnapshot(Resource resource) {
-    Query query = session.createQuery("from " + Snapshot.class.getSimpleName() + " s where s.last=:last and s.resourceId=(select r.id from "
-      + ResourceModel.class.getSimpleName() + " r where r.key=:key)");
-    query.setParameter("key", resource.getEffectiveKey());
-    query.setParameter("last", Boolean.TRUE);
-    return session.getSingleResult(query, null);
+  private void loadSourcesOfProject() {
+    final Cache<String, String> cache = sources();
+    dao.selectLastSourcesOfProject(projectTree.getRootProject().getKey(), new ResultHandler() {
+      public void handleResult(ResultContext context) {
+        SnapshotSourceDto dto = (SnapshotSourceDto) context.getResultObject();
+        if (dto.getData() != null) {
+          cache.put(dto.getResourceKey(), dto.getData());
+        }
+      }
+    });
+  }
+
+  private Cache<String, String> sources() {
+    if (sources == null) {
+      sources = caches.createCache("lastSources");
+    }
+    return sources;
   }
 }
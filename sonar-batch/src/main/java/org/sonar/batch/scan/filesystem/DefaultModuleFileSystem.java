@@ -22,42 +22,42 @@ package org.sonar.batch.scan.filesystem;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.HiddenFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.FileSystemFilter;
 import org.sonar.api.scan.filesystem.FileType;
+import org.sonar.api.scan.filesystem.ModuleFileChanges;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
-import org.sonar.api.scan.filesystem.PathResolver;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.nio.charset.Charset;
-import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class can't be immutable because of execution of maven plugins that can change the project structure (see MavenPluginHandler and sonar.phase)
  *
  * @since 3.5
  */
-public class DefaultModuleFileSystem implements ModuleFileSystem {
-
-  private static final IOFileFilter DIR_FILTER = FileFilterUtils.and(HiddenFileFilter.VISIBLE, FileFilterUtils.notFileFilter(FileFilterUtils.prefixFileFilter(".")));
+public class DefaultModuleFileSystem implements ModuleFileSystem, ModuleFileChanges {
 
   private Settings settings;
   private File baseDir, workingDir, buildDir;
   private List<File> sourceDirs = Lists.newArrayList();
   private List<File> testDirs = Lists.newArrayList();
   private List<File> binaryDirs = Lists.newArrayList();
-  private PathResolver pathResolver = new PathResolver();
   private List<FileSystemFilter> fsFilters = Lists.newArrayList();
   private LanguageFilters languageFilters;
+  private FileIndex index;
+  private FileHashes fileHashes;
+  private File hashesDir;
+  private boolean changedFilesRequested = false;
 
   DefaultModuleFileSystem() {
   }
@@ -110,12 +110,57 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
   }
 
   public List<File> files(FileQuery query) {
-    List<FileSystemFilter> filters = Lists.newArrayList(fsFilters);
+    List<File> result = Lists.newLinkedList();
+    for (FileIndex.IndexedFile indexedFile : indexedFiles(query)) {
+      result.add(indexedFile.file);
+    }
+    return result;
+  }
+
+  /**
+   * Files matching the query whose content changed since the previous analysis of the module, including new files.
+   * All files are considered as changed when the module has no persistent working directory.
+   *
+   * @since 3.6
+   */
+  public List<File> changedFiles(FileQuery query) {
+    changedFilesRequested = true;
+    Map<String, String> previousHashes = fileHashes.previousHashes(hashesDir);
+    List<File> result = Lists.newLinkedList();
+    for (FileIndex.IndexedFile indexedFile : indexedFiles(query)) {
+      if (!indexedFile.hash().equals(previousHashes.get(indexedFile.canonicalPath))) {
+        result.add(indexedFile.file);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Executed at the end of the analysis of the module. Hashes are effectively saved by {@link FileHashes#save()}
+   * at the end of the analysis of the project. Files are hashed only if {@link #changedFiles(FileQuery)} was
+   * used during the analysis.
+   */
+  public void writeHashes() {
+    if (!fileHashes.isWritable(hashesDir)) {
+      return;
+    }
+    if (changedFilesRequested) {
+      fileHashes.write(hashesDir, index().hashes());
+    } else {
+      fileHashes.discard(hashesDir);
+    }
+  }
+
+  private List<FileIndex.IndexedFile> indexedFiles(FileQuery query) {
+    FileIndex fileIndex = index();
+    List<FileSystemFilter> filters = Lists.newArrayList();
     for (FileFilter fileFilter : query.filters()) {
       filters.add(new FileFilterWrapper(fileFilter));
     }
-    for (String language : query.languages()) {
-      filters.add(new FileFilterWrapper(languageFilters.forLang(language)));
+    Iterator<String> languages = query.languages().iterator();
+    String firstLanguage = languages.hasNext() ? languages.next() : null;
+    while (languages.hasNext()) {
+      filters.add(new FileFilterWrapper(languageFilters.forLang(languages.next())));
     }
     for (String inclusion : query.inclusions()) {
       filters.add(new InclusionFilter(inclusion));
@@ -123,52 +168,33 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
     for (String exclusion : query.exclusions()) {
       filters.add(new ExclusionFilter(exclusion));
     }
-    List<File> result = Lists.newLinkedList();
+    List<FileIndex.IndexedFile> result = Lists.newArrayList();
     FileFilterContext context = new FileFilterContext(this);
     for (FileType type : query.types()) {
       context.setType(type);
-      switch (type) {
-        case SOURCE:
-          applyFilters(result, context, filters, sourceDirs);
-          break;
-        case TEST:
-          applyFilters(result, context, filters, testDirs);
-          break;
-        default:
-          throw new IllegalArgumentException("Unknown file type: " + type);
-      }
-    }
-    return result;
-  }
-
-  private void applyFilters(List<File> result, FileFilterContext context,
-                            Collection<FileSystemFilter> filters, Collection<File> dirs) {
-    for (File dir : dirs) {
-      if (dir.exists()) {
-        context.setRelativeDir(dir);
-        Collection<File> files = FileUtils.listFiles(dir, HiddenFileFilter.VISIBLE, DIR_FILTER);
-        for (File file : files) {
-          if (accept(file, context, filters)) {
-            result.add(file);
+      List<FileIndex.IndexedFile> candidates = firstLanguage != null ? fileIndex.files(type, firstLanguage) : fileIndex.files(type);
+      if (filters.isEmpty()) {
+        result.addAll(candidates);
+      } else {
+        for (FileIndex.IndexedFile candidate : candidates) {
+          if (fileIndex.accept(candidate, context, filters)) {
+            result.add(candidate);
           }
         }
       }
     }
+    return result;
   }
 
-  private boolean accept(File file, FileFilterContext context, Collection<FileSystemFilter> filters) {
-    context.setRelativePath(pathResolver.relativePath(context.relativeDir(), file));
-    try {
-      context.setCanonicalPath(file.getCanonicalPath());
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get the canonical path of: " + file);
-    }
-    for (FileSystemFilter filter : filters) {
-      if (!filter.accept(file, context)) {
-        return false;
-      }
+  /**
+   * The index is built on first request. It is rebuilt when the structure of the module is changed, or
+   * when files are added or removed.
+   */
+  private FileIndex index() {
+    if (index == null || index.isOutdated()) {
+      index = new FileIndex(this);
     }
-    return true;
+    return index;
   }
 
   public void resetDirs(File basedir, File buildDir, List<File> sourceDirs, List<File> testDirs, List<File> binaryDirs) {
@@ -178,6 +204,7 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
     this.sourceDirs = existingDirs(sourceDirs);
     this.testDirs = existingDirs(testDirs);
     this.binaryDirs = existingDirs(binaryDirs);
+    this.index = null;
   }
 
   private List<File> existingDirs(List<File> dirs) {
@@ -197,11 +224,22 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
 
   DefaultModuleFileSystem setBaseDir(File baseDir) {
     this.baseDir = baseDir;
+    this.index = null;
     return this;
   }
 
   DefaultModuleFileSystem setWorkingDir(File workingDir) {
     this.workingDir = workingDir;
+    this.index = null;
+    return this;
+  }
+
+  /**
+   * @param hashesDir the persistent directory where hashes of files are stored, null if hashes must not be stored
+   */
+  DefaultModuleFileSystem setFileHashes(FileHashes fileHashes, @Nullable File hashesDir) {
+    this.fileHashes = fileHashes;
+    this.hashesDir = hashesDir;
     return this;
   }
 
@@ -214,21 +252,25 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
     for (FileSystemFilter filter : f) {
       this.fsFilters.add(filter);
     }
+    this.index = null;
     return this;
   }
 
   DefaultModuleFileSystem setLanguageFilters(LanguageFilters languageFilters) {
     this.languageFilters = languageFilters;
+    this.index = null;
     return this;
   }
 
   DefaultModuleFileSystem addSourceDir(File d) {
     this.sourceDirs.add(d);
+    this.index = null;
     return this;
   }
 
   DefaultModuleFileSystem addTestDir(File d) {
     this.testDirs.add(d);
+    this.index = null;
     return this;
   }
 
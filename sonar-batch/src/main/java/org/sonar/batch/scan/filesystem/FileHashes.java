@@ -0,0 +1,150 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content hashes of module files, stored in the working directory of each module. Hashes of the previous analysis
+ * are kept in memory while the module is analyzed. Hashes of the current analysis are written to temporary files
+ * and replace the previous ones only when the whole analysis is successful. Nothing is stored on dry runs.
+ *
+ * @since 3.6
+ */
+public class FileHashes implements BatchComponent {
+
+  static final String FILENAME = "file_hashes.txt";
+  private static final String TEMP_FILENAME = FILENAME + ".tmp";
+  private static final char SEPARATOR = '\t';
+
+  private final Settings settings;
+  private final Map<File, Map<String, String>> previousByDir = Maps.newHashMap();
+  private final List<File> pendingDirs = Lists.newArrayList();
+  private final List<File> discardedDirs = Lists.newArrayList();
+
+  public FileHashes(Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Hashes by canonical path, as stored by the previous analysis. Empty if the module has no persistent working directory.
+   */
+  Map<String, String> previousHashes(@Nullable File dir) {
+    if (dir == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, String> hashes = previousByDir.get(dir);
+    if (hashes == null) {
+      hashes = load(new File(dir, FILENAME));
+      previousByDir.put(dir, hashes);
+    }
+    return hashes;
+  }
+
+  /**
+   * False on dry runs or if the module has no persistent working directory. Hashes do not need to be computed in this case.
+   */
+  boolean isWritable(@Nullable File dir) {
+    return dir != null && !settings.getBoolean(CoreProperties.DRY_RUN);
+  }
+
+  /**
+   * Hashes of the current analysis of the module. They are not visible before {@link #save()}.
+   */
+  void write(@Nullable File dir, Map<String, String> hashes) {
+    if (!isWritable(dir)) {
+      return;
+    }
+    previousByDir.remove(dir);
+    File tempFile = new File(dir, TEMP_FILENAME);
+    List<String> lines = Lists.newArrayList();
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      lines.add(entry.getKey() + SEPARATOR + entry.getValue());
+    }
+    try {
+      FileUtils.writeLines(tempFile, Charsets.UTF_8.name(), lines, "\n");
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write file hashes: " + tempFile.getAbsolutePath(), e);
+    }
+    pendingDirs.add(dir);
+  }
+
+  /**
+   * Hashes of the module are not computed by the current analysis. Hashes of the previous analysis are dropped
+   * by {@link #save()}, as they would be outdated on the next analysis.
+   */
+  void discard(@Nullable File dir) {
+    if (isWritable(dir)) {
+      discardedDirs.add(dir);
+    }
+  }
+
+  /**
+   * Executed at the end of a successful analysis
+   */
+  public void save() {
+    for (File dir : pendingDirs) {
+      File tempFile = new File(dir, TEMP_FILENAME);
+      File file = new File(dir, FILENAME);
+      if ((file.exists() && !file.delete()) || !tempFile.renameTo(file)) {
+        throw new IllegalStateException("Fail to write file hashes: " + file.getAbsolutePath());
+      }
+    }
+    pendingDirs.clear();
+    for (File dir : discardedDirs) {
+      File file = new File(dir, FILENAME);
+      if (file.exists() && !file.delete()) {
+        throw new IllegalStateException("Fail to delete file hashes: " + file.getAbsolutePath());
+      }
+    }
+    discardedDirs.clear();
+  }
+
+  private static Map<String, String> load(File file) {
+    Map<String, String> hashes = Maps.newHashMap();
+    if (file.isFile()) {
+      try {
+        for (String line : FileUtils.readLines(file, Charsets.UTF_8.name())) {
+          int separator = line.lastIndexOf(SEPARATOR);
+          if (separator > 0) {
+            hashes.put(line.substring(0, separator), line.substring(separator + 1));
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file hashes: " + file.getAbsolutePath(), e);
+      }
+    }
+    return hashes;
+  }
+}
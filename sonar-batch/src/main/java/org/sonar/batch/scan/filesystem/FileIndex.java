@@ -0,0 +1,209 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.filefilter.HiddenFileFilter;
+import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.scan.filesystem.FileSystemFilter;
+import org.sonar.api.scan.filesystem.FileType;
+import org.sonar.api.scan.filesystem.PathResolver;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Files of a module, listed in a single pass over the source and test directories. Filters of the module are
+ * applied once when the index is built, so that queries only evaluate their own criteria on pre-computed paths.
+ * Content hashes are computed lazily.
+ *
+ * @since 3.6
+ */
+class FileIndex {
+
+  private static final IOFileFilter DIR_FILTER = FileFilterUtils.and(HiddenFileFilter.VISIBLE, FileFilterUtils.notFileFilter(FileFilterUtils.prefixFileFilter(".")));
+
+  /**
+   * Some file systems store modification dates with a precision of one second
+   */
+  private static final long DATE_PRECISION_MS = 1000L;
+
+  private final DefaultModuleFileSystem fileSystem;
+  private final PathResolver pathResolver = new PathResolver();
+  private final Map<FileType, List<IndexedFile>> filesByType = Maps.newEnumMap(FileType.class);
+  private final Map<String, Map<FileType, List<IndexedFile>>> filesByLanguage = Maps.newHashMap();
+  private final Map<File, Long> dirDates = Maps.newHashMap();
+  private final long indexedAt;
+
+  FileIndex(DefaultModuleFileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+    this.indexedAt = System.currentTimeMillis();
+    index(FileType.SOURCE, fileSystem.sourceDirs());
+    index(FileType.TEST, fileSystem.testDirs());
+  }
+
+  private void index(FileType type, Collection<File> dirs) {
+    ImmutableList.Builder<IndexedFile> builder = ImmutableList.builder();
+    FileFilterContext context = new FileFilterContext(fileSystem).setType(type);
+    for (File dir : dirs) {
+      if (dir.exists()) {
+        index(type, dir, dir, context, builder);
+      }
+    }
+    filesByType.put(type, builder.build());
+  }
+
+  private void index(FileType type, File rootDir, File dir, FileFilterContext context, ImmutableList.Builder<IndexedFile> builder) {
+    dirDates.put(dir, dir.lastModified());
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (child.isDirectory()) {
+          if (DIR_FILTER.accept(child)) {
+            index(type, rootDir, child, context, builder);
+          }
+        } else if (HiddenFileFilter.VISIBLE.accept(child)) {
+          IndexedFile indexedFile = new IndexedFile(child, type, rootDir, pathResolver.relativePath(rootDir, child), canonicalPath(child));
+          if (accept(indexedFile, context, fileSystem.filters())) {
+            builder.add(indexedFile);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Whether files have been added or removed since indexing, for example by code generators. Only the modification dates
+   * of the indexed directories are checked. Directories modified shortly before indexing are always considered as changed.
+   */
+  boolean isOutdated() {
+    for (Map.Entry<File, Long> entry : dirDates.entrySet()) {
+      long date = entry.getKey().lastModified();
+      if (date != entry.getValue() || date >= indexedAt - DATE_PRECISION_MS) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String canonicalPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to get the canonical path of: " + file);
+    }
+  }
+
+  List<IndexedFile> files(FileType type) {
+    List<IndexedFile> files = filesByType.get(type);
+    if (files == null) {
+      throw new IllegalArgumentException("Unknown file type: " + type);
+    }
+    return files;
+  }
+
+  List<IndexedFile> files(FileType type, String language) {
+    Map<FileType, List<IndexedFile>> byType = filesByLanguage.get(language);
+    if (byType == null) {
+      byType = Maps.newEnumMap(FileType.class);
+      FileFilter languageFilter = fileSystem.languageFilters().forLang(language);
+      for (Map.Entry<FileType, List<IndexedFile>> entry : filesByType.entrySet()) {
+        ImmutableList.Builder<IndexedFile> builder = ImmutableList.builder();
+        for (IndexedFile indexedFile : entry.getValue()) {
+          if (languageFilter.accept(indexedFile.file)) {
+            builder.add(indexedFile);
+          }
+        }
+        byType.put(entry.getKey(), builder.build());
+      }
+      filesByLanguage.put(language, byType);
+    }
+    return byType.get(type);
+  }
+
+  boolean accept(IndexedFile indexedFile, FileFilterContext context, Collection<FileSystemFilter> filters) {
+    context.setRelativeDir(indexedFile.relativeDir);
+    context.setRelativePath(indexedFile.relativePath);
+    context.setCanonicalPath(indexedFile.canonicalPath);
+    for (FileSystemFilter filter : filters) {
+      if (!filter.accept(indexedFile.file, context)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Content hashes of all the indexed files, by canonical path
+   */
+  Map<String, String> hashes() {
+    Map<String, String> hashes = Maps.newLinkedHashMap();
+    for (List<IndexedFile> files : filesByType.values()) {
+      for (IndexedFile indexedFile : files) {
+        hashes.put(indexedFile.canonicalPath, indexedFile.hash());
+      }
+    }
+    return hashes;
+  }
+
+  static class IndexedFile {
+    final File file;
+    final FileType type;
+    final File relativeDir;
+    final String relativePath;
+    final String canonicalPath;
+    private String hash;
+
+    IndexedFile(File file, FileType type, File relativeDir, String relativePath, String canonicalPath) {
+      this.file = file;
+      this.type = type;
+      this.relativeDir = relativeDir;
+      this.relativePath = relativePath;
+      this.canonicalPath = canonicalPath;
+    }
+
+    String hash() {
+      if (hash == null) {
+        InputStream input = null;
+        try {
+          input = new FileInputStream(file);
+          hash = DigestUtils.md5Hex(input);
+        } catch (IOException e) {
+          // the file has been deleted since indexing
+          hash = StringUtils.EMPTY;
+        } finally {
+          IOUtils.closeQuietly(input);
+        }
+      }
+      return hash;
+    }
+  }
+}
@@ -40,7 +40,8 @@ public class ModuleFileSystemProvider extends ProviderAdapter {
   private DefaultModuleFileSystem singleton;
 
   public DefaultModuleFileSystem provide(ProjectDefinition module, PathResolver pathResolver, TempDirectories tempDirectories,
-                                         LanguageFilters languageFilters, Settings settings, FileSystemFilter[] pluginFileFilters) {
+                                         LanguageFilters languageFilters, Settings settings, FileSystemFilter[] pluginFileFilters,
+                                         FileHashes fileHashes) {
     if (singleton == null) {
       DefaultModuleFileSystem fs = new DefaultModuleFileSystem();
       fs.setLanguageFilters(languageFilters);
@@ -48,6 +49,8 @@ public class ModuleFileSystemProvider extends ProviderAdapter {
       fs.setBuildDir(module.getBuildDir());
       fs.setSettings(settings);
       fs.setWorkingDir(guessWorkingDir(module, tempDirectories));
+      // temporary working directory is deleted at the end of the analysis, so hashes are not stored in it
+      fs.setFileHashes(fileHashes, module.getWorkDir());
       fs.addFilters(pluginFileFilters);
       initBinaryDirs(module, pathResolver, fs);
       initSources(module, pathResolver, fs);
@@ -70,6 +70,18 @@ public class DefaultFileLinesContextTest {
     assertThat(measure.getData(), is("1=2;3=4"));
   }
 
+  @Test
+  public void shouldSaveLinesInAscendingOrder() {
+    fileLineMeasures.setStringValue("author", 100, "simon");
+    fileLineMeasures.setStringValue("author", 17, "evgeny");
+    fileLineMeasures.setStringValue("author", 1, "julien");
+    fileLineMeasures.save();
+
+    ArgumentCaptor<Measure> measureCaptor = ArgumentCaptor.forClass(Measure.class);
+    verify(index).addMeasure(Matchers.eq(resource), measureCaptor.capture());
+    assertThat(measureCaptor.getValue().getData(), is("1=julien;17=evgeny;100=simon"));
+  }
+
   @Test
   public void shouldSaveSeveral() {
     fileLineMeasures.setIntValue("hits", 1, 2);
@@ -0,0 +1,115 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LineValuesTest {
+
+  @Test
+  public void should_set_int_values() {
+    LineValues values = new LineValues();
+    values.setInt(3, 4);
+    values.setInt(1, 0);
+    values.setInt(1000, -2);
+
+    assertThat(values.getInt(1)).isEqualTo(0);
+    assertThat(values.getInt(2)).isNull();
+    assertThat(values.getInt(3)).isEqualTo(4);
+    assertThat(values.getInt(1000)).isEqualTo(-2);
+    assertThat(values.getInt(1001)).isNull();
+    assertThat(values.format()).isEqualTo("1=0;3=4;1000=-2");
+  }
+
+  @Test
+  public void should_set_string_values() {
+    LineValues values = new LineValues();
+    values.setString(20, "simon");
+    values.setString(2, "evgeny");
+
+    assertThat(values.getString(2)).isEqualTo("evgeny");
+    assertThat(values.getString(3)).isNull();
+    assertThat(values.getString(200)).isNull();
+    assertThat(values.format()).isEqualTo("2=evgeny;20=simon");
+  }
+
+  @Test
+  public void should_keep_last_value_of_line() {
+    LineValues values = new LineValues();
+    values.setInt(1, 2);
+    values.setString(1, "simon");
+    values.setString(2, "evgeny");
+    values.setInt(2, 3);
+
+    assertThat(values.getInt(1)).isNull();
+    assertThat(values.getString(1)).isEqualTo("simon");
+    assertThat(values.getInt(2)).isEqualTo(3);
+    assertThat(values.getString(2)).isNull();
+    assertThat(values.format()).isEqualTo("1=simon;2=3");
+  }
+
+  @Test
+  public void should_format_empty_values() {
+    assertThat(new LineValues().format()).isEqualTo("");
+  }
+
+  @Test
+  public void should_parse_int_values() {
+    LineValues values = LineValues.parseInts("1=2;3=-4;5=;;x=6;7=2147483647;8=foo;9= ");
+
+    assertThat(values.getInt(1)).isEqualTo(2);
+    assertThat(values.getInt(3)).isEqualTo(-4);
+    assertThat(values.getInt(5)).isNull();
+    assertThat(values.getInt(6)).isNull();
+    assertThat(values.getInt(7)).isEqualTo(Integer.MAX_VALUE);
+    assertThat(values.getInt(8)).isEqualTo(0);
+    assertThat(values.getInt(9)).isNull();
+    assertThat(values.isReadOnly()).isTrue();
+  }
+
+  @Test
+  public void should_parse_string_values() {
+    LineValues values = LineValues.parseStrings("1=simon;3=evgeny;4=");
+
+    assertThat(values.getString(1)).isEqualTo("simon");
+    assertThat(values.getString(3)).isEqualTo("evgeny");
+    assertThat(values.getString(4)).isEqualTo("");
+    assertThat(values.getString(5)).isNull();
+    assertThat(values.format()).isEqualTo("1=simon;3=evgeny;4=");
+  }
+
+  @Test
+  public void should_parse_empty_data() {
+    LineValues values = LineValues.parseInts("");
+
+    assertThat(values.getInt(1)).isNull();
+    assertThat(values.format()).isEqualTo("");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void should_not_modify_read_only_values() {
+    LineValues values = new LineValues();
+    values.setInt(1, 2);
+    values.setReadOnly();
+    values.setInt(1, 3);
+  }
+}
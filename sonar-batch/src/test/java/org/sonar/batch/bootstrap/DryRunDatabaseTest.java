@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.bootstrap;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Rule;
@@ -32,12 +33,17 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseProperties;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.api.utils.SonarException;
+import org.sonar.home.cache.FileCache;
 
 import java.io.File;
+import java.net.URI;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -46,6 +52,7 @@ public class DryRunDatabaseTest {
   Settings settings = new Settings();
   ServerClient server = mock(ServerClient.class);
   TempDirectories tempDirectories = mock(TempDirectories.class);
+  FileCache fileCache = mock(FileCache.class);
   ProjectReactor projectReactor = new ProjectReactor(ProjectDefinition.create().setKey("group:project"));
   File databaseFile;
 
@@ -65,21 +72,21 @@ public class DryRunDatabaseTest {
   @Test
   public void should_be_disabled_if_not_dry_run() {
     settings.setProperty(CoreProperties.DRY_RUN, false);
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
 
     verifyZeroInteractions(tempDirectories, server);
   }
 
   @Test
   public void should_download_database() {
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
 
     verify(server).download("/batch_bootstrap/db?project=group:project", databaseFile);
   }
 
   @Test
   public void should_replace_database_settings() {
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
 
     assertThat(settings.getString(DatabaseProperties.PROP_DIALECT)).isEqualTo("h2");
     assertThat(settings.getString(DatabaseProperties.PROP_DRIVER)).isEqualTo("org.h2.Driver");
@@ -95,7 +102,7 @@ public class DryRunDatabaseTest {
     thrown.expect(SonarException.class);
     thrown.expectMessage("You don't have access rights to project [group:project]");
 
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
   }
 
   @Test
@@ -105,13 +112,45 @@ public class DryRunDatabaseTest {
     thrown.expect(SonarException.class);
     thrown.expectMessage("BUG");
 
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
   }
 
   @Test
   public void project_should_be_optional() {
     // on non-scan tasks
-    new DryRunDatabase(settings, server, tempDirectories).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache).start();
     verify(server).download("/batch_bootstrap/db", databaseFile);
   }
+
+  @Test
+  public void should_copy_database_from_cache() throws Exception {
+    File cachedFile = temp.newFile("cached.h2.db");
+    FileUtils.write(cachedFile, "content");
+    when(server.request("/batch_bootstrap/db_hash?project=group:project", false)).thenReturn("abcd\n");
+    when(fileCache.get(eq("dryrun.h2.db"), eq("abcd"), any(FileCache.Downloader.class))).thenReturn(cachedFile);
+
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
+
+    assertThat(FileUtils.readFileToString(databaseFile)).isEqualTo("content");
+    verify(server, never()).download("/batch_bootstrap/db?project=group:project", databaseFile);
+  }
+
+  @Test
+  public void should_download_database_if_cached_file_is_invalid() {
+    when(server.request("/batch_bootstrap/db_hash?project=group:project", false)).thenReturn("abcd");
+    when(fileCache.get(eq("dryrun.h2.db"), eq("abcd"), any(FileCache.Downloader.class))).thenThrow(new IllegalStateException("INVALID HASH"));
+
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
+
+    verify(server).download("/batch_bootstrap/db?project=group:project", databaseFile);
+  }
+
+  @Test
+  public void should_download_database_if_server_does_not_provide_hash() {
+    when(server.request("/batch_bootstrap/db_hash?project=group:project", false)).thenThrow(new HttpDownloader.HttpException(URI.create("http://localhost"), 404));
+
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
+
+    verify(server).download("/batch_bootstrap/db?project=group:project", databaseFile);
+  }
 }
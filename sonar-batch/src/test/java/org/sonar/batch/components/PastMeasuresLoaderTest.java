@@ -22,6 +22,10 @@ package org.sonar.batch.components;
 import org.junit.Test;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.JavaPackage;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Arrays;
@@ -36,6 +40,7 @@ public class PastMeasuresLoaderTest extends AbstractDbUnitTestCase {
 
   private static final int PROJECT_SNAPSHOT_ID = 1000;
   private static final String PROJECT_KEY = "project";
+  private static final String PACKAGE_KEY = "project:org.foo";
   private static final String FILE_KEY = "project:org.foo.Bar";
 
   @Test
@@ -86,6 +91,31 @@ public class PastMeasuresLoaderTest extends AbstractDbUnitTestCase {
     assertThat(PastMeasuresLoader.getValue(pastMeasure), is(80.0));
   }
 
+  @Test
+  public void shouldLoadPastMeasuresOfProjectsAndDirectoriesAtOnce() {
+    setupData("shared");
+
+    List<Metric> metrics = selectMetrics();
+    Snapshot projectSnapshot = getSession().getSingleResult(Snapshot.class, "id", PROJECT_SNAPSHOT_ID);
+    PastSnapshot pastSnapshot = new PastSnapshot("days", null, projectSnapshot);
+
+    PastMeasuresLoader loader = new PastMeasuresLoader(getSession(), metrics);
+    Resource javaPackage = new JavaPackage("org.foo").setEffectiveKey(PACKAGE_KEY);
+    List<Object[]> measures = loader.getPastMeasures(javaPackage, pastSnapshot);
+    assertThat(measures.size(), is(2));
+    assertThat(PastMeasuresLoader.getValue(measures.get(0)) + PastMeasuresLoader.getValue(measures.get(1)), is(90.0));
+
+    Resource project = new Project(PROJECT_KEY).setEffectiveKey(PROJECT_KEY);
+    measures = loader.getPastMeasures(project, pastSnapshot);
+    assertThat(measures.size(), is(2));
+    assertThat(PastMeasuresLoader.getValue(measures.get(0)) + PastMeasuresLoader.getValue(measures.get(1)), is(140.0));
+
+    // measures of files are not loaded
+    assertThat(loader.getPastMeasuresTable(projectSnapshot).size(), is(4));
+    Resource file = new JavaFile("org.foo.Bar").setEffectiveKey(FILE_KEY);
+    assertThat(loader.getPastMeasures(file, pastSnapshot).size(), is(2));
+  }
+
   @Test
   public void shouldKeepOnlyNumericalMetrics() {
     Metric ncloc = new Metric("ncloc", Metric.ValueType.INT);
@@ -0,0 +1,77 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.components;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PastMeasuresTableTest {
+
+  @Test
+  public void shouldGroupMeasuresByResource() {
+    PastMeasuresTable table = new PastMeasuresTable(Arrays.asList(
+      new Object[] {"project", 1, null, null, null, 60.0},
+      new Object[] {"project", 2, null, null, 30, 80.0},
+      new Object[] {"project:org.foo", 1, 5, 7, null, 20.0}));
+
+    assertThat(table.size(), is(3));
+    List<Object[]> measures = table.getPastMeasures("project");
+    assertThat(measures.size(), is(2));
+    assertThat(PastMeasuresLoader.getMetricId(measures.get(1)), is(2));
+    assertThat(PastMeasuresLoader.getRuleId(measures.get(1)), is(30));
+    assertThat(PastMeasuresLoader.getCharacteristicId(measures.get(1)), nullValue());
+    assertThat(PastMeasuresLoader.getValue(measures.get(1)), is(80.0));
+
+    measures = table.getPastMeasures("project:org.foo");
+    assertThat(measures.size(), is(1));
+    assertThat(PastMeasuresLoader.getCharacteristicId(measures.get(0)), is(5));
+    assertThat(PastMeasuresLoader.getPersonId(measures.get(0)), is(7));
+    assertThat(PastMeasuresLoader.getRuleId(measures.get(0)), nullValue());
+
+    assertThat(table.getPastMeasures("unknown").isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldSupportNullValuesAndNumbersOfAnyType() {
+    // numbers are BigDecimal on Oracle
+    PastMeasuresTable table = new PastMeasuresTable(Collections.singletonList(
+      new Object[] {"project", new BigDecimal(1), new BigDecimal(3), null, null, null}));
+
+    Object[] measure = table.getPastMeasures("project").get(0);
+    assertThat(PastMeasuresLoader.getMetricId(measure), is(1));
+    assertThat(PastMeasuresLoader.getCharacteristicId(measure), is(3));
+    assertThat(PastMeasuresLoader.hasValue(measure), is(false));
+  }
+
+  @Test
+  public void shouldLoadEmptyTable() {
+    PastMeasuresTable table = new PastMeasuresTable(Collections.<Object[]>emptyList());
+    assertThat(table.size(), is(0));
+    assertThat(table.getPastMeasures("project").isEmpty(), is(true));
+  }
+}
@@ -117,11 +117,38 @@ public class DefaultResourcePersisterTest extends AbstractDbUnitTestCase {
     ResourcePersister persister = new DefaultResourcePersister(getSession(), mock(ResourcePermissions.class), snapshotCache, resourceCache);
     persister.saveProject(singleProject, null);
     persister.saveResource(singleProject, new JavaPackage("org.foo").setEffectiveKey("foo:org.foo"));
+    // files and directories are committed by batches
+    persister.commit();
 
     // check that the directory is attached to the project
     checkTables("shouldSaveNewDirectory", new String[] {"build_date", "created_at"}, "projects", "snapshots");
   }
 
+  @Test
+  public void shouldUpdateExistingDirectory() {
+    setupData("shouldUpdateExistingDirectory");
+
+    ResourcePersister persister = new DefaultResourcePersister(getSession(), mock(ResourcePermissions.class), snapshotCache, resourceCache);
+    persister.saveProject(singleProject, null);
+    persister.saveResource(singleProject, new JavaPackage("org.foo").setEffectiveKey("foo:org.foo"));
+    persister.commit();
+
+    checkTables("shouldUpdateExistingDirectory", new String[] {"build_date", "created_at"}, "projects", "snapshots");
+  }
+
+  @Test
+  public void shouldAttachExistingDirectory() {
+    setupData("shouldAttachExistingDirectory");
+
+    ResourcePersister persister = new DefaultResourcePersister(getSession(), mock(ResourcePermissions.class), snapshotCache, resourceCache);
+    persister.saveProject(singleProject, null);
+    persister.saveResource(singleProject, new JavaPackage("org.foo").setEffectiveKey("foo:org.foo"));
+    persister.commit();
+
+    // the directory is not duplicated
+    checkTables("shouldAttachExistingDirectory", new String[] {"build_date", "created_at"}, "projects", "snapshots");
+  }
+
   @Test
   public void shouldSaveNewLibrary() {
     setupData("shared");
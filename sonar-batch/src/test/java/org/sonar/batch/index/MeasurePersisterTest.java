@@ -39,8 +39,13 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RulePriority;
 import org.sonar.api.utils.SonarException;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.BatchSession;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -90,6 +95,8 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
 
     checkTables("shouldInsertMeasure", "project_measures");
     verify(memoryOptimizer).evictDataMeasure(eq(measure), any(MeasureModel.class));
+    // snapshot must be visible to the MyBatis connection
+    verify(resourcePersister).commit();
     assertThat(measure.getId()).isNotNull();
   }
 
@@ -210,6 +217,55 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
     checkTables("shouldDelaySaving", "project_measures", "measure_data");
   }
 
+  @Test
+  public void should_batch_delayed_measures() throws Exception {
+    setupData("empty");
+
+    measurePersister.setDelayedMode(true);
+    int count = BatchSession.MAX_BATCH_SIZE + 10;
+    for (int i = 0; i < count; i++) {
+      measurePersister.saveMeasure(project, new Measure(ncloc()).setValue((double) i).setPersonId(i));
+    }
+    measurePersister.dump();
+
+    Connection connection = getConnection();
+    try {
+      ResultSet rs = connection.createStatement().executeQuery("select count(*) from project_measures");
+      rs.next();
+      assertThat(rs.getInt(1)).isEqualTo(count);
+    } finally {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void should_rollback_batch_before_inserting_one_by_one() throws Exception {
+    setupData("empty");
+
+    measurePersister.setDelayedMode(true);
+    int count = BatchSession.MAX_BATCH_SIZE + 10;
+    for (int i = 0; i < count; i++) {
+      measurePersister.saveMeasure(project, new Measure(ncloc()).setValue((double) i).setPersonId(i));
+    }
+    measurePersister.saveMeasure(project, new Measure(ncloc()).setValue(1234.0).setAlertText(TOO_LONG));
+
+    try {
+      measurePersister.dump();
+      fail();
+    } catch (SonarException e) {
+      assertThat(e.getMessage()).contains("Unable to save measure for metric [ncloc] on resource [foo]");
+    }
+
+    Connection connection = getConnection();
+    try {
+      ResultSet rs = connection.createStatement().executeQuery("select count(*) from project_measures");
+      rs.next();
+      assertThat(rs.getInt(1)).isEqualTo(0);
+    } finally {
+      connection.close();
+    }
+  }
+
   @Test
   public void should_display_contextual_info_when_error_during_delay_saving() {
     setupData("empty");
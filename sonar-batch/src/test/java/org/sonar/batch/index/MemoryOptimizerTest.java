@@ -19,6 +19,8 @@
  */
 package org.sonar.batch.index;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.database.model.MeasureData;
 import org.sonar.api.database.model.MeasureModel;
@@ -27,16 +29,27 @@ import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.PersistenceMode;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
-import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class MemoryOptimizerTest extends AbstractDbUnitTestCase {
 
+  Caches caches = new Caches();
+
+  @Before
+  public void startCaches() {
+    caches.start();
+  }
+
+  @After
+  public void stopCaches() {
+    caches.stop();
+  }
+
   @Test
   public void shouldEvictDatabaseOnlyMeasure() {
-    MemoryOptimizer optimizer = new MemoryOptimizer(getSession());
+    MemoryOptimizer optimizer = new MemoryOptimizer(getSession(), caches);
     Measure measure = new Measure(CoreMetrics.CONDITIONS_BY_LINE)
         .setData("10=23")
         .setPersistenceMode(PersistenceMode.DATABASE)
@@ -51,7 +64,7 @@ public class MemoryOptimizerTest extends AbstractDbUnitTestCase {
 
   @Test
   public void shouldNotEvictStandardMeasure() {
-    MemoryOptimizer optimizer = new MemoryOptimizer(getSession());
+    MemoryOptimizer optimizer = new MemoryOptimizer(getSession(), caches);
     Measure measure = new Measure(CoreMetrics.PROFILE)
         .setData("Sonar way")
         .setId(12345L);
@@ -66,7 +79,7 @@ public class MemoryOptimizerTest extends AbstractDbUnitTestCase {
   @Test
   public void shouldReloadEvictedMeasure() {
     setupData("shouldReloadEvictedMeasure");
-    MemoryOptimizer optimizer = new MemoryOptimizer(getSession());
+    MemoryOptimizer optimizer = new MemoryOptimizer(getSession(), caches);
     Measure measure = new Measure(CoreMetrics.CONDITIONS_BY_LINE)
         .setData("initial")
         .setPersistenceMode(PersistenceMode.DATABASE)
@@ -77,12 +90,37 @@ public class MemoryOptimizerTest extends AbstractDbUnitTestCase {
 
     optimizer.reloadMeasure(measure);
 
-    assertThat(measure.getData().length(), greaterThan(5));
+    // loaded from cache, not from database
+    assertThat(measure.getData(), is("initial"));
 
     optimizer.flushMemory();
     assertThat(measure.getData(), nullValue());
   }
 
+  @Test
+  public void shouldKeepLastReloadedMeasuresBetweenDecorators() {
+    MemoryOptimizer optimizer = new MemoryOptimizer(getSession(), caches);
+    Measure[] measures = new Measure[MemoryOptimizer.WINDOW_SIZE + 1];
+    for (int i = 0; i < measures.length; i++) {
+      measures[i] = new Measure(CoreMetrics.CONDITIONS_BY_LINE)
+          .setData("data" + i)
+          .setPersistenceMode(PersistenceMode.DATABASE)
+          .setId((long) i);
+      optimizer.evictDataMeasure(measures[i], newPersistedModel());
+      optimizer.reloadMeasure(measures[i]);
+    }
+
+    optimizer.shrinkMemory(MemoryOptimizer.WINDOW_SIZE);
+
+    // the least recently reloaded measure is evicted
+    assertThat(measures[0].getData(), nullValue());
+    assertThat(measures[1].getData(), is("data1"));
+    assertThat(measures[MemoryOptimizer.WINDOW_SIZE].getData(), is("data" + MemoryOptimizer.WINDOW_SIZE));
+
+    optimizer.reloadMeasure(measures[0]);
+    assertThat(measures[0].getData(), is("data0"));
+  }
+
   private MeasureModel newPersistedModel() {
     MeasureModel model = new MeasureModel();
     model.setId(12345L);
@@ -21,32 +21,58 @@ package org.sonar.batch.index;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.DuplicatedSourceException;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.Resource;
-import org.sonar.jpa.test.AbstractDbUnitTestCase;
+import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.source.jdbc.SnapshotSourceDao;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-public class SourcePersisterTest extends AbstractDbUnitTestCase {
+public class SourcePersisterTest extends AbstractDaoTestCase {
 
   private SourcePersister sourcePersister;
+  private ResourcePersister resourcePersister = mock(ResourcePersister.class);
 
   @Before
   public void before() {
     setupData("shared");
-    Snapshot snapshot = getSession().getSingleResult(Snapshot.class, "id", 1000);
-    ResourcePersister resourcePersister = mock(ResourcePersister.class);
+    Snapshot snapshot = mock(Snapshot.class);
+    when(snapshot.getId()).thenReturn(1000);
     when(resourcePersister.getSnapshotOrFail(any(Resource.class))).thenReturn(snapshot);
-    sourcePersister = new SourcePersister(getSession(), resourcePersister);
+    when(resourcePersister.getSnapshot(any(Resource.class))).thenReturn(snapshot);
+    sourcePersister = new SourcePersister(mock(DatabaseSession.class), resourcePersister, getMyBatis(), new SnapshotSourceDao(getMyBatis()), new Settings());
   }
 
   @Test
   public void shouldSaveSource() {
     sourcePersister.saveSource(new JavaFile("org.foo.Bar"), "this is the file content");
+    sourcePersister.flush();
+    checkTables("shouldSaveSource", "snapshot_sources");
+  }
+
+  @Test
+  public void shouldQueueSourcesUntilFlush() {
+    JavaFile file = new JavaFile("org.foo.Bar");
+    sourcePersister.saveSource(file, "this is the file content");
+
+    assertEmptyTables("snapshot_sources");
+    assertThat(sourcePersister.getSource(file)).isEqualTo("this is the file content");
+  }
+
+  @Test
+  public void shouldFlushWhenQueueIsFull() {
+    Settings settings = new Settings().setProperty(SourcePersister.FLUSH_SIZE_PROPERTY, 1);
+    sourcePersister = new SourcePersister(mock(DatabaseSession.class), resourcePersister, getMyBatis(), new SnapshotSourceDao(getMyBatis()), settings);
+
+    sourcePersister.saveSource(new JavaFile("org.foo.Bar"), "this is the file content");
+
     checkTables("shouldSaveSource", "snapshot_sources");
   }
 
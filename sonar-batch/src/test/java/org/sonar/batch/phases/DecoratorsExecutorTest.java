@@ -19,11 +19,15 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.sonar.api.batch.BatchExtensionDictionnary;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafe;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -31,6 +35,12 @@ import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DefaultDecoratorContext;
 import org.sonar.batch.events.EventBus;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.number.OrderingComparisons.greaterThan;
 import static org.hamcrest.number.OrderingComparisons.greaterThanOrEqualTo;
 import static org.hamcrest.number.OrderingComparisons.lessThan;
 import static org.junit.Assert.assertThat;
@@ -39,6 +49,9 @@ import static org.junit.matchers.JUnitMatchers.containsString;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
@@ -66,7 +79,7 @@ public class DecoratorsExecutorTest {
     doThrow(new SonarException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
 
     DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class),
-        mock(EventBus.class));
+        mock(EventBus.class), new Settings());
     try {
       executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), new File("org/foo/Bar.java"));
       fail("Exception has not been thrown");
@@ -76,6 +89,55 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void should_decorate_children_before_parents_concurrently() {
+    Project project = new Project("key");
+    Directory dir1 = new Directory("org/foo");
+    Directory dir2 = new Directory("org/bar");
+    File file1 = new File("org/foo/Foo.java");
+    File file2 = new File("org/foo/Foo2.java");
+    File file3 = new File("org/bar/Bar.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(dir1, dir2));
+    when(index.getChildren(dir1)).thenReturn(Arrays.<Resource>asList(file1, file2));
+    when(index.getChildren(dir2)).thenReturn(Arrays.<Resource>asList(file3));
+    when(index.getChildren(file1)).thenReturn(Collections.<Resource>emptyList());
+    when(index.getChildren(file2)).thenReturn(Collections.<Resource>emptyList());
+    when(index.getChildren(file3)).thenReturn(Collections.<Resource>emptyList());
+    EventBus eventBus = mock(EventBus.class);
+    ThreadSafeDecorator threadSafeDecorator = new ThreadSafeDecorator();
+    RecordingDecorator sequentialDecorator = new RecordingDecorator();
+
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), project, index, eventBus, new Settings());
+    DecoratorContext context = executor.decorateConcurrently(project, Arrays.<Decorator>asList(threadSafeDecorator, sequentialDecorator), 4);
+
+    assertThat(context.getChildren().size(), is(2));
+    assertThat(sequentialDecorator.decorated, is(Arrays.<Resource>asList(file1, file2, file3, dir1, dir2, project)));
+    assertThat(threadSafeDecorator.decorated.size(), is(6));
+    assertThat(threadSafeDecorator.decorated.indexOf(dir1), greaterThan(threadSafeDecorator.decorated.indexOf(file1)));
+    assertThat(threadSafeDecorator.decorated.indexOf(dir1), greaterThan(threadSafeDecorator.decorated.indexOf(file2)));
+    assertThat(threadSafeDecorator.decorated.indexOf(dir2), greaterThan(threadSafeDecorator.decorated.indexOf(file3)));
+    assertThat(threadSafeDecorator.decorated.get(5), is((Resource) project));
+    // one pair of events per group of resources for the thread-safe decorator, one pair per resource for the other one
+    verify(eventBus, times(6 + 12)).fireEvent(any(DecoratorExecutionEvent.class));
+  }
+
+  static class RecordingDecorator implements Decorator {
+    List<Resource> decorated = Collections.synchronizedList(Lists.<Resource>newArrayList());
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      decorated.add(resource);
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  @ThreadSafe
+  static class ThreadSafeDecorator extends RecordingDecorator {
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
@@ -30,11 +30,13 @@ import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.index.DefaultResourcePersister;
 import org.sonar.batch.index.ResourceCache;
 import org.sonar.batch.index.SnapshotCache;
+import org.sonar.core.persistence.DryRunCache;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import javax.persistence.Query;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class UpdateStatusJobTest extends AbstractDbUnitTestCase {
 
@@ -57,12 +59,15 @@ public class UpdateStatusJobTest extends AbstractDbUnitTestCase {
     setupData("sharedFixture", fixture);
 
     DatabaseSession session = getSession();
+    DryRunCache dryRunCache = mock(DryRunCache.class);
+    Snapshot snapshot = loadSnapshot(snapshotId);
     UpdateStatusJob sensor = new UpdateStatusJob(new Settings().appendProperty(CoreProperties.SERVER_BASE_URL, "http://myserver/"), mock(ServerClient.class), session,
         new DefaultResourcePersister(session, mock(ResourcePermissions.class), mock(SnapshotCache.class), mock(ResourceCache.class)),
-        mock(Project.class), loadSnapshot(snapshotId));
+        mock(Project.class), snapshot, dryRunCache);
     sensor.execute();
 
     checkTables(fixture, "snapshots");
+    verify(dryRunCache).reportResourceModification(snapshot.getRootProjectId() != null ? snapshot.getRootProjectId() : snapshot.getResourceId());
   }
 
   private Snapshot loadSnapshot(int id) {
@@ -19,6 +19,8 @@
  */
 package org.sonar.batch.scan;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -27,8 +29,11 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.HttpDownloader;
+import org.sonar.batch.ProjectTree;
 import org.sonar.batch.bootstrap.ServerClient;
-import org.sonar.jpa.test.AbstractDbUnitTestCase;
+import org.sonar.batch.index.Caches;
+import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.source.jdbc.SnapshotSourceDao;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -38,17 +43,33 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
-public class LastSnapshotsTest extends AbstractDbUnitTestCase {
+public class LastSnapshotsTest extends AbstractDaoTestCase {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  Caches caches;
+  ProjectTree projectTree;
+
+  @Before
+  public void before() {
+    caches = new Caches();
+    caches.start();
+    projectTree = mock(ProjectTree.class);
+    when(projectTree.getRootProject()).thenReturn(new Project("myproject"));
+  }
+
+  @After
+  public void after() {
+    caches.stop();
+  }
+
   @Test
   public void should_get_source_of_last_snapshot() {
     setupData("last_snapshot");
     ServerClient server = mock(ServerClient.class);
 
-    LastSnapshots lastSnapshots = new LastSnapshots(new Settings(), getSession(), server);
+    LastSnapshots lastSnapshots = new LastSnapshots(new Settings(), new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
 
     assertThat(lastSnapshots.getSource(newFile())).isEqualTo("this is bar");
     verifyZeroInteractions(server);
@@ -59,7 +80,7 @@ public class LastSnapshotsTest extends AbstractDbUnitTestCase {
     setupData("no_last_snapshot");
     ServerClient server = mock(ServerClient.class);
 
-    LastSnapshots lastSnapshots = new LastSnapshots(new Settings(), getSession(), server);
+    LastSnapshots lastSnapshots = new LastSnapshots(new Settings(), new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
 
     assertThat(lastSnapshots.getSource(newFile())).isEqualTo("");
     verifyZeroInteractions(server);
@@ -73,7 +94,7 @@ public class LastSnapshotsTest extends AbstractDbUnitTestCase {
 
     Settings settings = new Settings();
     settings.setProperty(CoreProperties.DRY_RUN, true);
-    LastSnapshots lastSnapshots = new LastSnapshots(settings, getSession(), server);
+    LastSnapshots lastSnapshots = new LastSnapshots(settings, new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
 
     String source = lastSnapshots.getSource(newFile());
     assertThat(source).isEqualTo("downloaded source of Bar.c");
@@ -88,7 +109,7 @@ public class LastSnapshotsTest extends AbstractDbUnitTestCase {
 
     Settings settings = new Settings();
     settings.setProperty(CoreProperties.DRY_RUN, true);
-    LastSnapshots lastSnapshots = new LastSnapshots(settings, getSession(), server);
+    LastSnapshots lastSnapshots = new LastSnapshots(settings, new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
 
     thrown.expect(HttpDownloader.HttpException.class);
     lastSnapshots.getSource(newFile());
@@ -102,7 +123,7 @@ public class LastSnapshotsTest extends AbstractDbUnitTestCase {
 
     Settings settings = new Settings();
     settings.setProperty(CoreProperties.DRY_RUN, true);
-    LastSnapshots lastSnapshots = new LastSnapshots(settings, getSession(), server);
+    LastSnapshots lastSnapshots = new LastSnapshots(settings, new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
 
     String source = lastSnapshots.getSource(newFile());
     assertThat(source).isEqualTo("");
@@ -114,15 +135,48 @@ public class LastSnapshotsTest extends AbstractDbUnitTestCase {
     setupData("last_snapshot");
     ServerClient server = mock(ServerClient.class);
 
-    LastSnapshots lastSnapshots = new LastSnapshots(new Settings(), getSession(), server);
+    LastSnapshots lastSnapshots = new LastSnapshots(new Settings(), new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
 
     String source = lastSnapshots.getSource(new Project("my-project"));
     assertThat(source).isEqualTo("");
   }
 
+  @Test
+  public void should_load_sources_of_project_only_once() {
+    setupData("last_snapshot");
+    ServerClient server = mock(ServerClient.class);
+
+    LastSnapshots lastSnapshots = new LastSnapshots(new Settings(), new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
+    assertThat(lastSnapshots.getSource(newFile())).isEqualTo("this is bar");
+
+    // sources are already in cache
+    setupData("no_last_snapshot");
+    assertThat(lastSnapshots.getSource(newFile())).isEqualTo("this is bar");
+    assertThat(lastSnapshots.getSource(newFile("Baz.c"))).isEqualTo("");
+  }
+
+  @Test
+  public void should_download_source_from_ws_only_once_if_dry_run() {
+    setupData("last_snapshot");
+    ServerClient server = mock(ServerClient.class);
+    when(server.request(anyString(), eq(false))).thenReturn("downloaded source of Bar.c");
+
+    Settings settings = new Settings();
+    settings.setProperty(CoreProperties.DRY_RUN, true);
+    LastSnapshots lastSnapshots = new LastSnapshots(settings, new SnapshotSourceDao(getMyBatis()), server, projectTree, caches);
+
+    lastSnapshots.getSource(newFile());
+    assertThat(lastSnapshots.getSource(newFile())).isEqualTo("downloaded source of Bar.c");
+    verify(server, times(1)).request("/api/sources?resource=myproject:org/foo/Bar.c&format=txt", false);
+  }
+
   private File newFile() {
-    File file = new File("org/foo", "Bar.c");
-    file.setEffectiveKey("myproject:org/foo/Bar.c");
+    return newFile("Bar.c");
+  }
+
+  private File newFile(String name) {
+    File file = new File("org/foo", name);
+    file.setEffectiveKey("myproject:org/foo/" + name);
     return file;
   }
 }
@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.scan.filesystem;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -205,6 +206,133 @@ public class DefaultModuleFileSystemTest {
     }
   }
 
+  @Test
+  public void should_list_files_once() throws IOException {
+    File basedir = temp.newFolder("base");
+    File sourceDir = new File(basedir, "src");
+    FileUtils.write(new File(sourceDir, "Foo.java"), "foo");
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(temp.newFolder("work"))
+      .addSourceDir(sourceDir);
+
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(1);
+    assertThat(fileSystem.files(FileQuery.onSource().withExclusions("**/Foo.java"))).isEmpty();
+
+    // index is reset when the structure of the module changes
+    File otherSourceDir = new File(basedir, "other");
+    FileUtils.write(new File(otherSourceDir, "Bar.java"), "bar");
+    fileSystem.resetDirs(basedir, null, Arrays.asList(sourceDir, otherSourceDir), Arrays.<File>asList(), Arrays.<File>asList());
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(2);
+  }
+
+  @Test
+  public void should_index_generated_files() throws IOException {
+    File basedir = temp.newFolder("base");
+    File sourceDir = new File(basedir, "src");
+    FileUtils.write(new File(sourceDir, "Foo.java"), "foo");
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(temp.newFolder("work"))
+      .addSourceDir(sourceDir);
+
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(1);
+
+    FileUtils.write(new File(sourceDir, "generated/Bar.java"), "bar");
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(2);
+  }
+
+  @Test
+  public void should_detect_changed_files() throws IOException {
+    File basedir = temp.newFolder("base");
+    File workingDir = temp.newFolder("work");
+    File sourceDir = new File(basedir, "src");
+    File foo = new File(sourceDir, "Foo.java");
+    File bar = new File(sourceDir, "Bar.java");
+    FileUtils.write(foo, "foo");
+    FileUtils.write(bar, "bar");
+
+    FileHashes fileHashes = new FileHashes(new Settings());
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(workingDir)
+      .setFileHashes(fileHashes, workingDir)
+      .addSourceDir(sourceDir);
+    // first analysis : all files are new
+    assertThat(fileSystem.changedFiles(FileQuery.onSource())).hasSize(2);
+    fileSystem.writeHashes();
+    // hashes are stored only at the end of the analysis
+    assertThat(new File(workingDir, FileHashes.FILENAME)).doesNotExist();
+    fileHashes.save();
+    assertThat(new File(workingDir, FileHashes.FILENAME)).exists();
+
+    FileUtils.write(foo, "new foo");
+    File baz = new File(sourceDir, "Baz.java");
+    FileUtils.write(baz, "baz");
+    fileHashes = new FileHashes(new Settings());
+    fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(workingDir)
+      .setFileHashes(fileHashes, workingDir)
+      .addSourceDir(sourceDir);
+    List<File> changedFiles = fileSystem.changedFiles(FileQuery.onSource());
+    assertThat(changedFiles).hasSize(2);
+    assertThat(changedFiles).containsOnly(foo, baz);
+
+    // results are stable during the same analysis, even when the index is rebuilt
+    fileSystem.writeHashes();
+    fileSystem.addTestDir(temp.newFolder("test"));
+    assertThat(fileSystem.changedFiles(FileQuery.onSource())).containsOnly(foo, baz);
+  }
+
+  @Test
+  public void should_drop_hashes_if_changed_files_are_not_requested() throws IOException {
+    File basedir = temp.newFolder("base");
+    File workingDir = temp.newFolder("work");
+    File sourceDir = new File(basedir, "src");
+    FileUtils.write(new File(sourceDir, "Foo.java"), "foo");
+
+    FileHashes fileHashes = new FileHashes(new Settings());
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(workingDir)
+      .setFileHashes(fileHashes, workingDir)
+      .addSourceDir(sourceDir);
+    fileSystem.changedFiles(FileQuery.onSource());
+    fileSystem.writeHashes();
+    fileHashes.save();
+    assertThat(new File(workingDir, FileHashes.FILENAME)).exists();
+
+    // next analysis does not need hashes, so previous ones become outdated
+    fileHashes = new FileHashes(new Settings());
+    fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(workingDir)
+      .setFileHashes(fileHashes, workingDir)
+      .addSourceDir(sourceDir);
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(1);
+    fileSystem.writeHashes();
+    fileHashes.save();
+    assertThat(new File(workingDir, FileHashes.FILENAME)).doesNotExist();
+  }
+
+  @Test
+  public void should_not_store_hashes_without_persistent_working_dir() throws IOException {
+    File basedir = temp.newFolder("base");
+    File sourceDir = new File(basedir, "src");
+    FileUtils.write(new File(sourceDir, "Foo.java"), "foo");
+
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(temp.newFolder("work"))
+      .setFileHashes(new FileHashes(new Settings()), null)
+      .addSourceDir(sourceDir);
+
+    assertThat(fileSystem.changedFiles(FileQuery.onSource())).hasSize(1);
+    fileSystem.writeHashes();
+    assertThat(new File(fileSystem.workingDir(), FileHashes.FILENAME)).doesNotExist();
+  }
+
   @Test
   public void test_reset_dirs() throws IOException {
     File basedir = temp.newFolder();
@@ -0,0 +1,90 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileHashesTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_replace_hashes_on_save() throws Exception {
+    File dir = temp.newFolder();
+    FileHashes fileHashes = new FileHashes(new Settings());
+    assertThat(fileHashes.previousHashes(dir)).isEmpty();
+
+    fileHashes.write(dir, ImmutableMap.of("/src/Foo.java", "abc"));
+    assertThat(new FileHashes(new Settings()).previousHashes(dir)).isEmpty();
+
+    fileHashes.save();
+    assertThat(new FileHashes(new Settings()).previousHashes(dir)).isEqualTo(ImmutableMap.of("/src/Foo.java", "abc"));
+
+    fileHashes.write(dir, ImmutableMap.of("/src/Foo.java", "def"));
+    fileHashes.save();
+    assertThat(new FileHashes(new Settings()).previousHashes(dir)).isEqualTo(ImmutableMap.of("/src/Foo.java", "def"));
+  }
+
+  @Test
+  public void should_not_store_hashes_on_dry_run() throws Exception {
+    File dir = temp.newFolder();
+    FileHashes fileHashes = new FileHashes(new Settings().setProperty(CoreProperties.DRY_RUN, true));
+    assertThat(fileHashes.isWritable(dir)).isFalse();
+
+    fileHashes.write(dir, ImmutableMap.of("/src/Foo.java", "abc"));
+    fileHashes.save();
+
+    assertThat(dir.list()).isEmpty();
+  }
+
+  @Test
+  public void should_delete_discarded_hashes_on_save() throws Exception {
+    File dir = temp.newFolder();
+    FileHashes fileHashes = new FileHashes(new Settings());
+    fileHashes.write(dir, ImmutableMap.of("/src/Foo.java", "abc"));
+    fileHashes.save();
+
+    fileHashes = new FileHashes(new Settings());
+    fileHashes.discard(dir);
+    assertThat(new FileHashes(new Settings()).previousHashes(dir)).hasSize(1);
+    fileHashes.save();
+    assertThat(new FileHashes(new Settings()).previousHashes(dir)).isEmpty();
+  }
+
+  @Test
+  public void should_ignore_modules_without_working_dir() {
+    FileHashes fileHashes = new FileHashes(new Settings());
+
+    assertThat(fileHashes.isWritable(null)).isFalse();
+    assertThat(fileHashes.previousHashes(null)).isEmpty();
+    fileHashes.write(null, ImmutableMap.of("/src/Foo.java", "abc"));
+    fileHashes.discard(null);
+    fileHashes.save();
+  }
+}
@@ -32,4 +32,17 @@ public abstract class Channel<O> {
    * @return false if the Channel doesn't want to consume the character stream, true otherwise.
    */
   public abstract boolean consume(CodeReader code, O output);
+
+  /**
+   * Tells whether the Channel may consume a character stream starting with the given character. The {@link ChannelDispatcher} relies on
+   * this method to skip the channels which can't handle the next character, so an implementation must never return false for a character
+   * that {@link #consume(CodeReader, Object)} could accept. By default, any character is accepted.
+   * 
+   * @param firstChar
+   *          the next character in the stream
+   * @since 3.6
+   */
+  public boolean canConsume(int firstChar) {
+    return true;
+  }
 }
@@ -33,6 +33,7 @@ public class ChannelDispatcher<O> extends Channel<O> {
   private final boolean failIfNoChannelToConsumeOneCharacter;
 
   private final Channel<O>[] channels;
+  private final Channel<O>[][] channelsByFirstChar;
 
   /**
    * @deprecated in version 2.9. Please use the builder() method
@@ -59,20 +60,42 @@ public class ChannelDispatcher<O> extends Channel<O> {
   @Deprecated
   public ChannelDispatcher(List<Channel> channels, boolean failIfNoChannelToConsumeOneCharacter) {
     this.channels = channels.toArray(new Channel[channels.size()]);
+    this.channelsByFirstChar = channelsByFirstChar(this.channels);
     this.failIfNoChannelToConsumeOneCharacter = failIfNoChannelToConsumeOneCharacter;
   }
 
   private ChannelDispatcher(Builder builder) {
     this.channels = builder.channels.toArray(new Channel[builder.channels.size()]);
+    this.channelsByFirstChar = channelsByFirstChar(this.channels);
     this.failIfNoChannelToConsumeOneCharacter = builder.failIfNoChannelToConsumeOneCharacter;
   }
 
+  /**
+   * For each ASCII character, keeps in their original order only the channels which may consume a stream starting with this character.
+   */
+  @SuppressWarnings("unchecked")
+  private static <O> Channel<O>[][] channelsByFirstChar(Channel<O>[] channels) {
+    Channel<O>[][] result = new Channel[FirstCharacters.ASCII_SIZE][];
+    List<Channel<O>> candidates = new ArrayList<Channel<O>>(channels.length);
+    for (int c = 0; c < FirstCharacters.ASCII_SIZE; c++) {
+      candidates.clear();
+      for (Channel<O> channel : channels) {
+        if (channel.canConsume(c)) {
+          candidates.add(channel);
+        }
+      }
+      result[c] = candidates.toArray(new Channel[candidates.size()]);
+    }
+    return result;
+  }
+
   @Override
   public boolean consume(CodeReader code, O output) {
     int nextChar = code.peek();
     while (nextChar != -1) {
       boolean characterConsumed = false;
-      for (Channel<O> channel : channels) {
+      Channel<O>[] candidates = nextChar < FirstCharacters.ASCII_SIZE ? channelsByFirstChar[nextChar] : channels;
+      for (Channel<O> channel : candidates) {
         if (channel.consume(code, output)) {
           characterConsumed = true;
           break;
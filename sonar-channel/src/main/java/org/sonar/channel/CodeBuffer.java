@@ -19,10 +19,16 @@
  */
 package org.sonar.channel;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import org.apache.commons.io.IOUtils;
 
@@ -41,36 +47,77 @@ public class CodeBuffer implements CharSequence {
   private int lastChar = -1;
   private Cursor cursor;
   private char[] buffer;
+  private int bufferSize;
   private int bufferPosition = 0;
   private static final char LF = '\n';
   private static final char CR = '\r';
+  private static final int CHUNK_SIZE = 4096;
   private int tabWidth;
 
   private boolean recordingMode = false;
-  private StringBuilder recordedCharacters = new StringBuilder();
+  private int recordingStart = 0;
 
   protected CodeBuffer(String code, CodeReaderConfiguration configuration) {
-    this(new StringReader(code), configuration);
+    cursor = new Cursor();
+    tabWidth = configuration.getTabWidth();
+    if (configuration.getCodeReaderFilters().length == 0) {
+      buffer = code.toCharArray();
+      bufferSize = buffer.length;
+    } else {
+      read(new StringReader(code), configuration);
+    }
   }
-  
+
   /**
    * Note that this constructor will read everything from reader and will close it.
    */
   protected CodeBuffer(Reader initialCodeReader, CodeReaderConfiguration configuration) {
-    Reader reader = null;
+    cursor = new Cursor();
+    tabWidth = configuration.getTabWidth();
+    read(initialCodeReader, configuration);
+  }
 
+  /**
+   * The buffer is sized from the length of the file, so that it is usually not grown while the file is read.
+   *
+   * @since 3.6
+   */
+  protected CodeBuffer(File file, Charset charset, CodeReaderConfiguration configuration) {
+    cursor = new Cursor();
+    tabWidth = configuration.getTabWidth();
     try {
-      lastChar = -1;
-      cursor = new Cursor();
-      tabWidth = configuration.getTabWidth();
+      read(new InputStreamReader(new FileInputStream(file), charset), configuration, (int) Math.min(file.length() + 1, Integer.MAX_VALUE));
+    } catch (IOException e) {
+      throw new ChannelException(e.getMessage(), e);
+    }
+  }
 
+  private void read(Reader initialCodeReader, CodeReaderConfiguration configuration) {
+    read(initialCodeReader, configuration, CHUNK_SIZE);
+  }
+
+  private void read(Reader initialCodeReader, CodeReaderConfiguration configuration, int initialCapacity) {
+    Reader reader = null;
+
+    try {
       /* Setup the filters on the reader */
       reader = initialCodeReader;
       for (CodeReaderFilter<?> codeReaderFilter : configuration.getCodeReaderFilters()) {
         reader = new Filter(reader, codeReaderFilter, configuration);
       }
 
-      buffer = IOUtils.toCharArray(reader);
+      // filters expect to fill their buffer from its beginning, so characters are read by chunks and appended to the buffer
+      char[] chunk = new char[CHUNK_SIZE];
+      buffer = new char[Math.max(initialCapacity, 1)];
+      int read = reader.read(chunk);
+      while (read != -1) {
+        if (bufferSize + read > buffer.length) {
+          buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferSize + read));
+        }
+        System.arraycopy(chunk, 0, buffer, bufferSize, read);
+        bufferSize += read;
+        read = reader.read(chunk);
+      }
     } catch (IOException e) {
       throw new ChannelException(e.getMessage(), e);
     } finally {
@@ -84,14 +131,11 @@ public class CodeBuffer implements CharSequence {
    * @return the next character or -1 if the end of the stream is reached
    */
   public final int pop() {
-    if (bufferPosition >= buffer.length) {
+    if (bufferPosition >= bufferSize) {
       return -1;
     }
     int character = buffer[bufferPosition++];
     updateCursorPosition(character);
-    if (recordingMode) {
-      recordedCharacters.append((char)character);
-    }
     lastChar = character;
     return character;
   }
@@ -167,14 +211,21 @@ public class CodeBuffer implements CharSequence {
   }
 
   public final void startRecording() {
-    recordingMode = true;
+    if (!recordingMode) {
+      recordingMode = true;
+      recordingStart = bufferPosition;
+    }
   }
 
+  /**
+   * @return the characters consumed since the call to {@link #startRecording()}, as a read-only view on the buffer
+   */
   public final CharSequence stopRecording() {
+    if (!recordingMode) {
+      return "";
+    }
     recordingMode = false;
-    CharSequence result = recordedCharacters;
-    recordedCharacters = new StringBuilder();
-    return result;
+    return CharBuffer.wrap(buffer, recordingStart, bufferPosition - recordingStart).asReadOnlyBuffer();
   }
 
   /**
@@ -190,7 +241,7 @@ public class CodeBuffer implements CharSequence {
   }
 
   protected final int intAt(int index) {
-    if (bufferPosition + index >= buffer.length) {
+    if (bufferPosition + index >= bufferSize) {
       return -1;
     }
     return buffer[bufferPosition + index];
@@ -200,7 +251,7 @@ public class CodeBuffer implements CharSequence {
    * Returns the relative length of the string (i.e. excluding the popped chars)
    */
   public final int length() {
-    return buffer.length - bufferPosition;
+    return bufferSize - bufferPosition;
   }
 
   public final CharSequence subSequence(int start, int end) {
@@ -19,8 +19,10 @@
  */
 package org.sonar.channel;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 
 /**
@@ -70,6 +72,22 @@ public class CodeReader extends CodeBuffer {
     super(code, configuration);
   }
 
+  /**
+   * Creates a code reader on the content of a file. The file is decoded with an InputStreamReader into a buffer presized from
+   * the length of the file, so that the buffer is usually not grown while the file is read.
+   *
+   * @param file
+   *          the file to read code from
+   * @param charset
+   *          the charset of the file
+   * @param configuration
+   *          the configuration parameters
+   * @since 3.6
+   */
+  public CodeReader(File file, Charset charset, CodeReaderConfiguration configuration) {
+    super(file, charset, configuration);
+  }
+
   /**
    * Read and consume the next character
    *
@@ -0,0 +1,51 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.channel;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Set of the ASCII characters which can start a match of a regular expression, when the regular expression is applied with
+ * {@link Matcher#lookingAt()} at the current position of a character stream. Non-ASCII characters are always considered as possible first
+ * characters.
+ * 
+ * @since 3.6
+ */
+public final class FirstCharacters {
+
+  static final int ASCII_SIZE = 128;
+
+  private final boolean[] ascii = new boolean[ASCII_SIZE];
+
+  public FirstCharacters(Pattern pattern) {
+    Matcher matcher = pattern.matcher("");
+    for (int c = 0; c < ASCII_SIZE; c++) {
+      matcher.reset(String.valueOf((char) c));
+      // the regular expression needs to read more than one character to decide: be conservative
+      ascii[c] = matcher.lookingAt() || matcher.hitEnd();
+    }
+  }
+
+  public boolean contains(int c) {
+    return c < 0 || c >= ASCII_SIZE || ascii[c];
+  }
+
+}
@@ -29,6 +29,7 @@ public abstract class RegexChannel<O> extends Channel<O> {
 
   private final StringBuilder tmpBuilder = new StringBuilder();
   private final Matcher matcher;
+  private final FirstCharacters firstCharacters;
 
   /**
    * Create a RegexChannel object with the required regular expression
@@ -37,7 +38,14 @@ public abstract class RegexChannel<O> extends Channel<O> {
    *          regular expression to be used to try matching the next characters in the stream
    */
   public RegexChannel(String regex) {
-    matcher = Pattern.compile(regex).matcher("");
+    Pattern pattern = Pattern.compile(regex);
+    matcher = pattern.matcher("");
+    firstCharacters = new FirstCharacters(pattern);
+  }
+
+  @Override
+  public boolean canConsume(int firstChar) {
+    return firstCharacters.contains(firstChar);
   }
 
   @Override
@@ -48,6 +48,37 @@ public class ChannelDispatcherTest {
     dispatcher.consume(new CodeReader("two words"), new StringBuilder());
   }
 
+  @Test
+  public void shouldOnlyCallChannelsWhichCanConsumeNextCharacter() {
+    DigitChannel digitChannel = new DigitChannel();
+    SpaceDeletionChannel spaceDeletionChannel = new SpaceDeletionChannel();
+    ChannelDispatcher<StringBuilder> dispatcher = ChannelDispatcher.builder().addChannels(digitChannel, spaceDeletionChannel).build();
+    StringBuilder output = new StringBuilder();
+    dispatcher.consume(new CodeReader("a1 b2 \u00e93"), output);
+    assertThat(output.toString(), is("a<1>b<2>\u00e9<3>"));
+    // called for digits and for the non-ASCII character only
+    assertThat(digitChannel.calls, is(4));
+  }
+
+  private static class DigitChannel extends Channel<StringBuilder> {
+    private int calls = 0;
+
+    @Override
+    public boolean canConsume(int firstChar) {
+      return Character.isDigit(firstChar);
+    }
+
+    @Override
+    public boolean consume(CodeReader code, StringBuilder output) {
+      calls++;
+      if (Character.isDigit(code.peek())) {
+        output.append('<').append((char) code.pop()).append('>');
+        return true;
+      }
+      return false;
+    }
+  }
+
   private static class SpaceDeletionChannel extends Channel<StringBuilder> {
     @Override
     public boolean consume(CodeReader code, StringBuilder output) {
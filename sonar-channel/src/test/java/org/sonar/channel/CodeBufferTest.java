@@ -109,6 +109,20 @@ public class CodeBufferTest {
     assertEquals("", reader.stopRecording().toString());
   }
 
+  @Test
+  public void shouldKeepRecordingWhenStartedTwice() {
+    CodeBuffer reader = new CodeBuffer("123456", defaulConfiguration);
+    reader.startRecording();
+    reader.pop();
+    reader.startRecording();
+    reader.pop();
+    CharSequence recorded = reader.stopRecording();
+    reader.pop();
+    assertEquals(2, recorded.length());
+    assertEquals('2', recorded.charAt(1));
+    assertEquals("12", recorded.toString());
+  }
+
   @Test
   public void testCharAt() {
     CodeBuffer reader = new CodeBuffer("123456", defaulConfiguration);
@@ -19,11 +19,15 @@
  */
 package org.sonar.channel;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,6 +40,9 @@ public class CodeReaderTest {
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void testPopWithAppendable() {
     CodeReader reader = new CodeReader("package org.sonar;");
@@ -128,4 +135,68 @@ public class CodeReaderTest {
     assertEquals(3, new CodeReader(new StringReader("123ABC")).popTo(digitMatcher, alphabeticMatcher, token));
     assertEquals("123", token.toString());
   }
+
+  @Test
+  public void testReadFile() throws Exception {
+    File file = temp.newFile("Foo.java");
+    FileUtils.writeStringToFile(file, "caf\u00e9\nbar", "UTF-8");
+
+    CodeReader reader = new CodeReader(file, Charset.forName("UTF-8"), new CodeReaderConfiguration());
+    assertEquals(8, reader.length());
+    StringBuilder token = new StringBuilder();
+    assertEquals(4, reader.popTo(Pattern.compile("[^\\n]+").matcher(""), token));
+    assertEquals("caf\u00e9", token.toString());
+    reader.pop();
+    assertEquals(2, reader.getLinePosition());
+    assertEquals('b', reader.peek());
+  }
+
+  @Test
+  public void testReadEmptyFile() throws Exception {
+    File file = temp.newFile("Empty.java");
+
+    CodeReader reader = new CodeReader(file, Charset.forName("UTF-8"), new CodeReaderConfiguration());
+    assertEquals(0, reader.length());
+    assertEquals(-1, reader.peek());
+  }
+
+  @Test
+  public void testReadFileWithFilter() throws Exception {
+    File file = temp.newFile("Foo.java");
+    FileUtils.writeStringToFile(file, "abc", "UTF-8");
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setCodeReaderFilters(new CodeReaderFilter<Object>() {
+      @Override
+      public int read(char[] filteredBuffer, int offset, int length) throws java.io.IOException {
+        int read = getReader().read(filteredBuffer, offset, length);
+        for (int i = offset; i < offset + read; i++) {
+          filteredBuffer[i] = Character.toUpperCase(filteredBuffer[i]);
+        }
+        return read;
+      }
+    });
+
+    CodeReader reader = new CodeReader(file, Charset.forName("UTF-8"), configuration);
+    assertEquals('A', reader.pop());
+    assertEquals('B', reader.pop());
+    assertEquals('C', reader.pop());
+    assertEquals(-1, reader.pop());
+  }
+
+  @Test
+  public void testReadSourceLargerThanReadChunks() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      sb.append(i % 10);
+    }
+    CodeReader reader = new CodeReader(new StringReader(sb.toString()));
+    assertEquals(10000, reader.length());
+    assertEquals('9', reader.charAt(9999));
+  }
+
+  @Test
+  public void shouldFailToReadUnknownFile() {
+    thrown.expect(ChannelException.class);
+    new CodeReader(new File(temp.getRoot(), "Unknown.java"), Charset.forName("UTF-8"), new CodeReaderConfiguration());
+  }
 }
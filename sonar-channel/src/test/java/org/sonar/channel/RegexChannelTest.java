@@ -22,6 +22,8 @@ package org.sonar.channel;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.regex.Pattern;
+
 import org.junit.Test;
 
 public class RegexChannelTest {
@@ -50,6 +52,28 @@ public class RegexChannelTest {
     assertThat(output.toString(), is("<literal>\">" + veryLongLiteral + "<\"</literal>"));
   }
 
+  @Test
+  public void shouldTellWhichCharactersCanStartMatch() {
+    MyWordChannel wordChannel = new MyWordChannel();
+    assertThat(wordChannel.canConsume('a'), is(true));
+    assertThat(wordChannel.canConsume('_'), is(true));
+    assertThat(wordChannel.canConsume(' '), is(false));
+    assertThat(wordChannel.canConsume('"'), is(false));
+    // no decision on non-ASCII characters
+    assertThat(wordChannel.canConsume('\u00e9'), is(true));
+
+    MyLiteralChannel literalChannel = new MyLiteralChannel();
+    assertThat(literalChannel.canConsume('"'), is(true));
+    assertThat(literalChannel.canConsume('a'), is(false));
+  }
+
+  @Test
+  public void shouldAcceptFirstCharacterOfLongerMatch() {
+    assertThat(new FirstCharacters(Pattern.compile("//[^\\n\\r]*+")).contains('/'), is(true));
+    assertThat(new FirstCharacters(Pattern.compile("//[^\\n\\r]*+")).contains('*'), is(false));
+    assertThat(new FirstCharacters(Pattern.compile("(?i)select")).contains('S'), is(true));
+  }
+
   private static class MyLiteralChannel extends RegexChannel<StringBuilder> {
 
     public MyLiteralChannel() {
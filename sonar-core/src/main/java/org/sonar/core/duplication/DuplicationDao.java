@@ -19,13 +19,13 @@
  */
 package org.sonar.core.duplication;
 
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.ServerComponent;
 import org.sonar.core.persistence.MyBatis;
 
 import java.util.Collection;
-import java.util.List;
 
 public class DuplicationDao implements BatchComponent, ServerComponent {
 
@@ -35,11 +35,15 @@ public class DuplicationDao implements BatchComponent, ServerComponent {
     this.mybatis = mybatis;
   }
 
-  public List<DuplicationUnitDto> selectCandidates(int resourceSnapshotId, Integer lastSnapshotId, String language) {
+  /**
+   * Streams the candidates of all the files of a project snapshot, so that they can be loaded with a single query.
+   * Each row is passed to the handler as a {@link DuplicationUnitDto}.
+   */
+  public void selectCandidatesOfProject(int projectSnapshotId, Integer lastSnapshotId, String language, ResultHandler handler) {
     SqlSession session = mybatis.openSession();
     try {
       DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
-      return mapper.selectCandidates(resourceSnapshotId, lastSnapshotId, language);
+      mapper.selectCandidatesOfProject(projectSnapshotId, lastSnapshotId, language, handler);
     } finally {
       MyBatis.closeQuietly(session);
     }
@@ -20,15 +20,15 @@
 package org.sonar.core.duplication;
 
 import org.apache.ibatis.annotations.Param;
-
-import java.util.List;
+import org.apache.ibatis.session.ResultHandler;
 
 public interface DuplicationMapper {
 
-  List<DuplicationUnitDto> selectCandidates(
-      @Param("resource_snapshot_id") int resourceSnapshotId,
+  void selectCandidatesOfProject(
+      @Param("project_snapshot_id") int projectSnapshotId,
       @Param("last_project_snapshot_id") Integer lastSnapshotId,
-      @Param("language") String language);
+      @Param("language") String language,
+      ResultHandler handler);
 
   void batchInsert(DuplicationUnitDto unit);
 
@@ -23,6 +23,7 @@ package org.sonar.core.issue.db;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.ServerComponent;
@@ -93,15 +94,22 @@ public class IssueDao implements BatchComponent, ServerComponent {
   }
 
   /**
-   * The returned IssueDto list contains only the issue id and the sort column
+   * The returned IssueDto list contains only the issue id and the sort column. Issues are sorted
+   * by the database, and only the <code>limit</code> issues following <code>offset</code> are returned.
    */
-  public List<IssueDto> selectIssues(IssueQuery query, @Nullable Integer userId, SqlSession session){
-    return selectIssues(query, userId, query.maxResults(), session);
+  public List<IssueDto> selectIssues(IssueQuery query, @Nullable Integer userId, int offset, int limit, SqlSession session) {
+    IssueMapper mapper = session.getMapper(IssueMapper.class);
+    return mapper.selectIssues(query, query.componentRoots(), userId, query.requiredRole(), offset + limit, new RowBounds(offset, limit));
+  }
+
+  public int countIssues(IssueQuery query, @Nullable Integer userId, SqlSession session) {
+    IssueMapper mapper = session.getMapper(IssueMapper.class);
+    return mapper.countIssues(query, query.componentRoots(), userId, query.requiredRole());
   }
 
-  private List<IssueDto> selectIssues(IssueQuery query, @Nullable Integer userId, Integer maxResults, SqlSession session){
+  private List<IssueDto> selectIssues(IssueQuery query, @Nullable Integer userId, Integer maxResults, SqlSession session) {
     IssueMapper mapper = session.getMapper(IssueMapper.class);
-    return mapper.selectIssues(query, query.componentRoots(), userId, query.requiredRole(), maxResults);
+    return mapper.selectIssues(query, query.componentRoots(), userId, query.requiredRole(), maxResults, RowBounds.DEFAULT);
   }
 
   @VisibleForTesting
@@ -20,6 +20,7 @@
 package org.sonar.core.issue.db;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.issue.IssueQuery;
 
 import javax.annotation.Nullable;
@@ -33,8 +34,15 @@ public interface IssueMapper {
 
   List<IssueDto> selectNonClosedIssuesByModule(int rootComponentId);
 
+  /**
+   * Issues are sorted according to the query. Only the id and the sort column are loaded.
+   */
   List<IssueDto> selectIssues(@Param("query") IssueQuery query, @Param("componentRootKeys") Collection<String> componentRootKeys,
-                              @Nullable @Param("userId") Integer userId, @Param("role") String role, @Param("maxResults") Integer maxResult);
+                              @Nullable @Param("userId") Integer userId, @Param("role") String role, @Param("maxResults") Integer maxResult,
+                              RowBounds rowBounds);
+
+  int countIssues(@Param("query") IssueQuery query, @Param("componentRootKeys") Collection<String> componentRootKeys,
+                  @Nullable @Param("userId") Integer userId, @Param("role") String role);
 
   void insert(IssueDto issue);
 
@@ -19,6 +19,7 @@
  */
 package org.sonar.core.issue.db;
 
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.IssueComment;
@@ -58,27 +59,40 @@ public abstract class IssueStorage {
   }
 
   public void save(Iterable<DefaultIssue> issues) {
-    // Batch session can not be used. It does not return the number of updated rows,
-    // required for detecting conflicts.
-    SqlSession session = mybatis.openSession();
-    int count = 0;
+    // Batch session does not return the number of updated rows, required for detecting conflicts.
+    // Updates conditioned by the date of selection are executed by a second, non-batch, session.
+    // The batch session is not flushed before the commit of the other session, so that both
+    // never wait for the same locks.
+    SqlSession session = mybatis.getSessionFactory().openSession(ExecutorType.BATCH);
+    SqlSession checkedSession = mybatis.openSession();
     IssueMapper issueMapper = session.getMapper(IssueMapper.class);
+    IssueMapper checkedIssueMapper = checkedSession.getMapper(IssueMapper.class);
     IssueChangeMapper issueChangeMapper = session.getMapper(IssueChangeMapper.class);
     Date now = new Date();
+    int count = 0;
     try {
       for (DefaultIssue issue : issues) {
         if (issue.isNew()) {
           insert(issueMapper, now, issue);
         } else if (issue.isChanged()) {
-          update(issueMapper, now, issue);
+          if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
+            // Issue is closed by scan or changed by end-user
+            issueMapper.update(IssueDto.toDtoForUpdate(issue, now));
+          } else {
+            updateIfNoConflict(checkedIssueMapper, now, issue);
+          }
         }
         insertChanges(issueChangeMapper, issue);
-        if (count++> BatchSession.MAX_BATCH_SIZE) {
+        if (count++ > BatchSession.MAX_BATCH_SIZE) {
+          checkedSession.commit();
           session.commit();
+          count = 0;
         }
       }
+      checkedSession.commit();
       session.commit();
     } finally {
+      MyBatis.closeQuietly(checkedSession);
       MyBatis.closeQuietly(session);
     }
   }
@@ -91,19 +105,12 @@ public abstract class IssueStorage {
     issueMapper.insert(dto);
   }
 
-  private void update(IssueMapper issueMapper, Date now, DefaultIssue issue) {
-    IssueDto dto = IssueDto.toDtoForUpdate(issue, now);
-    if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
-      // Issue is closed by scan or changed by end-user
-      issueMapper.update(dto);
-
-    } else {
-      int count = issueMapper.updateIfBeforeSelectedDate(dto);
-      if (count == 0) {
-        // End-user and scan changed the issue at the same time.
-        // See https://jira.codehaus.org/browse/SONAR-4309
-        conflictResolver.resolve(issue, issueMapper);
-      }
+  private void updateIfNoConflict(IssueMapper issueMapper, Date now, DefaultIssue issue) {
+    int count = issueMapper.updateIfBeforeSelectedDate(IssueDto.toDtoForUpdate(issue, now));
+    if (count == 0) {
+      // End-user and scan changed the issue at the same time.
+      // See https://jira.codehaus.org/browse/SONAR-4309
+      conflictResolver.resolve(issue, issueMapper);
     }
   }
 
@@ -21,6 +21,7 @@ package org.sonar.core.notification;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import org.sonar.api.database.DatabaseSession;
@@ -32,9 +33,13 @@ import org.sonar.core.properties.PropertiesDao;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import javax.annotation.Nullable;
+import javax.persistence.Query;
+
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @since 2.10
@@ -45,6 +50,9 @@ public class DefaultNotificationManager implements NotificationManager {
   private DatabaseSessionFactory sessionFactory;
   private PropertiesDao propertiesDao;
 
+  private final Map<List<Object>, List<String>> subscribersCache = Maps.newConcurrentMap();
+  private volatile boolean processingQueue = false;
+
   /**
    * Default constructor used by Pico
    */
@@ -77,22 +85,48 @@ public class DefaultNotificationManager implements NotificationManager {
    * Give the notification queue so that it can be processed
    */
   public NotificationQueueElement getFromQueue() {
+    List<NotificationQueueElement> notifications = getFromQueue(1);
+    return notifications.isEmpty() ? null : notifications.get(0);
+  }
+
+  /**
+   * Number of notifications in the queue.
+   *
+   * @since 3.6
+   */
+  public long countQueue() {
+    DatabaseSession session = sessionFactory.getSession();
+    Query query = session.getEntityManager().createQuery("SELECT COUNT(n) FROM " + NotificationQueueElement.class.getSimpleName() + " n");
+    return ((Number) query.getSingleResult()).longValue();
+  }
+
+  /**
+   * Give the oldest notifications of the queue, at most <code>count</code>. They are removed from the queue
+   * within a single transaction, before being delivered: they are lost if the server stops before delivering them.
+   * <p/>
+   * Subscribers are cached until the next call, as the notifications of a same batch are generally
+   * dispatched to the same subscribers. Changes of subscriptions are so taken into account on next batch.
+   */
+  public List<NotificationQueueElement> getFromQueue(int count) {
+    subscribersCache.clear();
     DatabaseSession session = sessionFactory.getSession();
     String hql = "FROM " + NotificationQueueElement.class.getSimpleName() + " ORDER BY createdAt ASC";
-    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(1).getResultList();
+    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(count).getResultList();
     if (notifications.isEmpty()) {
       // UGLY - waiting for a clean way to manage JDBC connections without Hibernate - myBatis is coming soon
       // This code is highly coupled to org.sonar.server.notifications.NotificationService, which periodically executes
       // several times the methods getFromQueue() and isEnabled(). The session is closed only at the end of the task -
       // when there are no more notifications to process - to ensure "better" performances.
       sessionFactory.clear();
-      return null;
+      processingQueue = false;
+      return Collections.emptyList();
+    }
+    for (NotificationQueueElement notification : notifications) {
+      session.removeWithoutFlush(notification);
     }
-    NotificationQueueElement notification = notifications.get(0);
-    session.removeWithoutFlush(notification);
     session.commit();
-    return notification;
-
+    processingQueue = true;
+    return notifications;
   }
 
   /**
@@ -106,11 +140,11 @@ public class DefaultNotificationManager implements NotificationManager {
       String channelKey = channel.getKey();
 
       // Find users subscribed globally to the dispatcher (i.e. not on a specific project)
-      addUsersToRecipientListForChannel(propertiesDao.findUsersForNotification(dispatcherKey, channelKey, null), recipients, channel);
+      addUsersToRecipientListForChannel(findUsersForNotification(dispatcherKey, channelKey, null), recipients, channel);
 
       if (resourceId != null) {
         // Find users subscribed to the dispatcher specifically for the resource
-        addUsersToRecipientListForChannel(propertiesDao.findUsersForNotification(dispatcherKey, channelKey, resourceId.longValue()), recipients, channel);
+        addUsersToRecipientListForChannel(findUsersForNotification(dispatcherKey, channelKey, resourceId.longValue()), recipients, channel);
       }
     }
 
@@ -123,12 +157,38 @@ public class DefaultNotificationManager implements NotificationManager {
 
     SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationChannel channel : notificationChannels) {
-      addUsersToRecipientListForChannel(propertiesDao.findNotificationSubscribers(dispatcherKey, channel.getKey(), componentKey), recipients, channel);
+      addUsersToRecipientListForChannel(findNotificationSubscribers(dispatcherKey, channel.getKey(), componentKey), recipients, channel);
     }
 
     return recipients;
   }
 
+  private List<String> findUsersForNotification(String dispatcherKey, String channelKey, @Nullable Long resourceId) {
+    List<Object> cacheKey = Arrays.<Object>asList("users", dispatcherKey, channelKey, resourceId);
+    List<String> users = processingQueue ? subscribersCache.get(cacheKey) : null;
+    if (users == null) {
+      users = propertiesDao.findUsersForNotification(dispatcherKey, channelKey, resourceId);
+      cache(cacheKey, users);
+    }
+    return users;
+  }
+
+  private List<String> findNotificationSubscribers(String dispatcherKey, String channelKey, @Nullable String componentKey) {
+    List<Object> cacheKey = Arrays.<Object>asList("subscribers", dispatcherKey, channelKey, componentKey);
+    List<String> users = processingQueue ? subscribersCache.get(cacheKey) : null;
+    if (users == null) {
+      users = propertiesDao.findNotificationSubscribers(dispatcherKey, channelKey, componentKey);
+      cache(cacheKey, users);
+    }
+    return users;
+  }
+
+  private void cache(List<Object> cacheKey, List<String> users) {
+    if (processingQueue) {
+      subscribersCache.put(cacheKey, users);
+    }
+  }
+
   @VisibleForTesting
   protected List<NotificationChannel> getChannels() {
     return Arrays.asList(notificationChannels);
@@ -33,6 +33,7 @@ import org.sonar.core.resource.ResourceIndexerDao;
 import org.sonar.core.resource.ResourceKeyUpdaterDao;
 import org.sonar.core.rule.RuleDao;
 import org.sonar.core.source.jdbc.SnapshotDataDao;
+import org.sonar.core.source.jdbc.SnapshotSourceDao;
 import org.sonar.core.template.LoadedTemplateDao;
 import org.sonar.core.user.AuthorDao;
 import org.sonar.core.user.AuthorizationDao;
@@ -69,6 +70,7 @@ public final class DaoUtils {
       RuleDao.class,
       SemaphoreDao.class,
       SnapshotDataDao.class,
+      SnapshotSourceDao.class,
       UserDao.class
     );
   }
@@ -0,0 +1,82 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.persistence;
+
+import org.sonar.api.BatchComponent;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tracks the modifications of the data copied into dry-run databases, so that these databases
+ * can be generated once and reused until a new analysis of the project or a change of rules, profiles or issues.
+ * <p/>
+ * Modifications are counted instead of being dated, so that versions do not depend on the clocks of server and batches.
+ *
+ * @since 3.6
+ */
+public class DryRunCache implements ServerComponent, BatchComponent {
+
+  public static final String VERSION_KEY = "sonar.dryRun.cache.version";
+
+  private final PropertiesDao propertiesDao;
+
+  public DryRunCache(PropertiesDao propertiesDao) {
+    this.propertiesDao = propertiesDao;
+  }
+
+  /**
+   * Version of the data copied into the dry-run database of the project, or of the database without project if null.
+   * It changes on each modification of rules or profiles and, if the project is not null, on each modification of the project.
+   */
+  public String getVersion(@Nullable Long projectId) {
+    String version = String.valueOf(counter(propertiesDao.selectGlobalProperty(VERSION_KEY)));
+    if (projectId != null) {
+      version += "-" + counter(propertiesDao.selectProjectProperty(projectId, VERSION_KEY));
+    }
+    return version;
+  }
+
+  /**
+   * Rules, profiles or quality models have been changed. All dry-run databases must be regenerated.
+   */
+  public synchronized void reportGlobalModification() {
+    long counter = counter(propertiesDao.selectGlobalProperty(VERSION_KEY));
+    propertiesDao.setProperty(new PropertyDto().setKey(VERSION_KEY).setValue(String.valueOf(counter + 1)));
+  }
+
+  /**
+   * The project has been analysed or its issues have been changed. Only its dry-run database must be regenerated.
+   * Note that analyses of a same project are not executed concurrently, see ProjectLock.
+   */
+  public synchronized void reportResourceModification(long rootProjectId) {
+    long counter = counter(propertiesDao.selectProjectProperty(rootProjectId, VERSION_KEY));
+    propertiesDao.setProperty(new PropertyDto().setKey(VERSION_KEY).setResourceId(rootProjectId).setValue(String.valueOf(counter + 1)));
+  }
+
+  private static long counter(@Nullable PropertyDto property) {
+    if (property == null || property.getValue() == null) {
+      return 0L;
+    }
+    return Long.parseLong(property.getValue());
+  }
+}
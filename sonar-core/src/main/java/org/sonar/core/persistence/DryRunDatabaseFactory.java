@@ -19,8 +19,14 @@
  */
 package org.sonar.core.persistence;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.platform.ServerFileSystem;
@@ -28,27 +34,125 @@ import org.sonar.api.utils.SonarException;
 
 import javax.annotation.Nullable;
 import javax.sql.DataSource;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Generates the H2 databases used by dry-run analysis. A database is generated once per project
+ * and kept on disk until {@link DryRunCache} reports a modification of the project, of rules or of profiles.
+ * Files are never modified once created, so that they can be read concurrently. An obsolete database is
+ * removed only when the next one is generated, as it may still be read in the meantime.
+ */
 public class DryRunDatabaseFactory implements ServerComponent {
   private static final String DIALECT = "h2";
   private static final String DRIVER = "org.h2.Driver";
   private static final String URL = "jdbc:h2:";
   private static final String USER = "sonar";
   private static final String PASSWORD = "sonar";
+  private static final String DB_EXTENSION = ".h2.db";
+  private static final String HASH_EXTENSION = ".md5";
+  private static final String DEFAULT_CACHE_KEY = "default";
+
   private final Database database;
   private final ServerFileSystem serverFileSystem;
+  private final DryRunCache dryRunCache;
+  private final ConcurrentMap<String, Object> locks = Maps.newConcurrentMap();
+  private final Map<String, File> lastDatabases = Maps.newHashMap();
 
-  public DryRunDatabaseFactory(Database database, ServerFileSystem serverFileSystem) {
+  public DryRunDatabaseFactory(Database database, ServerFileSystem serverFileSystem, DryRunCache dryRunCache) {
     this.database = database;
     this.serverFileSystem = serverFileSystem;
+    this.dryRunCache = dryRunCache;
+  }
+
+  public void start() {
+    // rules can be registered at startup
+    FileUtils.deleteQuietly(cacheRootDir());
   }
 
   public byte[] createDatabaseForDryRun(@Nullable Long projectId) {
-    String name = serverFileSystem.getTempDir().getAbsolutePath() + "db-" + System.nanoTime();
+    File dbFile = cachedDatabase(projectId);
+    try {
+      return Files.toByteArray(dbFile);
+    } catch (IOException e) {
+      throw new SonarException("Unable to read h2 database file", e);
+    }
+  }
 
+  /**
+   * MD5 hash of the database returned by {@link #createDatabaseForDryRun(Long)}, so that batches can reuse
+   * their local copy when nothing changed.
+   */
+  public String getDatabaseHashForDryRun(@Nullable Long projectId) {
+    File dbFile = cachedDatabase(projectId);
+    try {
+      return Files.toString(hashFile(dbFile), Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new SonarException("Unable to read hash of h2 database file", e);
+    }
+  }
+
+  private File cachedDatabase(@Nullable Long projectId) {
+    String cacheKey = projectId == null ? DEFAULT_CACHE_KEY : projectId.toString();
+    File cacheDir = new File(cacheRootDir(), cacheKey);
+    String version = dryRunCache.getVersion(projectId);
+    File dbFile = new File(cacheDir, version + DB_EXTENSION);
+    if (!dbFile.exists()) {
+      synchronized (lock(cacheKey)) {
+        if (!dbFile.exists()) {
+          createDatabase(projectId, cacheDir, version);
+          deleteObsoleteDatabases(cacheKey, cacheDir, dbFile);
+        }
+      }
+    }
+    return dbFile;
+  }
+
+  /**
+   * Removes the files of the databases generated before the previous one, including temporary files of failed generations.
+   * The previous database is kept as it can still be read by a request that started before the generation of the new one.
+   */
+  private void deleteObsoleteDatabases(String cacheKey, File cacheDir, File dbFile) {
+    File previousDbFile;
+    synchronized (lastDatabases) {
+      previousDbFile = lastDatabases.put(cacheKey, dbFile);
+    }
+    Set<File> keptFiles = Sets.newHashSet(dbFile, hashFile(dbFile));
+    if (previousDbFile != null) {
+      keptFiles.add(previousDbFile);
+      keptFiles.add(hashFile(previousDbFile));
+    }
+    File[] files = cacheDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!keptFiles.contains(file)) {
+          FileUtils.deleteQuietly(file);
+        }
+      }
+    }
+  }
+
+  private Object lock(String cacheKey) {
+    Object lock = locks.get(cacheKey);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = locks.putIfAbsent(cacheKey, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
+  private void createDatabase(@Nullable Long projectId, File cacheDir, String version) {
+    // the database is generated under a temporary name, so that it's never read before being complete
+    String name = new File(cacheDir, version + "-" + System.nanoTime()).getAbsolutePath();
     try {
       DataSource source = database.getDataSource();
       BasicDataSource destination = create(DIALECT, DRIVER, USER, PASSWORD, URL + name);
@@ -56,9 +160,14 @@ public class DryRunDatabaseFactory implements ServerComponent {
       copy(source, destination, projectId);
       close(destination);
 
-      return dbFileContent(name);
+      File tempFile = new File(name + DB_EXTENSION);
+      File dbFile = new File(cacheDir, version + DB_EXTENSION);
+      Files.write(md5(tempFile), hashFile(dbFile), Charsets.UTF_8);
+      Files.move(tempFile, dbFile);
     } catch (SQLException e) {
       throw new SonarException("Unable to create database for DryRun", e);
+    } catch (IOException e) {
+      throw new SonarException("Unable to store database for DryRun", e);
     }
   }
 
@@ -96,14 +205,20 @@ public class DryRunDatabaseFactory implements ServerComponent {
     destination.close();
   }
 
-  private byte[] dbFileContent(String name) {
+  private File cacheRootDir() {
+    return new File(serverFileSystem.getTempDir(), "dryRun");
+  }
+
+  private static File hashFile(File dbFile) {
+    return new File(dbFile.getParentFile(), dbFile.getName() + HASH_EXTENSION);
+  }
+
+  private static String md5(File file) throws IOException {
+    InputStream input = FileUtils.openInputStream(file);
     try {
-      File dbFile = new File(name + ".h2.db");
-      byte[] content = Files.toByteArray(dbFile);
-      dbFile.delete();
-      return content;
-    } catch (IOException e) {
-      throw new SonarException("Unable to read h2 database file", e);
+      return DigestUtils.md5Hex(input);
+    } finally {
+      IOUtils.closeQuietly(input);
     }
   }
 }
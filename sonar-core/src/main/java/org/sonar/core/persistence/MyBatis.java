@@ -56,6 +56,7 @@ import org.sonar.core.rule.RuleDto;
 import org.sonar.core.rule.RuleMapper;
 import org.sonar.core.source.jdbc.SnapshotDataDto;
 import org.sonar.core.source.jdbc.SnapshotDataMapper;
+import org.sonar.core.source.jdbc.SnapshotSourceDto;
 import org.sonar.core.source.jdbc.SnapshotSourceMapper;
 import org.sonar.core.template.LoadedTemplateDto;
 import org.sonar.core.template.LoadedTemplateMapper;
@@ -116,6 +117,7 @@ public class MyBatis implements BatchComponent, ServerComponent {
     loadAlias(conf, "Issue", IssueDto.class);
     loadAlias(conf, "IssueChange", IssueChangeDto.class);
     loadAlias(conf, "SnapshotData", SnapshotDataDto.class);
+    loadAlias(conf, "SnapshotSource", SnapshotSourceDto.class);
     loadAlias(conf, "ActionPlanIssue", ActionPlanDto.class);
     loadAlias(conf, "ActionPlanStats", ActionPlanStatsDto.class);
 
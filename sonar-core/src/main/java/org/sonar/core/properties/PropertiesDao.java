@@ -89,6 +89,16 @@ public class PropertiesDao implements BatchComponent, ServerComponent {
     }
   }
 
+  public PropertyDto selectProjectProperty(long resourceId, String propertyKey) {
+    SqlSession session = mybatis.openSession();
+    PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
+    try {
+      return mapper.selectByKey(new PropertyDto().setKey(propertyKey).setResourceId(resourceId));
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   public List<PropertyDto> selectProjectProperties(String resourceKey) {
     SqlSession session = mybatis.openSession();
     PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
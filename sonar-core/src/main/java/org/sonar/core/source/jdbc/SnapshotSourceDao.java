@@ -20,6 +20,7 @@
 
 package org.sonar.core.source.jdbc;
 
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.core.persistence.MyBatis;
 
@@ -46,4 +47,23 @@ public class SnapshotSourceDao {
       MyBatis.closeQuietly(session);
     }
   }
+
+  /**
+   * Streams the sources of the last snapshots of all the files of a project, including its modules.
+   * Each row is passed to the handler as a {@link SnapshotSourceDto}.
+   */
+  public void selectLastSourcesOfProject(String projectKey, ResultHandler handler) {
+    SqlSession session = mybatis.openSession();
+    try {
+      SnapshotSourceMapper mapper = session.getMapper(SnapshotSourceMapper.class);
+      mapper.selectLastSourcesOfProject(projectKey, handler);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  public void insert(SqlSession session, long snapshotId, String source) {
+    SnapshotSourceMapper mapper = session.getMapper(SnapshotSourceMapper.class);
+    mapper.insert(snapshotId, source);
+  }
 }
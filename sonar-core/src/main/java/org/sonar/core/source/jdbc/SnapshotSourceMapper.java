@@ -21,6 +21,7 @@
 package org.sonar.core.source.jdbc;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 /**
  * @since 3.6
@@ -28,4 +29,8 @@ import org.apache.ibatis.annotations.Param;
 public interface SnapshotSourceMapper {
 
   String selectSnapshotSource(@Param("sid") long snapshotId);
+
+  void selectLastSourcesOfProject(@Param("projectKey") String projectKey, ResultHandler handler);
+
+  void insert(@Param("sid") long snapshotId, @Param("data") String data);
 }
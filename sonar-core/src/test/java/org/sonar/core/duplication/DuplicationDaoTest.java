@@ -19,6 +19,9 @@
  */
 package org.sonar.core.duplication;
 
+import com.google.common.collect.Lists;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
@@ -39,10 +42,16 @@ public class DuplicationDaoTest extends AbstractDaoTestCase {
   }
 
   @Test
-  public void shouldGetByHash() throws Exception {
+  public void shouldGetCandidatesOfProject() throws Exception {
     setupData("shouldGetByHash");
 
-    List<DuplicationUnitDto> blocks = dao.selectCandidates(10, 7, "java");
+    final List<DuplicationUnitDto> blocks = Lists.newArrayList();
+    ResultHandler handler = new ResultHandler() {
+      public void handleResult(ResultContext context) {
+        blocks.add((DuplicationUnitDto) context.getResultObject());
+      }
+    };
+    dao.selectCandidatesOfProject(9, 7, "java", handler);
     assertThat(blocks.size(), is(1));
 
     DuplicationUnitDto block = blocks.get(0);
@@ -53,7 +62,8 @@ public class DuplicationDaoTest extends AbstractDaoTestCase {
     assertThat("block end line", block.getEndLine(), is(2));
 
     // check null for lastSnapshotId
-    blocks = dao.selectCandidates(10, null, "java");
+    blocks.clear();
+    dao.selectCandidatesOfProject(9, null, "java", handler);
     assertThat(blocks.size(), is(2));
   }
 
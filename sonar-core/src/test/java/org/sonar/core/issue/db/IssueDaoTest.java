@@ -23,12 +23,14 @@ package org.sonar.core.issue.db;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
+import org.apache.ibatis.session.SqlSession;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.issue.IssueQuery;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.MyBatis;
 
 import java.util.List;
 
@@ -289,6 +291,49 @@ public class IssueDaoTest extends AbstractDaoTestCase {
     assertThat(results.get(0).getIssueCloseDate()).isNotNull();
   }
 
+  @Test
+  public void should_sort_and_paginate_issues() {
+    setupData("shared", "should_select_returned_sorted_result_by_assignee");
+
+    SqlSession session = getMyBatis().openSession();
+    try {
+      IssueQuery query = IssueQuery.builder().sort(IssueQuery.SORT_BY_ASSIGNEE).asc(true).requiredRole("user").build();
+      assertThat(getIssueIds(dao.selectIssues(query, null, 0, 10, session))).containsExactly(100l, 102l, 101l);
+      assertThat(getIssueIds(dao.selectIssues(query, null, 1, 1, session))).containsExactly(102l);
+
+      query = IssueQuery.builder().sort(IssueQuery.SORT_BY_ASSIGNEE).asc(false).requiredRole("user").build();
+      assertThat(getIssueIds(dao.selectIssues(query, null, 0, 2, session))).containsExactly(101l, 102l);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  @Test
+  public void should_sort_issues_by_severity() {
+    setupData("shared", "should_select_returned_sorted_result_by_severity");
+
+    SqlSession session = getMyBatis().openSession();
+    try {
+      IssueQuery query = IssueQuery.builder().sort(IssueQuery.SORT_BY_SEVERITY).asc(false).requiredRole("user").build();
+      assertThat(getIssueIds(dao.selectIssues(query, null, 0, 10, session))).containsExactly(101l, 102l, 100l);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  @Test
+  public void should_count_issues() {
+    setupData("shared", "should_select_by_assigned");
+
+    SqlSession session = getMyBatis().openSession();
+    try {
+      assertThat(dao.countIssues(IssueQuery.builder().requiredRole("user").build(), null, session)).isEqualTo(3);
+      assertThat(dao.countIssues(IssueQuery.builder().assigned(true).requiredRole("user").build(), null, session)).isEqualTo(2);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   @Test
   public void should_select_non_closed_issues_by_module() {
     setupData("shared", "should_select_non_closed_issues_by_module");
@@ -31,6 +31,7 @@ import org.sonar.api.utils.DateUtils;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.persistence.MyBatis;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 
@@ -144,6 +145,54 @@ public class IssueStorageTest extends AbstractDaoTestCase {
     checkTables("should_resolve_conflicts_on_updates", new String[]{"id", "created_at", "updated_at"}, "issues");
   }
 
+  @Test
+  public void should_resolve_conflicts_of_several_issues() throws Exception {
+    setupData("should_resolve_conflicts_of_several_issues");
+
+    FakeSaver saver = new FakeSaver(getMyBatis(), new FakeRuleFinder());
+
+    Date date = DateUtils.parseDate("2013-05-18");
+    // updated in database after the loading by scan
+    DefaultIssue conflicting = new DefaultIssue()
+      .setKey("ABCDE")
+      .setNew(false)
+      .setChanged(true)
+      .setCreationDate(DateUtils.parseDate("2005-05-12"))
+      .setUpdateDate(date)
+      .setRuleKey(RuleKey.of("squid", "AvoidCycles"))
+      .setComponentKey("struts:Action")
+      .setSelectedAt(DateUtils.parseDate("2005-01-01"))
+      .setLine(444)
+      .setSeverity("BLOCKER")
+      .setChecksum("FFFFF")
+      .setAttribute("JIRA", "http://jira.com")
+      .setAssignee("looser")
+      .setResolution(null)
+      .setStatus("REOPEN");
+
+    // not updated in database since the loading by scan
+    DefaultIssue notConflicting = new DefaultIssue()
+      .setKey("FGHIJ")
+      .setNew(false)
+      .setChanged(true)
+      .setCreationDate(DateUtils.parseDate("2005-05-12"))
+      .setUpdateDate(date)
+      .setRuleKey(RuleKey.of("squid", "AvoidCycles"))
+      .setComponentKey("struts:Action")
+      .setSelectedAt(DateUtils.parseDate("2005-01-01"))
+      .setLine(444)
+      .setSeverity("BLOCKER")
+      .setChecksum("FFFFF")
+      .setAttribute("JIRA", "http://jira.com")
+      .setAssignee("scanner")
+      .setResolution(null)
+      .setStatus("REOPEN");
+
+    saver.save(Arrays.asList(conflicting, notConflicting));
+
+    checkTables("should_resolve_conflicts_of_several_issues", new String[]{"id", "created_at", "updated_at"}, "issues");
+  }
+
   static class FakeSaver extends IssueStorage {
     protected FakeSaver(MyBatis mybatis, RuleFinder ruleFinder) {
       super(mybatis, ruleFinder);
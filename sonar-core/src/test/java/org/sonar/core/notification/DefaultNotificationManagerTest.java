@@ -32,12 +32,15 @@ import org.sonar.core.properties.PropertiesDao;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
@@ -85,6 +88,53 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     assertThat(manager.getFromQueue(), nullValue());
   }
 
+  @Test
+  public void should_get_batch_from_queue() throws Exception {
+    Notification first = new Notification("first");
+    Notification second = new Notification("second");
+    Notification third = new Notification("third");
+    manager.scheduleForSending(first);
+    manager.scheduleForSending(second);
+    manager.scheduleForSending(third);
+    assertThat(manager.countQueue()).isEqualTo(3L);
+
+    List<NotificationQueueElement> queueElements = manager.getFromQueue(2);
+    assertThat(queueElements).hasSize(2);
+    assertThat(manager.countQueue()).isEqualTo(1L);
+
+    queueElements = manager.getFromQueue(2);
+    assertThat(queueElements).hasSize(1);
+    assertThat(manager.getFromQueue(2)).isEmpty();
+  }
+
+  @Test
+  public void should_cache_subscribers_while_processing_queue() {
+    when(propertiesDao.findNotificationSubscribers("NewViolations", "Email", "struts")).thenReturn(Lists.newArrayList("user1"));
+
+    // queue is not processed
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    verify(propertiesDao, times(2)).findNotificationSubscribers("NewViolations", "Email", "struts");
+
+    manager.scheduleForSending(new Notification("test"));
+    manager.getFromQueue(10);
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    verify(propertiesDao, times(3)).findNotificationSubscribers("NewViolations", "Email", "struts");
+
+    // cache is cleared on next batch
+    manager.scheduleForSending(new Notification("test"));
+    manager.getFromQueue(10);
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    verify(propertiesDao, times(4)).findNotificationSubscribers("NewViolations", "Email", "struts");
+
+    // cache is not used when queue is empty
+    manager.getFromQueue(10);
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    verify(propertiesDao, times(6)).findNotificationSubscribers("NewViolations", "Email", "struts");
+  }
+
   @Test
   public void shouldFindNoRecipient() {
     assertThat(manager.findSubscribedRecipientsForDispatcher(dispatcher, 45).asMap().entrySet()).hasSize(0);
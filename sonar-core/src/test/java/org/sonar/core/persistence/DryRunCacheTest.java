@@ -0,0 +1,62 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.persistence;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.core.properties.PropertiesDao;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DryRunCacheTest extends AbstractDaoTestCase {
+
+  DryRunCache dryRunCache;
+
+  @Before
+  public void setUp() {
+    dryRunCache = new DryRunCache(new PropertiesDao(getMyBatis()));
+  }
+
+  @Test
+  public void should_have_initial_version_by_default() {
+    assertThat(dryRunCache.getVersion(null)).isEqualTo("0");
+    assertThat(dryRunCache.getVersion(123L)).isEqualTo("0-0");
+  }
+
+  @Test
+  public void should_report_global_modification() {
+    dryRunCache.reportGlobalModification();
+    assertThat(dryRunCache.getVersion(null)).isEqualTo("1");
+    assertThat(dryRunCache.getVersion(123L)).isEqualTo("1-0");
+
+    dryRunCache.reportGlobalModification();
+    assertThat(dryRunCache.getVersion(null)).isEqualTo("2");
+  }
+
+  @Test
+  public void should_report_project_modification() {
+    dryRunCache.reportResourceModification(123L);
+    dryRunCache.reportResourceModification(123L);
+
+    assertThat(dryRunCache.getVersion(null)).isEqualTo("0");
+    assertThat(dryRunCache.getVersion(123L)).isEqualTo("0-2");
+    assertThat(dryRunCache.getVersion(456L)).isEqualTo("0-0");
+  }
+}
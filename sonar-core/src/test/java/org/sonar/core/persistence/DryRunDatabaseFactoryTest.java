@@ -20,6 +20,7 @@
 package org.sonar.core.persistence;
 
 import com.google.common.io.Files;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -41,6 +42,7 @@ public class DryRunDatabaseFactoryTest extends AbstractDaoTestCase {
   private DryRunDatabaseFactory localDatabaseFactory;
 
   private ServerFileSystem serverFileSystem = mock(ServerFileSystem.class);
+  private DryRunCache dryRunCache = mock(DryRunCache.class);
   private BasicDataSource dataSource;
 
   @Rule
@@ -48,7 +50,7 @@ public class DryRunDatabaseFactoryTest extends AbstractDaoTestCase {
 
   @Before
   public void setUp() {
-    localDatabaseFactory = new DryRunDatabaseFactory(getDatabase(), serverFileSystem);
+    localDatabaseFactory = new DryRunDatabaseFactory(getDatabase(), serverFileSystem, dryRunCache);
   }
 
   @After
@@ -133,6 +135,53 @@ public class DryRunDatabaseFactoryTest extends AbstractDaoTestCase {
     FileUtils.cleanDirectory(temporaryFolder.newFolder());
   }
 
+  @Test
+  public void should_reuse_database_until_modification() throws IOException, SQLException {
+    setupData("should_create_database");
+
+    File tempDir = temporaryFolder.newFolder();
+    when(serverFileSystem.getTempDir()).thenReturn(tempDir);
+    when(dryRunCache.getVersion(123L)).thenReturn("1-0");
+
+    byte[] database = localDatabaseFactory.createDatabaseForDryRun(123L);
+    String hash = localDatabaseFactory.getDatabaseHashForDryRun(123L);
+    File cachedFile = new File(tempDir, "dryRun/123/1-0.h2.db");
+    assertThat(cachedFile).exists();
+    assertThat(hash).isEqualTo(DigestUtils.md5Hex(database));
+
+    // database is not generated again
+    long lastModified = cachedFile.lastModified();
+    assertThat(localDatabaseFactory.createDatabaseForDryRun(123L)).isEqualTo(database);
+    assertThat(cachedFile.lastModified()).isEqualTo(lastModified);
+
+    // new analysis : previous database is kept as it may still be read
+    when(dryRunCache.getVersion(123L)).thenReturn("1-1");
+    dataSource = createDatabase(localDatabaseFactory.createDatabaseForDryRun(123L));
+    assertThat(rowCount("projects")).isEqualTo(1);
+    assertThat(new File(tempDir, "dryRun/123/1-1.h2.db")).exists();
+    assertThat(cachedFile).exists();
+
+    // databases older than the previous one are removed
+    when(dryRunCache.getVersion(123L)).thenReturn("1-2");
+    localDatabaseFactory.createDatabaseForDryRun(123L);
+    assertThat(new File(tempDir, "dryRun/123/1-2.h2.db")).exists();
+    assertThat(new File(tempDir, "dryRun/123/1-1.h2.db")).exists();
+    assertThat(cachedFile).doesNotExist();
+    assertThat(new File(tempDir, "dryRun/123/1-0.h2.db.md5")).doesNotExist();
+  }
+
+  @Test
+  public void should_clean_cache_on_startup() throws IOException {
+    File tempDir = temporaryFolder.newFolder();
+    when(serverFileSystem.getTempDir()).thenReturn(tempDir);
+    File cachedFile = new File(tempDir, "dryRun/123/1000.h2.db");
+    FileUtils.touch(cachedFile);
+
+    localDatabaseFactory.start();
+
+    assertThat(cachedFile).doesNotExist();
+  }
+
   private BasicDataSource createDatabase(byte[] db) throws IOException {
     File file = temporaryFolder.newFile("db.h2.db");
     Files.write(db, file);
@@ -30,6 +30,7 @@ import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class PropertiesDaoTest extends AbstractDaoTestCase {
@@ -133,6 +134,17 @@ public class PropertiesDaoTest extends AbstractDaoTestCase {
     assertThat(first.getValue(), is("one"));
   }
 
+  @Test
+  public void selectProjectProperty() {
+    setupData("selectProjectProperties");
+    PropertyDto property = dao.selectProjectProperty(10L, "struts.one");
+
+    assertThat(property.getKey(), is("struts.one"));
+    assertThat(property.getValue(), is("one"));
+    assertThat(dao.selectProjectProperty(11L, "struts.one"), nullValue());
+    assertThat(dao.selectProjectProperty(10L, "user.two"), nullValue());
+  }
+
   @Test
   public void setProperty_update() {
     setupData("update");
@@ -20,10 +20,15 @@
 
 package org.sonar.core.source.jdbc;
 
+import com.google.common.collect.Maps;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 
+import java.util.Map;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class SnapshotSourceDaoTest extends AbstractDaoTestCase {
@@ -33,14 +38,31 @@ public class SnapshotSourceDaoTest extends AbstractDaoTestCase {
   @Before
   public void setUpTestData() {
     dao = new SnapshotSourceDao(getMyBatis());
-    setupData("shared");
   }
 
   @Test
   public void should_retrieve_snapshot_source() throws Exception {
+    setupData("shared");
 
     String snapshotSource = dao.selectSnapshotSource(10L);
 
     assertThat(snapshotSource).isEqualTo("public class Foo {public Foo(){}}");
   }
+
+  @Test
+  public void should_select_last_sources_of_project() throws Exception {
+    setupData("last_sources");
+
+    final Map<String, String> sources = Maps.newHashMap();
+    dao.selectLastSourcesOfProject("org.apache.struts:struts", new ResultHandler() {
+      public void handleResult(ResultContext context) {
+        SnapshotSourceDto dto = (SnapshotSourceDto) context.getResultObject();
+        sources.put(dto.getResourceKey(), dto.getData());
+      }
+    });
+
+    assertThat(sources).hasSize(2);
+    assertThat(sources.get("org.apache.struts:struts:Foo.java")).isEqualTo("last Foo");
+    assertThat(sources.get("org.apache.struts:struts:Bar.java")).isEqualTo("last Bar");
+  }
 }
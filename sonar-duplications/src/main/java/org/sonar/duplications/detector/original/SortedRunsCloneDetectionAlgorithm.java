@@ -0,0 +1,311 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.detector.original;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.ClonePart;
+import org.sonar.duplications.utils.FastStringComparator;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports the same clone groups as {@link OriginalCloneDetectionAlgorithm}, but computes them from sorted runs of blocks.
+ * <p>
+ * Blocks with the same hash are retrieved once from index and kept sorted by resource id and by index in file. Positions of the file
+ * are processed from the end: two consecutive positions are joined with a single merge of their sorted lists, which gives for each
+ * block the length of the longest clone starting from it. Only the lengths of two consecutive positions are kept in memory.
+ * Thus memory is O(P + G), where P is the number of blocks of the file and from index with the same hashes, and G is the size
+ * of the largest group of blocks with the same hash. Running time is O(S + R), where S is the sum over all positions of the file
+ * of the size of the group of blocks with the same hash, and R is the size of the reported clones.
+ * In comparison {@link OriginalCloneDetectionAlgorithm} intersects groups of blocks for each length of clone,
+ * and {@link org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm} builds a suffix tree over all candidates,
+ * which is slow when a lot of files share the same blocks.
+ * </p>
+ *
+ * @since 3.6
+ */
+public final class SortedRunsCloneDetectionAlgorithm {
+
+  /**
+   * Performs detection and returns list of clone groups between file (which represented as a collection of blocks) and index.
+   * Note that this method ignores blocks for this file, that will be retrieved from index.
+   */
+  public static List<CloneGroup> detect(CloneIndex cloneIndex, Collection<Block> fileBlocks) {
+    if (fileBlocks.isEmpty()) {
+      return Collections.EMPTY_LIST;
+    }
+    SortedRunsCloneDetectionAlgorithm algorithm = new SortedRunsCloneDetectionAlgorithm(fileBlocks);
+    algorithm.findClones(cloneIndex);
+    // clones are found from the end of the file, so they are sorted as in OriginalCloneDetectionAlgorithm
+    List<CloneGroup> result = Lists.newArrayList(algorithm.filter.getResult());
+    Collections.sort(result, CloneGroupComparator.INSTANCE);
+    return result;
+  }
+
+  private final Filter filter = new Filter();
+
+  private final String originResourceId;
+
+  /**
+   * Blocks of the file, by index in file.
+   */
+  private final Block[] fileBlocks;
+
+  /**
+   * Sorted blocks with the same hash as the block of the file at given position, including blocks of the file itself.
+   */
+  private Block[][] sameHash;
+
+  /**
+   * Number of blocks by run length, reused for each position in file.
+   */
+  private final int[] countsBuffer;
+  private final int[] notExtendedCountsBuffer;
+
+  private SortedRunsCloneDetectionAlgorithm(Collection<Block> fileBlocks) {
+    this.originResourceId = fileBlocks.iterator().next().getResourceId();
+    this.fileBlocks = new Block[fileBlocks.size()];
+    for (Block fileBlock : fileBlocks) {
+      int index = fileBlock.getIndexInFile();
+      if (index < 0 || index >= this.fileBlocks.length || this.fileBlocks[index] != null) {
+        throw new IllegalArgumentException("Indexes of blocks in file must be distinct and range from 0 to " + (this.fileBlocks.length - 1)
+          + ", got " + index + " in " + originResourceId);
+      }
+      this.fileBlocks[index] = fileBlock;
+    }
+    this.countsBuffer = new int[this.fileBlocks.length + 1];
+    this.notExtendedCountsBuffer = new int[this.fileBlocks.length + 1];
+  }
+
+  private void findClones(CloneIndex cloneIndex) {
+    retrieveFromIndex(cloneIndex);
+    int[] nextLengths = null;
+    for (int i = fileBlocks.length - 1; i >= 0; i--) {
+      int[] lengths = computeRunLengths(i, nextLengths);
+      reportClonesStartingAt(i, lengths);
+      nextLengths = lengths;
+    }
+  }
+
+  private void retrieveFromIndex(CloneIndex cloneIndex) {
+    Map<ByteArray, List<Block>> groupsByHash = Maps.newHashMap();
+    for (Block fileBlock : fileBlocks) {
+      ByteArray hash = fileBlock.getBlockHash();
+      List<Block> group = groupsByHash.get(hash);
+      if (group == null) {
+        group = Lists.newArrayList();
+        groupsByHash.put(hash, group);
+      }
+      group.add(fileBlock);
+    }
+
+    Map<ByteArray, Block[]> sortedGroupsByHash = Maps.newHashMap();
+    for (Map.Entry<ByteArray, List<Block>> entry : groupsByHash.entrySet()) {
+      List<Block> group = entry.getValue();
+      for (Block blockFromIndex : cloneIndex.getBySequenceHash(entry.getKey())) {
+        // skip blocks for this file if they come from index
+        if (!originResourceId.equals(blockFromIndex.getResourceId())) {
+          group.add(blockFromIndex);
+        }
+      }
+      Block[] sorted = group.toArray(new Block[group.size()]);
+      Arrays.sort(sorted, BlocksGroup.BlockComparator.INSTANCE);
+      sortedGroupsByHash.put(entry.getKey(), sorted);
+    }
+
+    sameHash = new Block[fileBlocks.length][];
+    for (int i = 0; i < fileBlocks.length; i++) {
+      sameHash[i] = sortedGroupsByHash.get(fileBlocks[i].getBlockHash());
+    }
+  }
+
+  /**
+   * Run length of a block is one more than run length of the next block in the same resource, if that block has the same hash
+   * as the next block of the file, so lengths are computed from the end of the file.
+   *
+   * @param nextLengths lengths of the longest clones starting from blocks of {@link #sameHash} at next position, null at the end of the file
+   * @return length of the longest clone, which starts from each block of {@link #sameHash} at given position
+   */
+  private int[] computeRunLengths(int i, int[] nextLengths) {
+    int[] lengths = new int[sameHash[i].length];
+    if (nextLengths == null) {
+      Arrays.fill(lengths, 1);
+    } else {
+      int[] next = match(sameHash[i], sameHash[i + 1], 1);
+      for (int k = 0; k < lengths.length; k++) {
+        lengths[k] = next[k] < 0 ? 1 : nextLengths[next[k]] + 1;
+      }
+    }
+    return lengths;
+  }
+
+  private void reportClonesStartingAt(int i, int[] lengths) {
+    Block[] blocks = sameHash[i];
+    if (blocks.length < 2) {
+      return;
+    }
+
+    // blocks, which have a block with the same hash as the previous block of the file right before them
+    boolean[] extendsBackward = new boolean[blocks.length];
+    if (i > 0) {
+      int[] previous = match(blocks, sameHash[i - 1], -1);
+      for (int k = 0; k < blocks.length; k++) {
+        extendsBackward[k] = previous[k] >= 0;
+      }
+    }
+
+    // count blocks by run length, and blocks which do not extend backward
+    int maxLength = fileBlocks.length - i;
+    int[] counts = countsBuffer;
+    int[] notExtendedCounts = notExtendedCountsBuffer;
+    int maxLengthBefore = 0;
+    int notExtended = 0;
+    for (int k = 0; k < blocks.length; k++) {
+      counts[lengths[k]]++;
+      if (!extendsBackward[k]) {
+        notExtendedCounts[lengths[k]]++;
+        notExtended++;
+      }
+      if (blocks[k].getIndexInFile() < i && originResourceId.equals(blocks[k].getResourceId())) {
+        maxLengthBefore = Math.max(maxLengthBefore, lengths[k]);
+      }
+    }
+
+    // if all blocks have been present at previous position, then clones were reported from previous position
+    if (notExtended > 0) {
+      // number of blocks with a run length greater than or equal to the current one
+      int remaining = blocks.length;
+      for (int length = 1; length <= maxLength; length++) {
+        if (counts[length] == 0) {
+          continue;
+        }
+        // clone group is reported only once, from the first occurrence in this file
+        if (length > maxLengthBefore) {
+          reportClones(i, lengths, length);
+        }
+        remaining -= counts[length];
+        notExtended -= notExtendedCounts[length];
+        if (remaining < 2 || notExtended == 0) {
+          break;
+        }
+      }
+    }
+
+    for (int k = 0; k < blocks.length; k++) {
+      counts[lengths[k]] = 0;
+      notExtendedCounts[lengths[k]] = 0;
+    }
+  }
+
+  private void reportClones(int i, int[] lengths, int cloneLength) {
+    Block[] blocks = sameHash[i];
+    Block[] endBlocks = sameHash[i + cloneLength - 1];
+
+    ClonePart origin = null;
+    List<ClonePart> parts = Lists.newArrayList();
+    for (int k = 0; k < blocks.length; k++) {
+      if (lengths[k] >= cloneLength) {
+        Block firstBlock = blocks[k];
+        Block lastBlock = endBlocks[find(endBlocks, firstBlock.getResourceId(), firstBlock.getIndexInFile() + cloneLength - 1)];
+        ClonePart part = new ClonePart(firstBlock.getResourceId(),
+            firstBlock.getIndexInFile(),
+            firstBlock.getStartLine(),
+            lastBlock.getEndLine());
+
+        if (originResourceId.equals(part.getResourceId()) && (origin == null || part.getUnitStart() < origin.getUnitStart())) {
+          origin = part;
+        }
+        parts.add(part);
+      }
+    }
+
+    // result of filtering does not depend on order, because containment of clones is antisymmetric
+    filter.add(CloneGroup.builder().setLength(cloneLength).setOrigin(origin).setParts(parts).build());
+  }
+
+  /**
+   * Both arrays must be sorted by {@link BlocksGroup.BlockComparator}.
+   *
+   * @return for each block of the first array, position in the second array of the block from the same resource
+   * with index in file shifted by given delta, or -1 if there is no such block
+   */
+  private static int[] match(Block[] from, Block[] to, int delta) {
+    int[] result = new int[from.length];
+    int j = 0;
+    for (int k = 0; k < from.length; k++) {
+      while (j < to.length && compare(to[j], from[k].getResourceId(), from[k].getIndexInFile() + delta) < 0) {
+        j++;
+      }
+      result[k] = j < to.length && compare(to[j], from[k].getResourceId(), from[k].getIndexInFile() + delta) == 0 ? j : -1;
+    }
+    return result;
+  }
+
+  /**
+   * @return position of the block with given resource id and index in file in sorted array
+   */
+  private static int find(Block[] blocks, String resourceId, int indexInFile) {
+    int lower = 0;
+    int upper = blocks.length;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compare(blocks[mid], resourceId, indexInFile) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  /**
+   * Clones starting first in the file come first, then the shortest ones.
+   */
+  private static final class CloneGroupComparator implements Comparator<CloneGroup> {
+    static final CloneGroupComparator INSTANCE = new CloneGroupComparator();
+
+    public int compare(CloneGroup first, CloneGroup second) {
+      int c = first.getOriginPart().getUnitStart() - second.getOriginPart().getUnitStart();
+      if (c == 0) {
+        return first.getCloneUnitLength() - second.getCloneUnitLength();
+      }
+      return c;
+    }
+  }
+
+  private static int compare(Block block, String resourceId, int indexInFile) {
+    int c = FastStringComparator.INSTANCE.compare(block.getResourceId(), resourceId);
+    if (c == 0) {
+      return block.getIndexInFile() - indexInFile;
+    }
+    return c;
+  }
+
+}
@@ -91,14 +91,20 @@ public final class SuffixTreeCloneDetectionAlgorithm {
     Map<String, List<Block>> collection = Maps.newHashMap();
     for (ByteArray hash : hashes) {
       Collection<Block> blocks = index.getBySequenceHash(hash);
+      // blocks of a same resource are usually returned one after another, so the last list is reused
+      String lastResourceId = null;
+      List<Block> list = null;
       for (Block blockFromIndex : blocks) {
         // Godin: skip blocks for this file if they come from index
         String resourceId = blockFromIndex.getResourceId();
         if (!originResourceId.equals(resourceId)) {
-          List<Block> list = collection.get(resourceId);
-          if (list == null) {
-            list = Lists.newArrayList();
-            collection.put(resourceId, list);
+          if (!resourceId.equals(lastResourceId)) {
+            list = collection.get(resourceId);
+            if (list == null) {
+              list = Lists.newArrayList();
+              collection.put(resourceId, list);
+            }
+            lastResourceId = resourceId;
           }
           list.add(blockFromIndex);
         }
@@ -20,12 +20,14 @@
 package org.sonar.duplications.index;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
-import org.sonar.duplications.utils.FastStringComparator;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides an index optimized by memory.
@@ -40,12 +42,20 @@ import java.util.List;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Resource ids are interned: each block refers to its resource by an integer number, so that queries compare integers
+ * instead of strings. Once sorted, blocks with the same hash are grouped by resource and ordered by index in file,
+ * and blocks of a resource are ordered by index in file.
+ * </p>
+ * <p>
+ * Insertions are not thread-safe, but once all blocks are inserted, queries can be executed concurrently.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private static final int DEFAULT_INITIAL_CAPACITY = 1024;
 
-  private static final int BLOCK_INTS = 5;
+  private static final int BLOCK_INTS = 6;
 
   private final int hashInts;
 
@@ -54,20 +64,23 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   /**
    * Indicates that index requires sorting to perform queries.
    */
-  private boolean sorted;
+  private volatile boolean sorted;
 
   /**
    * Current number of blocks in index.
    */
   private int size;
 
-  private String[] resourceIds;
+  /**
+   * Interned resource ids, indexed by resource number.
+   */
+  private final List<String> resourceIds = Lists.newArrayList();
+  private final Map<String, Integer> resourceNumbers = Maps.newHashMap();
+
   private int[] blockData;
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -81,7 +94,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     this.hashInts = hashBytes / 4;
     this.blockInts = hashInts + BLOCK_INTS;
     this.size = 0;
-    this.resourceIds = new String[initialCapacity];
     this.blockData = new int[initialCapacity * blockInts];
     this.resourceIdsIndex = new int[initialCapacity];
   }
@@ -89,27 +101,32 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   /**
    * {@inheritDoc}
    * <p>
-   * <strong>Note that this implementation does not guarantee that blocks would be sorted by index.</strong>
+   * Blocks are sorted by index in file.
    * </p>
    */
   public Collection<Block> getByResourceId(String resourceId) {
     ensureSorted();
 
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
+    Integer resourceNumber = resourceNumbers.get(resourceId);
+    if (resourceNumber == null) {
+      return Collections.emptyList();
+    }
+    // use interned instance
+    resourceId = resourceIds.get(resourceNumber);
 
-    int index = DataUtils.binarySearch(byResourceId);
+    int index = binarySearchByResourceNumber(resourceNumber);
 
     List<Block> result = Lists.newArrayList();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && blockData[resourceIdsIndex[index] * blockInts + hashInts] == resourceNumber) {
       // extract block (note that there is no need to extract resourceId)
-      int offset = realIndex * blockInts;
+      int offset = resourceIdsIndex[index] * blockInts;
       int[] hash = new int[hashInts];
       for (int j = 0; j < hashInts; j++) {
         hash[j] = blockData[offset++];
       }
+      // skip resource number
+      offset++;
       int indexInFile = blockData[offset++];
       int firstLineNumber = blockData[offset++];
       int lastLineNumber = blockData[offset++];
@@ -126,7 +143,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
       result.add(block);
 
       index++;
-      realIndex = resourceIdsIndex[index];
     }
     return result;
   }
@@ -137,23 +153,19 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    int index = binarySearchByHash(hash);
 
     List<Block> result = Lists.newArrayList();
-    while (index < size && !isLessByHash(size, index)) {
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
-      String resourceId = resourceIds[index];
-      offset = index * blockInts + hashInts;
+      int offset = index * blockInts + hashInts;
+      String resourceId = resourceIds.get(blockData[offset++]);
       int indexInFile = blockData[offset++];
       int firstLineNumber = blockData[offset++];
       int lastLineNumber = blockData[offset++];
@@ -173,6 +185,53 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     return result;
   }
 
+  /**
+   * @return position of the first block with a hash greater than or equal to the given one
+   */
+  private int binarySearchByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  /**
+   * @return position in {@link #resourceIdsIndex} of the first block with a resource number greater than or equal to the given one
+   */
+  private int binarySearchByResourceNumber(int resourceNumber) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (blockData[resourceIdsIndex[mid] * blockInts + hashInts] < resourceNumber) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData[offset] < hash[k]) {
+        return -1;
+      }
+      if (blockData[offset] > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
   /**
    * {@inheritDoc}
    * <p>
@@ -183,8 +242,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     sorted = false;
     ensureCapacity();
 
-    resourceIds[size] = block.getResourceId();
-
     int[] hash = block.getBlockHash().toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
@@ -193,6 +250,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     for (int i = 0; i < hashInts; i++) {
       blockData[offset++] = hash[i];
     }
+    blockData[offset++] = internResourceId(block.getResourceId());
     blockData[offset++] = block.getIndexInFile();
     blockData[offset++] = block.getStartLine();
     blockData[offset++] = block.getEndLine();
@@ -202,18 +260,24 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     size++;
   }
 
+  private int internResourceId(String resourceId) {
+    Integer resourceNumber = resourceNumbers.get(resourceId);
+    if (resourceNumber == null) {
+      resourceNumber = resourceIds.size();
+      resourceIds.add(resourceId);
+      resourceNumbers.put(resourceId, resourceNumber);
+    }
+    return resourceNumber;
+  }
+
   /**
    * Increases the capacity, if necessary.
    */
   private void ensureCapacity() {
-    if (size < resourceIds.length) {
+    if (size < resourceIdsIndex.length) {
       return;
     }
-    int newCapacity = (resourceIds.length * 3) / 2 + 1;
-    // Increase size of resourceIds
-    String[] oldResourceIds = resourceIds;
-    resourceIds = new String[newCapacity];
-    System.arraycopy(oldResourceIds, 0, resourceIds, 0, oldResourceIds.length);
+    int newCapacity = (resourceIdsIndex.length * 3) / 2 + 1;
     // Increase size of blockData
     int[] oldBlockData = blockData;
     blockData = new int[newCapacity * blockInts];
@@ -224,28 +288,34 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   }
 
   /**
-   * Performs sorting, if necessary.
+   * Performs sorting, if necessary. Once sorted, queries do not modify the index, so they can be executed concurrently.
    */
   private void ensureSorted() {
     if (sorted) {
       return;
     }
+    synchronized (this) {
+      if (sorted) {
+        return;
+      }
 
-    ensureCapacity();
+      DataUtils.sort(byBlockHash);
+      for (int i = 0; i < size; i++) {
+        resourceIdsIndex[i] = i;
+      }
+      DataUtils.sort(byResourceId);
 
-    DataUtils.sort(byBlockHash);
-    for (int i = 0; i < size; i++) {
-      resourceIdsIndex[i] = i;
+      sorted = true;
     }
-    DataUtils.sort(byResourceId);
-
-    sorted = true;
   }
 
+  /**
+   * Compares blocks by hash, then by resource number and then by index in file.
+   */
   private boolean isLessByHash(int i, int j) {
     i *= blockInts;
     j *= blockInts;
-    for (int k = 0; k < hashInts; k++, i++, j++) {
+    for (int k = 0; k <= hashInts + 1; k++, i++, j++) {
       if (blockData[i] < blockData[j]) {
         return true;
       }
@@ -256,12 +326,20 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     return false;
   }
 
+  /**
+   * Compares blocks by resource number and then by index in file.
+   */
+  private boolean isLessByResourceNumber(int i, int j) {
+    i = i * blockInts + hashInts;
+    j = j * blockInts + hashInts;
+    if (blockData[i] != blockData[j]) {
+      return blockData[i] < blockData[j];
+    }
+    return blockData[i + 1] < blockData[j + 1];
+  }
+
   private final DataUtils.Sortable byBlockHash = new DataUtils.Sortable() {
     public void swap(int i, int j) {
-      String tmp = resourceIds[i];
-      resourceIds[i] = resourceIds[j];
-      resourceIds[j] = tmp;
-
       i *= blockInts;
       j *= blockInts;
       for (int k = 0; k < blockInts; k++, i++, j++) {
@@ -288,9 +366,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     }
 
     public boolean isLess(int i, int j) {
-      String s1 = resourceIds[resourceIdsIndex[i]];
-      String s2 = resourceIds[resourceIdsIndex[j]];
-      return FastStringComparator.INSTANCE.compare(s1, s2) < 0;
+      return isLessByResourceNumber(resourceIdsIndex[i], resourceIdsIndex[j]);
     }
 
     public int size() {
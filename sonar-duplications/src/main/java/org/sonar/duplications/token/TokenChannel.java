@@ -25,15 +25,19 @@ import java.util.regex.Pattern;
 import org.sonar.channel.Channel;
 import org.sonar.channel.CodeBuffer.Cursor;
 import org.sonar.channel.CodeReader;
+import org.sonar.channel.FirstCharacters;
 
 class TokenChannel extends Channel<TokenQueue> {
 
   private final StringBuilder tmpBuilder = new StringBuilder();
   private final Matcher matcher;
+  private final FirstCharacters firstCharacters;
   private String normalizationValue;
 
   public TokenChannel(String regex) {
-    matcher = Pattern.compile(regex).matcher("");
+    Pattern pattern = Pattern.compile(regex);
+    matcher = pattern.matcher("");
+    firstCharacters = new FirstCharacters(pattern);
   }
 
   public TokenChannel(String regex, String normalizationValue) {
@@ -41,6 +45,11 @@ class TokenChannel extends Channel<TokenQueue> {
     this.normalizationValue = normalizationValue;
   }
 
+  @Override
+  public boolean canConsume(int firstChar) {
+    return firstCharacters.contains(firstChar);
+  }
+
   @Override
   public boolean consume(CodeReader code, TokenQueue output) {
     if (code.popTo(matcher, tmpBuilder) > 0) {
@@ -19,11 +19,13 @@
  */
 package org.sonar.duplications.token;
 
+import java.io.File;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.charset.Charset;
 
 import org.sonar.channel.ChannelDispatcher;
 import org.sonar.channel.CodeReader;
+import org.sonar.channel.CodeReaderConfiguration;
 import org.sonar.duplications.DuplicationsException;
 
 public final class TokenChunker {
@@ -39,11 +41,21 @@ public final class TokenChunker {
   }
 
   public TokenQueue chunk(String sourceCode) {
-    return chunk(new StringReader(sourceCode));
+    return chunk(new CodeReader(sourceCode));
   }
 
   public TokenQueue chunk(Reader reader) {
-    CodeReader code = new CodeReader(reader);
+    return chunk(new CodeReader(reader));
+  }
+
+  /**
+   * @since 3.6
+   */
+  public TokenQueue chunk(File file, Charset charset) {
+    return chunk(new CodeReader(file, charset, new CodeReaderConfiguration()));
+  }
+
+  private TokenQueue chunk(CodeReader code) {
     TokenQueue queue = new TokenQueue();
     try {
       channelDispatcher.consume(code, queue);
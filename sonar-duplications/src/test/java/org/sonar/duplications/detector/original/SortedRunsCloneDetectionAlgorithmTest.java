@@ -0,0 +1,95 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.detector.original;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.detector.DetectorTestCase;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MemoryCloneIndex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortedRunsCloneDetectionAlgorithmTest extends DetectorTestCase {
+
+  @Override
+  protected List<CloneGroup> detect(CloneIndex index, Block[] fileBlocks) {
+    return SortedRunsCloneDetectionAlgorithm.detect(index, Arrays.asList(fileBlocks));
+  }
+
+  /**
+   * Given: files with random hashes from a small alphabet, so that there are many overlapping clones.
+   * Expected: same clone groups as {@link OriginalCloneDetectionAlgorithm}.
+   */
+  @Test
+  public void should_detect_same_clones_as_original_algorithm() {
+    Random random = new Random(42);
+    CloneIndex index = new MemoryCloneIndex();
+    List<Block[]> files = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      Block[] fileBlocks = new Block[10 + random.nextInt(40)];
+      for (int j = 0; j < fileBlocks.length; j++) {
+        fileBlocks[j] = newBlock("file" + i, new ByteArray((long) random.nextInt(5)), j);
+        index.insert(fileBlocks[j]);
+      }
+      files.add(fileBlocks);
+    }
+
+    for (Block[] fileBlocks : files) {
+      List<CloneGroup> expected = OriginalCloneDetectionAlgorithm.detect(index, Arrays.asList(fileBlocks));
+      assertEquals(expected, detect(index, fileBlocks));
+    }
+  }
+
+  /**
+   * Given: file, which consists of two alternating blocks, so that each block has the same hash as half of the blocks of the file.
+   * Expected: same clone groups as {@link OriginalCloneDetectionAlgorithm}.
+   */
+  @Test
+  public void should_detect_clones_of_alternating_blocks() {
+    CloneIndex index = new MemoryCloneIndex();
+    Block[] fileBlocks = new Block[300];
+    for (int j = 0; j < fileBlocks.length; j++) {
+      fileBlocks[j] = newBlock("a", new ByteArray((long) j % 2), j);
+      index.insert(fileBlocks[j]);
+    }
+
+    List<CloneGroup> expected = OriginalCloneDetectionAlgorithm.detect(index, Arrays.asList(fileBlocks));
+    assertEquals(expected, detect(index, fileBlocks));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_fail_if_indexes_in_file_are_not_contiguous() {
+    detect(new MemoryCloneIndex(), new Block[] {newBlock("a", new ByteArray(1L), 0), newBlock("a", new ByteArray(2L), 2)});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_fail_if_indexes_in_file_are_not_distinct() {
+    detect(new MemoryCloneIndex(), new Block[] {newBlock("a", new ByteArray(1L), 1), newBlock("a", new ByteArray(2L), 1)});
+  }
+
+}
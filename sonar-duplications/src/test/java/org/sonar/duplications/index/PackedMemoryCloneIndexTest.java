@@ -19,12 +19,14 @@
  */
 package org.sonar.duplications.index;
 
+import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 
 import java.util.Collection;
+import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
@@ -77,6 +79,41 @@ public class PackedMemoryCloneIndexTest {
     }
   }
 
+  /**
+   * When: query by a resource id.
+   * Expected: blocks should be sorted by index in file.
+   */
+  @Test
+  public void should_sort_blocks_of_resource_by_index() {
+    index.insert(newBlock("a", 1, 3));
+    index.insert(newBlock("b", 1, 1));
+    index.insert(newBlock("a", 2, 1));
+    index.insert(newBlock("a", 3, 2));
+    List<Block> blocks = Lists.newArrayList(index.getByResourceId("a"));
+    assertThat(blocks.size(), is(3));
+    for (int i = 0; i < blocks.size(); i++) {
+      assertThat(blocks.get(i).getIndexInFile(), is(i + 1));
+      assertThat(blocks.get(i).getResourceId(), is("a"));
+    }
+  }
+
+  /**
+   * When: query by a hash value.
+   * Expected: blocks should be grouped by resource, with same instance of resource id.
+   */
+  @Test
+  public void should_group_blocks_of_hash_by_resource() {
+    index.insert(newBlock("a", 1, 1));
+    index.insert(newBlock("b", 1, 1));
+    index.insert(newBlock(new String("a"), 1, 2));
+    List<Block> blocks = Lists.newArrayList(index.getBySequenceHash(new ByteArray(1L)));
+    assertThat(blocks.size(), is(3));
+    assertThat(blocks.get(0).getResourceId(), sameInstance(blocks.get(1).getResourceId()));
+    assertThat(blocks.get(0).getIndexInFile(), is(1));
+    assertThat(blocks.get(1).getIndexInFile(), is(2));
+    assertThat(blocks.get(2).getResourceId(), is("b"));
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
@@ -110,10 +147,14 @@ public class PackedMemoryCloneIndexTest {
   }
 
   private static Block newBlock(String resourceId, long hash) {
+    return newBlock(resourceId, hash, 1);
+  }
+
+  private static Block newBlock(String resourceId, long hash, int indexInFile) {
     return Block.builder()
         .setResourceId(resourceId)
         .setBlockHash(new ByteArray(hash))
-        .setIndexInFile(1)
+        .setIndexInFile(indexInFile)
         .setLines(1, 2)
         .build();
   }
@@ -0,0 +1,163 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Same as {@link IncrementalCyclesAndFESSolver}, but the graph is first decomposed into {@link StronglyConnectedComponents},
+ * and cycles and feedback edges of each component are searched independently and concurrently. As cycles of different components
+ * don't share edges, the feedback edge set of the graph is the union of feedback edge sets of components, whereas
+ * {@link MinimumFeedbackEdgeSetSolver} is executed on much smaller sets of cycles.
+ * <p>
+ * Feedback edges are searched on each component rather than on the whole graph, so the result can differ from the one of
+ * {@link IncrementalCyclesAndFESSolver}, although it is also a feedback edge set of the graph.
+ * </p>
+ * <p>
+ * Components are solved by a single thread, unless a number of threads is given. In this case the graph is read by several
+ * threads, so it must not be modified during resolution.
+ * </p>
+ *
+ * @since 3.6
+ */
+public class ParallelCyclesAndFESSolver<V> {
+
+  private static final int DEFAULT_MAX_SEARCH_DEPTH_AT_FIRST = 3;
+  private static final int DEFAULT_MAX_CYCLES_TO_FOUND_BY_ITERATION = 100;
+
+  private final Set<Cycle> cycles = new HashSet<Cycle>();
+  private final Set<Edge> feedbackEdges = new HashSet<Edge>();
+  private int weightOfFeedbackEdgeSet = 0;
+  private int numberOfLoops = 0;
+  private long searchCyclesCalls = 0;
+  private int iterations = 0;
+  private final int components;
+
+  public ParallelCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this(graph, vertices, 1);
+  }
+
+  public ParallelCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, int threads) {
+    this(graph, vertices, DEFAULT_MAX_SEARCH_DEPTH_AT_FIRST, DEFAULT_MAX_CYCLES_TO_FOUND_BY_ITERATION, threads);
+  }
+
+  public ParallelCyclesAndFESSolver(final DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, final int maxSearchDepthAtFirst,
+      final int maxCyclesToFoundByIteration, int threads) {
+    List<Set<V>> cyclicComponents = new StronglyConnectedComponents<V>(graph, vertices).getCyclicComponents();
+    this.components = cyclicComponents.size();
+
+    List<Callable<IncrementalCyclesAndFESSolver<V>>> tasks = new ArrayList<Callable<IncrementalCyclesAndFESSolver<V>>>();
+    for (final Set<V> component : cyclicComponents) {
+      tasks.add(new Callable<IncrementalCyclesAndFESSolver<V>>() {
+        public IncrementalCyclesAndFESSolver<V> call() {
+          return new IncrementalCyclesAndFESSolver<V>(graph, component, maxSearchDepthAtFirst, maxCyclesToFoundByIteration);
+        }
+      });
+    }
+
+    for (IncrementalCyclesAndFESSolver<V> solver : solve(tasks, threads)) {
+      cycles.addAll(solver.getCycles());
+      feedbackEdges.addAll(solver.getFeedbackEdgeSet());
+      weightOfFeedbackEdgeSet += solver.getWeightOfFeedbackEdgeSet();
+      numberOfLoops += solver.getNumberOfLoops();
+      searchCyclesCalls += solver.getSearchCyclesCalls();
+      iterations += solver.getIterations();
+    }
+  }
+
+  private static <T> List<T> solve(List<Callable<T>> tasks, int threads) {
+    List<T> result = new ArrayList<T>();
+    if (threads <= 1 || tasks.size() <= 1) {
+      for (Callable<T> task : tasks) {
+        result.add(call(task));
+      }
+      return result;
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+    try {
+      for (Future<T> future : executorService.invokeAll(tasks)) {
+        result.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during search of feedback edges", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to search feedback edges", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+    return result;
+  }
+
+  private static <T> T call(Callable<T> task) {
+    try {
+      return task.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to search feedback edges", e);
+    }
+  }
+
+  public int getWeightOfFeedbackEdgeSet() {
+    return weightOfFeedbackEdgeSet;
+  }
+
+  public int getNumberOfLoops() {
+    return numberOfLoops;
+  }
+
+  public Set<Edge> getFeedbackEdgeSet() {
+    return feedbackEdges;
+  }
+
+  public Set<Cycle> getCycles() {
+    return cycles;
+  }
+
+  public boolean isAcyclicGraph() {
+    return cycles.isEmpty();
+  }
+
+  public long getSearchCyclesCalls() {
+    return searchCyclesCalls;
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * @return number of strongly connected components, which contain cycles
+   */
+  public int getComponents() {
+    return components;
+  }
+}
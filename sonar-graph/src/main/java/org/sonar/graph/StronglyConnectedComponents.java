@@ -0,0 +1,195 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decomposes a graph into strongly connected components with the Tarjan algorithm. Each cycle of the graph belongs to a
+ * single component, so components can be analyzed independently.
+ * <p>
+ * Vertices are indexed by integers and outgoing edges are stored in two arrays (compressed sparse rows), and the depth-first search
+ * is iterative, so that large graphs don't overflow the stack.
+ * </p>
+ *
+ * @since 3.6
+ */
+public class StronglyConnectedComponents<V> {
+
+  private final List<V> vertices;
+
+  /**
+   * Targets of outgoing edges of vertex i are stored in {@code targets[offsets[i]]} to {@code targets[offsets[i + 1] - 1]}.
+   */
+  private final int[] offsets;
+  private final int[] targets;
+
+  private final List<Set<V>> cyclicComponents = new ArrayList<Set<V>>();
+
+  private int counter = 0;
+  private int[] indexes;
+  private int[] lowlinks;
+  private boolean[] onStack;
+  private int[] stack;
+  private int stackSize = 0;
+
+  public StronglyConnectedComponents(DirectedGraphAccessor<V, ? extends Edge> graph) {
+    this(graph, graph.getVertices());
+  }
+
+  /**
+   * Only edges between given vertices are considered.
+   */
+  public StronglyConnectedComponents(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this.vertices = new ArrayList<V>(new LinkedHashSet<V>(vertices));
+    Map<V, Integer> indexByVertex = new HashMap<V, Integer>();
+    for (int i = 0; i < this.vertices.size(); i++) {
+      indexByVertex.put(this.vertices.get(i), i);
+    }
+
+    int size = this.vertices.size();
+    offsets = new int[size + 1];
+    int[] edgeTargets = new int[size];
+    int edges = 0;
+    for (int i = 0; i < size; i++) {
+      offsets[i] = edges;
+      for (Edge<V> edge : graph.getOutgoingEdges(this.vertices.get(i))) {
+        Integer target = indexByVertex.get(edge.getTo());
+        if (target != null) {
+          if (edges == edgeTargets.length) {
+            edgeTargets = Arrays.copyOf(edgeTargets, edges * 2 + 1);
+          }
+          edgeTargets[edges] = target;
+          edges++;
+        }
+      }
+    }
+    offsets[size] = edges;
+    targets = Arrays.copyOf(edgeTargets, edges);
+
+    run();
+  }
+
+  /**
+   * @return components, which contain at least one cycle: components with several vertices or with a single vertex having an edge to itself
+   */
+  public List<Set<V>> getCyclicComponents() {
+    return cyclicComponents;
+  }
+
+  public boolean isAcyclicGraph() {
+    return cyclicComponents.isEmpty();
+  }
+
+  private void run() {
+    int size = vertices.size();
+    indexes = new int[size];
+    lowlinks = new int[size];
+    onStack = new boolean[size];
+    stack = new int[size];
+    for (int i = 0; i < size; i++) {
+      indexes[i] = -1;
+    }
+    // stack of the depth-first search and position of the next edge to follow for each vertex of this stack
+    int[] path = new int[size];
+    int[] nextEdges = new int[size];
+    for (int root = 0; root < size; root++) {
+      if (indexes[root] < 0) {
+        search(root, path, nextEdges);
+      }
+    }
+    indexes = null;
+    lowlinks = null;
+    onStack = null;
+    stack = null;
+  }
+
+  private void search(int root, int[] path, int[] nextEdges) {
+    int top = 0;
+    path[0] = root;
+    nextEdges[0] = offsets[root];
+    visit(root);
+    while (top >= 0) {
+      int v = path[top];
+      if (nextEdges[top] < offsets[v + 1]) {
+        int w = targets[nextEdges[top]];
+        nextEdges[top]++;
+        if (indexes[w] < 0) {
+          visit(w);
+          top++;
+          path[top] = w;
+          nextEdges[top] = offsets[w];
+        } else if (onStack[w]) {
+          lowlinks[v] = Math.min(lowlinks[v], indexes[w]);
+        }
+      } else {
+        if (lowlinks[v] == indexes[v]) {
+          popComponent(v);
+        }
+        top--;
+        if (top >= 0) {
+          int parent = path[top];
+          lowlinks[parent] = Math.min(lowlinks[parent], lowlinks[v]);
+        }
+      }
+    }
+  }
+
+  private void visit(int v) {
+    indexes[v] = counter;
+    lowlinks[v] = counter;
+    counter++;
+    stack[stackSize] = v;
+    stackSize++;
+    onStack[v] = true;
+  }
+
+  private void popComponent(int root) {
+    Set<V> component = new LinkedHashSet<V>();
+    int w;
+    do {
+      stackSize--;
+      w = stack[stackSize];
+      onStack[w] = false;
+      component.add(vertices.get(w));
+    } while (w != root);
+
+    if (component.size() > 1 || hasEdgeToItself(root)) {
+      cyclicComponents.add(component);
+    }
+  }
+
+  private boolean hasEdgeToItself(int v) {
+    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+      if (targets[i] == v) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ParallelCyclesAndFESSolverTest {
+
+  @Test
+  public void should_find_same_feedback_edges_as_incremental_solver() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "D").addEdge("D", "A");
+    dcg.addEdge("C", "A");
+    dcg.addEdge("B", "A");
+    dcg.addEdge("A", "E").addEdge("E", "C");
+    dcg.addEdge("E", "D");
+    dcg.addEdge("E", "F");
+    dcg.addEdge("F", "C");
+    dcg.addEdge("F", "G");
+    dcg.addEdge("G", "H", 3).addEdge("H", "G", 2);
+
+    IncrementalCyclesAndFESSolver<String> expected = new IncrementalCyclesAndFESSolver<String>(dcg, dcg.getVertices(), 3, Integer.MAX_VALUE);
+    ParallelCyclesAndFESSolver<String> solver = new ParallelCyclesAndFESSolver<String>(dcg, dcg.getVertices(), 3, Integer.MAX_VALUE, 2);
+
+    assertThat(solver.getComponents(), is(2));
+    assertThat(solver.getCycles(), is(expected.getCycles()));
+    assertThat(solver.getFeedbackEdgeSet(), is(expected.getFeedbackEdgeSet()));
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(expected.getWeightOfFeedbackEdgeSet()));
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(4));
+  }
+
+  @Test
+  public void should_support_acyclic_graph() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C");
+
+    ParallelCyclesAndFESSolver<String> solver = new ParallelCyclesAndFESSolver<String>(dcg, dcg.getVertices());
+
+    assertThat(solver.isAcyclicGraph(), is(true));
+    assertThat(solver.getFeedbackEdgeSet().isEmpty(), is(true));
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(0));
+  }
+
+  @Test
+  public void should_solve_components_sequentially() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "D").addEdge("D", "A");
+    dcg.addEdge("E", "F").addEdge("F", "G").addEdge("G", "E");
+    dcg.addEdge("H", "I").addEdge("I", "H");
+
+    ParallelCyclesAndFESSolver<String> solver = new ParallelCyclesAndFESSolver<String>(dcg, dcg.getVertices(), 2, 1, 1);
+
+    assertThat(solver.getComponents(), is(3));
+    assertThat(solver.getCycles().size(), is(3));
+    assertThat(solver.getFeedbackEdgeSet().size(), is(3));
+  }
+
+}
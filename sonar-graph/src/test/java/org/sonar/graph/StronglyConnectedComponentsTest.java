@@ -0,0 +1,80 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StronglyConnectedComponentsTest {
+
+  @Test
+  public void should_find_cyclic_components() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+    dcg.addEdge("C", "D");
+    dcg.addEdge("D", "E").addEdge("E", "D");
+    dcg.addEdge("E", "F");
+    dcg.addEdge("G", "G");
+
+    List<Set<String>> components = new StronglyConnectedComponents<String>(dcg).getCyclicComponents();
+
+    assertThat(components.size(), is(3));
+    assertThat(new HashSet<Set<String>>(components), is((Set) new HashSet<Set<String>>(Arrays.asList(
+        set("A", "B", "C"),
+        set("D", "E"),
+        set("G")))));
+  }
+
+  @Test
+  public void should_ignore_edges_to_other_vertices() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+
+    StronglyConnectedComponents<String> components = new StronglyConnectedComponents<String>(dcg, Arrays.asList("A", "B"));
+
+    assertThat(components.isAcyclicGraph(), is(true));
+  }
+
+  @Test
+  public void should_not_overflow_stack_on_long_paths() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    for (int i = 0; i < 100000; i++) {
+      dcg.addEdge("V" + i, "V" + (i + 1));
+    }
+    dcg.addEdge("V100000", "V0");
+
+    List<Set<String>> components = new StronglyConnectedComponents<String>(dcg).getCyclicComponents();
+
+    assertThat(components.size(), is(1));
+    assertThat(components.get(0).size(), is(100001));
+  }
+
+  private static Set<String> set(String... vertices) {
+    return new HashSet<String>(Arrays.asList(vertices));
+  }
+
+}
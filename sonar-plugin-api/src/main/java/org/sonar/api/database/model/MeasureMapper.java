@@ -24,6 +24,12 @@ public interface MeasureMapper {
 
   void insertData(MeasureData data);
 
+  /**
+   * Same as {@link #insert(MeasureModel)}, but to be used in a batch session. Generated id is not returned.
+   * @since 3.6
+   */
+  void batchInsert(MeasureModel measure);
+
   void deleteData(MeasureModel data);
 
   void update(MeasureModel measure);
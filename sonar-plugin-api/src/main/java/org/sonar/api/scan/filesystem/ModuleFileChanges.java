@@ -0,0 +1,44 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.scan.filesystem;
+
+import org.sonar.api.BatchComponent;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Files of the module whose content changed since the previous analysis. Plugins must not implement this interface,
+ * it is provided at runtime and can be injected into batch extensions.
+ * <p/>
+ * Hashes of files are computed and stored in the working directory of the module only when this component is used
+ * during the analysis. When it's not used, stored hashes are dropped, so all files are considered as changed by the
+ * next analysis.
+ *
+ * @since 3.6
+ */
+public interface ModuleFileChanges extends BatchComponent {
+
+  /**
+   * Search for files whose content changed since the previous analysis, including new files. All files are
+   * considered as changed on the first analysis. Never return null.
+   */
+  List<File> changedFiles(FileQuery query);
+}
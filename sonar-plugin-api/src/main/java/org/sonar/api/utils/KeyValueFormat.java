@@ -216,17 +216,35 @@ public final class KeyValueFormat {
   public static <K, V> Map<K, V> parse(String data, Converter<K> keyConverter, Converter<V> valueConverter) {
     Map<K, V> map = Maps.newLinkedHashMap();
     if (data != null) {
-      String[] pairs = StringUtils.split(data, PAIR_SEPARATOR);
-      for (String pair : pairs) {
-        String[] keyValue = StringUtils.split(pair, FIELD_SEPARATOR);
-        String key = keyValue[0];
-        String value = (keyValue.length == 2 ? keyValue[1] : "");
-        map.put(keyConverter.parse(key), valueConverter.parse(value));
+      int length = data.length();
+      int start = 0;
+      while (start < length) {
+        int end = data.indexOf(PAIR_SEPARATOR, start);
+        if (end < 0) {
+          end = length;
+        }
+        if (end > start) {
+          parsePair(data, start, end, map, keyConverter, valueConverter);
+        }
+        start = end + 1;
       }
     }
     return map;
   }
 
+  private static <K, V> void parsePair(String data, int start, int end, Map<K, V> map, Converter<K> keyConverter, Converter<V> valueConverter) {
+    int separator = data.indexOf(FIELD_SEPARATOR, start);
+    if (separator > start && separator < end - 1 && data.lastIndexOf(FIELD_SEPARATOR, end - 1) == separator) {
+      // usual "key=value" pair : no need to split it
+      map.put(keyConverter.parse(data.substring(start, separator)), valueConverter.parse(data.substring(separator + 1, end)));
+    } else {
+      String[] keyValue = StringUtils.split(data.substring(start, end), FIELD_SEPARATOR);
+      String key = keyValue[0];
+      String value = (keyValue.length == 2 ? keyValue[1] : "");
+      map.put(keyConverter.parse(key), valueConverter.parse(value));
+    }
+  }
+
   public static Map<String, String> parse(String data) {
     return parse(data, newStringConverter(), newStringConverter());
   }
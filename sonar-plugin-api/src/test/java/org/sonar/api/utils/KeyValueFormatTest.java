@@ -119,6 +119,26 @@ public class KeyValueFormatTest {
     assertThat(map.get(6), is(6.68));
   }
 
+  @Test
+  public void shouldParseMalformedPairs() {
+    Map<String, String> map = KeyValueFormat.parse("one=un;;two=;three==trois;four=quatre=4;five");
+    assertThat(map.size(), is(5));
+    assertThat(map.get("one"), is("un"));
+    assertThat(map.get("two"), is(""));
+    assertThat(map.get("three"), is("trois"));
+    assertThat(map.get("four"), is(""));
+    assertThat(map.get("five"), is(""));
+  }
+
+  @Test
+  public void shouldParseIntInt() {
+    Map<Integer, Integer> map = KeyValueFormat.parseIntInt("1=2;3=4;5=");
+    assertThat(map.size(), is(3));
+    assertThat(map.get(1), is(2));
+    assertThat(map.get(3), is(4));
+    assertThat(map.get(5), nullValue());
+  }
+
   @Test
   public void shouldConvertPriority() {
     assertThat(KeyValueFormat.newPriorityConverter().format(RulePriority.BLOCKER), is("BLOCKER"));
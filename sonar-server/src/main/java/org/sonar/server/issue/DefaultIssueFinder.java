@@ -42,6 +42,8 @@ import org.sonar.core.rule.DefaultRuleFinder;
 import org.sonar.core.user.AuthorizationDao;
 import org.sonar.server.user.UserSession;
 
+import javax.annotation.Nullable;
+
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -98,19 +100,17 @@ public class DefaultIssueFinder implements IssueFinder {
     LOG.debug("IssueQuery : {}", query);
     SqlSession sqlSession = myBatis.openSession();
     try {
-      // 1. Select the authorized ids of all the issues that match the query
-      List<IssueDto> authorizedIssues = issueDao.selectIssues(query, UserSession.get().userId(), sqlSession);
-
-      // 2. Sort all authorized issues
-      List<IssueDto> authorizedSortedIssues = sort(authorizedIssues, query, authorizedIssues.size());
+      // 1. Count the authorized issues that match the query
+      Integer userId = UserSession.get().userId();
+      int total = issueDao.countIssues(query, userId, sqlSession);
 
-      // 3. Apply pagination
-      Paging paging = Paging.create(query.pageSize(), query.pageIndex(), authorizedSortedIssues.size());
-      Set<Long> pagedIssueIds = pagedIssueIds(authorizedSortedIssues, paging);
+      // 2. Select the ids of the requested page. Issues are sorted and paginated by the database.
+      Paging paging = Paging.create(query.pageSize(), query.pageIndex(), Math.min(total, query.maxResults()));
+      Set<Long> pagedIssueIds = pagedIssueIds(query, userId, paging, sqlSession);
 
-      // 4. Load issues and their related data (rules, components, projects, comments, action plans, ...) and sort then again
+      // 3. Load issues and their related data (rules, components, projects, comments, action plans, ...) and sort them again
       List<IssueDto> pagedIssues = issueDao.selectByIds(pagedIssueIds, sqlSession);
-      List<IssueDto> pagedSortedIssues = sort(pagedIssues, query, authorizedIssues.size());
+      List<IssueDto> pagedSortedIssues = new IssuesFinderSort(pagedIssues, query).sort();
 
       Map<String, DefaultIssue> issuesByKey = newHashMap();
       List<Issue> issues = newArrayList();
@@ -144,7 +144,7 @@ public class DefaultIssueFinder implements IssueFinder {
       }
 
       return new DefaultIssueQueryResult(issues)
-        .setMaxResultsReached(authorizedIssues.size() == query.maxResults())
+        .setMaxResultsReached(total >= query.maxResults())
         .addRules(findRules(ruleIds))
         .addComponents(findComponents(componentIds))
         .addProjects(findProjects(projectIds))
@@ -156,23 +156,13 @@ public class DefaultIssueFinder implements IssueFinder {
     }
   }
 
-  private List<IssueDto> sort(List<IssueDto> issues, IssueQuery query, int allIssuesSize) {
-    if (allIssuesSize < query.maxResults()) {
-      return new IssuesFinderSort(issues, query).sort();
-    }
-    return issues;
-  }
-
-  private Set<Long> pagedIssueIds(Collection<IssueDto> issues, Paging paging) {
+  private Set<Long> pagedIssueIds(IssueQuery query, @Nullable Integer userId, Paging paging, SqlSession sqlSession) {
     Set<Long> issueIds = Sets.newLinkedHashSet();
-    int index = 0;
-    for (IssueDto issue : issues) {
-      if (index >= paging.offset() && issueIds.size() < paging.pageSize()) {
+    int limit = Math.min(paging.pageSize(), paging.total() - paging.offset());
+    if (limit > 0) {
+      for (IssueDto issue : issueDao.selectIssues(query, userId, paging.offset(), limit, sqlSession)) {
         issueIds.add(issue.getId());
-      } else if (issueIds.size() >= paging.pageSize()) {
-        break;
       }
-      index++;
     }
     return issueIds;
   }
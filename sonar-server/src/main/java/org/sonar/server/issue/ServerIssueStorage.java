@@ -19,22 +19,45 @@
  */
 package org.sonar.server.issue;
 
+import com.google.common.collect.Sets;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.core.issue.db.IssueStorage;
+import org.sonar.core.persistence.DryRunCache;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
 import org.sonar.core.resource.ResourceDto;
 import org.sonar.core.resource.ResourceQuery;
 
+import java.util.Set;
+
 public class ServerIssueStorage extends IssueStorage implements ServerComponent {
 
   private final ResourceDao resourceDao;
+  private final DryRunCache dryRunCache;
 
-  public ServerIssueStorage(MyBatis mybatis, RuleFinder ruleFinder, ResourceDao resourceDao) {
+  public ServerIssueStorage(MyBatis mybatis, RuleFinder ruleFinder, ResourceDao resourceDao, DryRunCache dryRunCache) {
     super(mybatis, ruleFinder);
     this.resourceDao = resourceDao;
+    this.dryRunCache = dryRunCache;
+  }
+
+  @Override
+  public void save(Iterable<DefaultIssue> issues) {
+    super.save(issues);
+
+    // issues are copied into the databases of dry-run analysis
+    Set<String> componentKeys = Sets.newHashSet();
+    Set<Long> projectIds = Sets.newHashSet();
+    for (DefaultIssue issue : issues) {
+      if (componentKeys.add(issue.componentKey())) {
+        projectIds.add(projectId(issue));
+      }
+    }
+    for (Long projectId : projectIds) {
+      dryRunCache.reportResourceModification(projectId);
+    }
   }
 
   @Override
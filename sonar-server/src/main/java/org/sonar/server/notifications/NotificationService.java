@@ -21,6 +21,7 @@ package org.sonar.server.notifications;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,9 +40,13 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @since 2.10
@@ -52,6 +57,20 @@ import java.util.concurrent.TimeUnit;
     defaultValue = "60",
     name = "Delay of notifications, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_BATCH_SIZE,
+    defaultValue = "100",
+    name = "Number of notifications removed from queue in a single transaction",
+    description = "Notifications are removed from queue before being delivered, so up to this number of notifications are lost " +
+      "when the server stops abruptly. A greater value requires fewer requests to the database.",
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_THREADS,
+    defaultValue = "1",
+    name = "Number of threads delivering notifications through channels",
+    project = false,
     global = false)
 })
 public class NotificationService implements ServerComponent {
@@ -59,14 +78,23 @@ public class NotificationService implements ServerComponent {
   private static final Logger LOG = LoggerFactory.getLogger(NotificationService.class);
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  public static final String PROPERTY_THREADS = "sonar.notifications.threads";
 
   private static final TimeProfiler TIME_PROFILER = new TimeProfiler(LOG).setLevelToDebug();
 
   private final long delayInSeconds;
+  private final int batchSize;
+  private final int threads;
   private final DefaultNotificationManager manager;
   private final NotificationDispatcher[] dispatchers;
 
+  private final AtomicLong processedNotifications = new AtomicLong();
+  private volatile long queueSize = 0L;
+  private volatile long throughput = 0L;
+
   private ScheduledExecutorService executorService;
+  private ExecutorService deliveryService;
   private boolean stopping = false;
 
   /**
@@ -74,6 +102,8 @@ public class NotificationService implements ServerComponent {
    */
   public NotificationService(Settings settings, DefaultNotificationManager manager, NotificationDispatcher[] dispatchers) {
     delayInSeconds = settings.getLong(PROPERTY_DELAY);
+    batchSize = Math.max(1, settings.getInt(PROPERTY_BATCH_SIZE));
+    threads = Math.max(1, settings.getInt(PROPERTY_THREADS));
     this.manager = manager;
     this.dispatchers = dispatchers;
   }
@@ -87,6 +117,9 @@ public class NotificationService implements ServerComponent {
   }
 
   public void start() {
+    if (threads > 1) {
+      deliveryService = Executors.newFixedThreadPool(threads);
+    }
     executorService = Executors.newSingleThreadScheduledExecutor();
     executorService.scheduleWithFixedDelay(new Runnable() {
       public void run() {
@@ -101,6 +134,10 @@ public class NotificationService implements ServerComponent {
       stopping = true;
       executorService.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
+      if (deliveryService != null) {
+        deliveryService.shutdown();
+        deliveryService.awaitTermination(5, TimeUnit.SECONDS);
+      }
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
     }
@@ -110,20 +147,63 @@ public class NotificationService implements ServerComponent {
   @VisibleForTesting
   synchronized void processQueue() {
     TIME_PROFILER.start("Processing notifications queue");
+    long start = System.currentTimeMillis();
+    int count = 0;
 
-    NotificationQueueElement queueElement = manager.getFromQueue();
-    while (queueElement != null) {
-      deliver(queueElement.getNotification());
+    List<NotificationQueueElement> queueElements = manager.getFromQueue(batchSize);
+    // the rest of the queue is counted only when it holds more than one batch, so that a short queue costs no request
+    queueSize = queueElements.size() < batchSize ? queueElements.size() : (queueElements.size() + manager.countQueue());
+    while (!queueElements.isEmpty()) {
+      // notifications are already removed from queue, so the whole batch is delivered even when stopping
+      List<Future<?>> deliveries = Lists.newArrayList();
+      for (NotificationQueueElement queueElement : queueElements) {
+        deliver(queueElement.getNotification(), deliveries);
+      }
+      waitFor(deliveries);
+      count += queueElements.size();
+      processedNotifications.addAndGet(queueElements.size());
       if (stopping) {
         break;
       }
-      queueElement = manager.getFromQueue();
+      queueElements = manager.getFromQueue(batchSize);
     }
 
+    if (count > 0) {
+      long duration = Math.max(1L, System.currentTimeMillis() - start);
+      throughput = count * 1000L / duration;
+      LOG.debug("{} notifications processed in {} ms ({} per second, {} in queue at start)", new Object[] {count, duration, throughput, queueSize});
+    }
     TIME_PROFILER.stop();
   }
 
-  private void deliver(Notification notification) {
+  /**
+   * Number of notifications in queue when it was processed for the last time.
+   *
+   * @since 3.6
+   */
+  public long getQueueSize() {
+    return queueSize;
+  }
+
+  /**
+   * Number of notifications processed since the start of the server.
+   *
+   * @since 3.6
+   */
+  public long getProcessedNotifications() {
+    return processedNotifications.get();
+  }
+
+  /**
+   * Number of notifications processed per second, the last time that notifications were processed.
+   *
+   * @since 3.6
+   */
+  public long getThroughput() {
+    return throughput;
+  }
+
+  private void deliver(Notification notification, List<Future<?>> deliveries) {
     LOG.debug("Delivering notification " + notification);
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
@@ -145,25 +225,59 @@ public class NotificationService implements ServerComponent {
         LOG.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
       }
     }
-    dispatch(notification, recipients);
+    dispatch(notification, recipients, deliveries);
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients, List<Future<?>> deliveries) {
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
       String username = entry.getKey();
       Collection<NotificationChannel> userChannels = entry.getValue();
       LOG.debug("For user {} via {}", username, userChannels);
       for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+        Delivery delivery = new Delivery(notification, username, channel);
+        if (deliveryService == null) {
+          delivery.run();
+        } else {
+          deliveries.add(deliveryService.submit(delivery));
         }
       }
     }
   }
 
+  private void waitFor(List<Future<?>> deliveries) {
+    for (Future<?> delivery : deliveries) {
+      try {
+        delivery.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        LOG.warn("Unable to deliver notification", e);
+      }
+    }
+  }
+
+  private static class Delivery implements Runnable {
+    private final Notification notification;
+    private final String username;
+    private final NotificationChannel channel;
+
+    Delivery(Notification notification, String username, NotificationChannel channel) {
+      this.notification = notification;
+      this.username = username;
+      this.channel = channel;
+    }
+
+    public void run() {
+      try {
+        channel.deliver(notification, username);
+      } catch (Exception e) {
+        // catch all exceptions in order to deliver via other channels
+        LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+      }
+    }
+  }
+
   @VisibleForTesting
   protected List<NotificationDispatcher> getDispatchers() {
     return Arrays.asList(dispatchers);
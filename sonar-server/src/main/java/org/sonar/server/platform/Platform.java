@@ -53,7 +53,6 @@ import org.sonar.core.persistence.*;
 import org.sonar.core.purge.PurgeProfiler;
 import org.sonar.core.qualitymodel.DefaultModelFinder;
 import org.sonar.core.resource.DefaultResourcePermissions;
-import org.sonar.core.rule.DefaultRuleFinder;
 import org.sonar.core.source.HtmlSourceDecorator;
 import org.sonar.core.test.TestPlanPerspectiveLoader;
 import org.sonar.core.test.TestablePerspectiveLoader;
@@ -77,6 +76,7 @@ import org.sonar.server.notifications.NotificationCenter;
 import org.sonar.server.notifications.NotificationService;
 import org.sonar.server.plugins.*;
 import org.sonar.server.qualitymodel.DefaultModelManager;
+import org.sonar.server.rule.CachedRuleFinder;
 import org.sonar.server.rule.RubyRuleService;
 import org.sonar.server.rules.ProfilesConsole;
 import org.sonar.server.rules.RulesConsole;
@@ -181,6 +181,7 @@ public final class Platform {
     rootContainer.addSingleton(I18nManager.class);
     rootContainer.addSingleton(RuleI18nManager.class);
     rootContainer.addSingleton(GwtI18n.class);
+    rootContainer.addSingleton(DryRunCache.class);
     rootContainer.addSingleton(DryRunDatabaseFactory.class);
     rootContainer.addSingleton(SemaphoreUpdater.class);
     rootContainer.addSingleton(SemaphoresImpl.class);
@@ -234,7 +235,7 @@ public final class Platform {
     servicesContainer.addSingleton(XMLProfileSerializer.class);
     servicesContainer.addSingleton(AnnotationRuleParser.class);
     servicesContainer.addSingleton(XMLRuleParser.class);
-    servicesContainer.addSingleton(DefaultRuleFinder.class);
+    servicesContainer.addSingleton(CachedRuleFinder.class);
     servicesContainer.addSingleton(DefaultMetricFinder.class);
     servicesContainer.addSingleton(ProfilesConsole.class);
     servicesContainer.addSingleton(RulesConsole.class);
@@ -244,7 +245,6 @@ public final class Platform {
     servicesContainer.addSingleton(MeasureFilterFactory.class);
     servicesContainer.addSingleton(MeasureFilterExecutor.class);
     servicesContainer.addSingleton(MeasureFilterEngine.class);
-    servicesContainer.addSingleton(DryRunDatabaseFactory.class);
     servicesContainer.addSingleton(DefaultResourcePermissions.class);
     servicesContainer.addSingleton(Periods.class);
 
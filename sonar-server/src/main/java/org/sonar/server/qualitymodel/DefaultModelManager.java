@@ -27,6 +27,7 @@ import org.sonar.api.qualitymodel.Model;
 import org.sonar.api.qualitymodel.ModelDefinition;
 import org.sonar.api.utils.Logs;
 import org.sonar.api.utils.SonarException;
+import org.sonar.core.persistence.DryRunCache;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import javax.persistence.Query;
@@ -35,18 +36,19 @@ public final class DefaultModelManager implements ServerComponent, ModelManager
 
   private ModelDefinition[] definitions;
   private DatabaseSessionFactory sessionFactory;
+  private DryRunCache dryRunCache;
 
-  public DefaultModelManager(DatabaseSessionFactory sessionFactory, ModelDefinition[] definitions) {
+  public DefaultModelManager(DatabaseSessionFactory sessionFactory, DryRunCache dryRunCache, ModelDefinition[] definitions) {
     this.sessionFactory = sessionFactory;
+    this.dryRunCache = dryRunCache;
     this.definitions = definitions;
   }
 
   /**
    * This constructor is used when there are no templates
    */
-  public DefaultModelManager(DatabaseSessionFactory sessionFactory) {
-    this.sessionFactory = sessionFactory;
-    this.definitions = new ModelDefinition[0];
+  public DefaultModelManager(DatabaseSessionFactory sessionFactory, DryRunCache dryRunCache) {
+    this(sessionFactory, dryRunCache, new ModelDefinition[0]);
   }
 
   /**
@@ -88,6 +90,8 @@ public final class DefaultModelManager implements ServerComponent, ModelManager
       delete(session, model.getName());
       model = insert(session, model);
       session.commit();
+      // quality models are copied into the databases of dry-run analysis
+      dryRunCache.reportGlobalModification();
       return model;
 
     } catch (RuntimeException e) {
@@ -0,0 +1,160 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.rule;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.rules.Rule;
+import org.sonar.core.rule.DefaultRuleFinder;
+import org.sonar.jpa.session.DatabaseSessionFactory;
+
+import javax.annotation.CheckForNull;
+import javax.persistence.EntityManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rule finder of the server. Rules are loaded at once and kept in an immutable snapshot which is shared by
+ * request threads. The snapshot is replaced when rules are registered at startup or edited from the web application.
+ *
+ * @since 3.6
+ */
+public class CachedRuleFinder extends DefaultRuleFinder {
+
+  private final DatabaseSessionFactory sessionFactory;
+  private volatile Rules rules;
+
+  public CachedRuleFinder(DatabaseSessionFactory sessionFactory) {
+    super(sessionFactory);
+    this.sessionFactory = sessionFactory;
+  }
+
+  @Override
+  @CheckForNull
+  public Rule findById(int ruleId) {
+    Rule rule = rules().byId.get(ruleId);
+    if (rule == null) {
+      rule = doFindById(ruleId);
+      if (rule != null) {
+        reload();
+      }
+    }
+    return rule == null || Rule.STATUS_REMOVED.equals(rule.getStatus()) ? null : rule;
+  }
+
+  @Override
+  public Collection<Rule> findByIds(Collection<Integer> ruleIds) {
+    if (ruleIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Map<Integer, Rule> byId = rules().byId;
+    List<Rule> result = Lists.newArrayListWithCapacity(ruleIds.size());
+    for (Integer ruleId : ruleIds) {
+      Rule rule = byId.get(ruleId);
+      if (rule == null) {
+        // unknown rule, for example created since the last reload
+        return super.findByIds(ruleIds);
+      }
+      result.add(rule);
+    }
+    return result;
+  }
+
+  @Override
+  @CheckForNull
+  public Rule findByKey(String repositoryKey, String key) {
+    Map<String, Rule> repository = rules().byKey.get(repositoryKey);
+    Rule rule = repository != null ? repository.get(key) : null;
+    if (rule == null) {
+      rule = doFindByKey(repositoryKey, key);
+      if (rule != null) {
+        reload();
+      }
+    }
+    return rule;
+  }
+
+  /**
+   * Loads the rules from database and atomically replaces the current snapshot. Lookups executed
+   * concurrently keep on using the previous snapshot until the new one is ready.
+   */
+  public synchronized void reload() {
+    rules = load();
+  }
+
+  private Rules rules() {
+    Rules result = rules;
+    if (result == null) {
+      synchronized (this) {
+        result = rules;
+        if (result == null) {
+          result = load();
+          rules = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Rules are loaded by a dedicated entity manager so that they are detached from the session of the current
+   * request and can be safely shared.
+   */
+  private Rules load() {
+    EntityManager entityManager = sessionFactory.getSession().getEntityManager().getEntityManagerFactory().createEntityManager();
+    try {
+      List<Rule> all = entityManager
+          .createQuery("SELECT DISTINCT r FROM " + Rule.class.getSimpleName() + " r LEFT JOIN FETCH r.params")
+          .getResultList();
+      return new Rules(all);
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  private static final class Rules {
+    private final Map<Integer, Rule> byId;
+    private final Map<String, Map<String, Rule>> byKey;
+
+    private Rules(List<Rule> all) {
+      Map<Integer, Rule> rulesById = Maps.newHashMap();
+      Map<String, Map<String, Rule>> rulesByKey = Maps.newHashMap();
+      for (Rule rule : all) {
+        rulesById.put(rule.getId(), rule);
+        if (!Rule.STATUS_REMOVED.equals(rule.getStatus())) {
+          Map<String, Rule> repository = rulesByKey.get(rule.getRepositoryKey());
+          if (repository == null) {
+            repository = Maps.newHashMap();
+            rulesByKey.put(rule.getRepositoryKey(), repository);
+          }
+          repository.put(rule.getKey(), rule);
+        }
+      }
+      for (Map.Entry<String, Map<String, Rule>> entry : rulesByKey.entrySet()) {
+        entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+      }
+      this.byId = Collections.unmodifiableMap(rulesById);
+      this.byKey = Collections.unmodifiableMap(rulesByKey);
+    }
+  }
+}
@@ -31,9 +31,11 @@ import org.sonar.server.user.UserSession;
 public class RubyRuleService implements ServerComponent, Startable {
 
   private final RuleI18nManager i18n;
+  private final CachedRuleFinder ruleFinder;
 
-  public RubyRuleService(RuleI18nManager i18n) {
+  public RubyRuleService(RuleI18nManager i18n, CachedRuleFinder ruleFinder) {
     this.i18n = i18n;
+    this.ruleFinder = ruleFinder;
   }
 
   public String ruleL10nName(Rule rule) {
@@ -52,6 +54,13 @@ public class RubyRuleService implements ServerComponent, Startable {
     return desc;
   }
 
+  /**
+   * To be called when rules are created, updated or removed from the web application.
+   */
+  public void reloadRules() {
+    ruleFinder.reload();
+  }
+
   @Override
   public void start() {
     // used to force pico to instantiate the singleton at startup
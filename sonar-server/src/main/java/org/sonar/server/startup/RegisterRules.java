@@ -39,6 +39,7 @@ import org.sonar.api.utils.TimeProfiler;
 import org.sonar.core.i18n.RuleI18nManager;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 import org.sonar.server.configuration.ProfilesManager;
+import org.sonar.server.rule.CachedRuleFinder;
 
 import java.util.Collection;
 import java.util.Date;
@@ -57,16 +58,19 @@ public final class RegisterRules {
   private final ProfilesManager profilesManager;
   private final List<RuleRepository> repositories;
   private final RuleI18nManager ruleI18nManager;
+  private final CachedRuleFinder ruleFinder;
 
-  public RegisterRules(DatabaseSessionFactory sessionFactory, RuleRepository[] repos, RuleI18nManager ruleI18nManager, ProfilesManager profilesManager) {
+  public RegisterRules(DatabaseSessionFactory sessionFactory, RuleRepository[] repos, RuleI18nManager ruleI18nManager, ProfilesManager profilesManager,
+                       CachedRuleFinder ruleFinder) {
     this.sessionFactory = sessionFactory;
     this.profilesManager = profilesManager;
     this.repositories = newArrayList(repos);
     this.ruleI18nManager = ruleI18nManager;
+    this.ruleFinder = ruleFinder;
   }
 
-  public RegisterRules(DatabaseSessionFactory sessionFactory, RuleI18nManager ruleI18nManager, ProfilesManager profilesManager) {
-    this(sessionFactory, new RuleRepository[0], ruleI18nManager, profilesManager);
+  public RegisterRules(DatabaseSessionFactory sessionFactory, RuleI18nManager ruleI18nManager, ProfilesManager profilesManager, CachedRuleFinder ruleFinder) {
+    this(sessionFactory, new RuleRepository[0], ruleI18nManager, profilesManager, ruleFinder);
   }
 
   public void start() {
@@ -80,6 +84,7 @@ public final class RegisterRules {
     disableDeprecatedUserRules(profiler, existingRules, session);
 
     session.commit();
+    ruleFinder.reload();
 
     notifyForRemovedRules(existingRules);
   }
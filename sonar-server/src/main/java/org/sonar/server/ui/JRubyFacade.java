@@ -47,6 +47,7 @@ import org.sonar.core.measure.MeasureFilterEngine;
 import org.sonar.core.measure.MeasureFilterResult;
 import org.sonar.core.persistence.Database;
 import org.sonar.core.persistence.DatabaseMigrator;
+import org.sonar.core.persistence.DryRunCache;
 import org.sonar.core.persistence.DryRunDatabaseFactory;
 import org.sonar.core.purge.PurgeDao;
 import org.sonar.core.resource.ResourceIndexerDao;
@@ -259,7 +260,9 @@ public final class JRubyFacade {
   }
 
   public ValidationMessages restoreProfile(String xmlBackup, boolean deleteExisting) {
-    return get(ProfilesConsole.class).restoreProfile(xmlBackup, deleteExisting);
+    ValidationMessages messages = get(ProfilesConsole.class).restoreProfile(xmlBackup, deleteExisting);
+    reportGlobalModification();
+    return messages;
   }
 
   public List<ProfileExporter> getProfileExportersForLanguage(String language) {
@@ -287,31 +290,39 @@ public final class JRubyFacade {
 
   public void copyProfile(long profileId, String newProfileName) {
     getProfilesManager().copyProfile((int) profileId, newProfileName);
+    reportGlobalModification();
   }
 
   public ValidationMessages changeParentProfile(int profileId, String parentName, String userName) {
-    return getProfilesManager().changeParentProfile(profileId, parentName, userName);
+    ValidationMessages messages = getProfilesManager().changeParentProfile(profileId, parentName, userName);
+    reportGlobalModification();
+    return messages;
   }
 
   public void ruleActivated(int parentProfileId, int activeRuleId, String userName) {
     getProfilesManager().activated(parentProfileId, activeRuleId, userName);
+    reportGlobalModification();
   }
 
   public void ruleParamChanged(int parentProfileId, int activeRuleId, String paramKey, String oldValue, String newValue, String userName) {
     getProfilesManager().ruleParamChanged(parentProfileId, activeRuleId, paramKey, oldValue, newValue, userName);
+    reportGlobalModification();
   }
 
   public void ruleSeverityChanged(int parentProfileId, int activeRuleId, int oldSeverityId, int newSeverityId, String userName) {
     getProfilesManager().ruleSeverityChanged(parentProfileId, activeRuleId, RulePriority.values()[oldSeverityId],
       RulePriority.values()[newSeverityId], userName);
+    reportGlobalModification();
   }
 
   public void ruleDeactivated(int parentProfileId, int deactivatedRuleId, String userName) {
     getProfilesManager().deactivated(parentProfileId, deactivatedRuleId, userName);
+    reportGlobalModification();
   }
 
   public void revertRule(int profileId, int activeRuleId, String userName) {
     getProfilesManager().revert(profileId, activeRuleId, userName);
+    reportGlobalModification();
   }
 
   public List<Footer> getWebFooters() {
@@ -484,6 +495,17 @@ public final class JRubyFacade {
     return get(DryRunDatabaseFactory.class).createDatabaseForDryRun(projectId);
   }
 
+  public String getDatabaseHashForDryRun(@Nullable Long projectId) {
+    return get(DryRunDatabaseFactory.class).getDatabaseHashForDryRun(projectId);
+  }
+
+  /**
+   * Rules or profiles have been changed, so the databases of dry-run analysis must be regenerated.
+   */
+  public void reportGlobalModification() {
+    get(DryRunCache.class).reportGlobalModification();
+  }
+
   public String getPeriodLabel(int periodIndex) {
     return get(Periods.class).label(periodIndex);
   }
@@ -84,6 +84,7 @@ class AlertsController < ApplicationController
     @alert = @profile.alerts.build(params[:alert])
 
     if @alert.save
+      java_facade.reportGlobalModification()
       flash[:notice] = message('alerts.alert_created')
       render :text => 'ok', :status => 200
     else
@@ -109,6 +110,7 @@ class AlertsController < ApplicationController
     alert = @alerts.find(params[:id])
 
     if alert.update_attributes(params[:alert])
+      java_facade.reportGlobalModification()
       flash[:notice] = message('alerts.alert_updated')
       render :text => 'ok', :status => 200
     else
@@ -130,6 +132,7 @@ class AlertsController < ApplicationController
     @profile = Profile.find(params[:profile_id])
     @alert = @profile.alerts.find(params[:id])
     @alert.destroy
+    java_facade.reportGlobalModification()
     flash[:notice] = message('alerts.alert_deleted')
     redirect_to(:action => 'index', :id=>@profile.id)
   end
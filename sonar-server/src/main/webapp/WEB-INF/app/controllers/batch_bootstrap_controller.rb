@@ -32,6 +32,13 @@ class BatchBootstrapController < Api::ApiController
     send_data String.from_java_bytes(db_content)
   end
 
+  # GET /batch_bootstrap/db_hash?project=<key or id>
+  # Since 3.6
+  def db_hash
+    project = load_project()
+    render :text => java_facade.getDatabaseHashForDryRun(project ? project.id : nil)
+  end
+
   # GET /batch_bootstrap/properties?[project=<key or id>]
   def properties
     json_properties=Property.find(:all, :conditions => ['user_id is null and resource_id is null']).map { |property| to_json_property(property) }
@@ -52,6 +52,7 @@ class ManualRulesController < ApplicationController
         # Create rule
         rule=Rule.find_or_create_manual_rule(params[:name], true, {:description => params[:description]})
       end
+      Internal.rules.reloadRules()
     rescue Exception => e
       flash[:error]= e.message
     end
@@ -63,7 +64,9 @@ class ManualRulesController < ApplicationController
     rule=Rule.manual_rule(params['id'].to_i)
     bad_request('Missing rule id') unless rule
     rule.status=Rule::STATUS_REMOVED
-    unless rule.save
+    if rule.save
+      Internal.rules.reloadRules()
+    else
       flash[:error]=rule.errors.to_s
     end
     redirect_to :action => 'index'
@@ -60,6 +60,7 @@ class ProfilesController < ApplicationController
 
     flash_profile(profile)
     if ok
+      java_facade.reportGlobalModification()
       flash[:notice]=message('quality_profiles.profile_x_created', :params => profile.name)
     elsif profile.id
       Profile.destroy(profile.id)
@@ -78,6 +79,7 @@ class ProfilesController < ApplicationController
     @profile = Profile.find(params[:id])
     if @profile && @profile.deletable?
       @profile.destroy
+      java_facade.reportGlobalModification()
     end
     redirect_to(:controller => 'profiles', :action => 'index')
   end
@@ -91,6 +93,7 @@ class ProfilesController < ApplicationController
 
     profile = Profile.find(params[:id])
     profile.set_as_default
+    java_facade.reportGlobalModification()
     redirect_to :action => 'index'
   end
 
@@ -326,6 +329,7 @@ class ProfilesController < ApplicationController
     @profile = Profile.find(params[:id])
 
     if @profile.rename(params[:name]).errors.empty?
+      java_facade.reportGlobalModification()
       render :text => 'ok', :status => 200
     else
       render :partial => 'profiles/rename_form', :status => 400
@@ -185,6 +185,7 @@ class RulesConfigurationController < ApplicationController
     end
 
     if rule.save
+      Internal.rules.reloadRules()
       redirect_to :action => 'index', :id => profile.id, :searchtext => rule.name, :rule_activation => 'INACTIVE', "plugins[]" => rule.plugin_name
 
     else
@@ -234,6 +235,8 @@ class RulesConfigurationController < ApplicationController
         parameter.save
       end
       if rule.save
+        Internal.rules.reloadRules()
+        java_facade.reportGlobalModification()
         redirect_to :action => 'index', :id => params[:id], :searchtext => rule.name, :rule_activation => '', "plugins[]" => rule.plugin_name
       else
         flash[:error]=message('rules_configuration.rule_not_valid_message_x', :params => rule.errors.full_messages.join('<br/>'))
@@ -263,6 +266,8 @@ class RulesConfigurationController < ApplicationController
       # it's mandatory to execute 'destroy_all' but not 'delete_all' because active_rule_parameters must
       # also be destroyed in cascade.
       ActiveRule.destroy_all("rule_id=#{rule.id}")
+      Internal.rules.reloadRules()
+      java_facade.reportGlobalModification()
       flash[:notice]=message('rules_configuration.rule_deleted')
     else
       flash[:error]=message('rules_configuration.unknown_rule')
@@ -73,6 +73,9 @@ class Server
     add_property(sonar_info, 'Automatic User Creation') {sonar_property(org.sonar.api.CoreProperties.CORE_AUTHENTICATOR_CREATE_USERS)}
     add_property(sonar_info, 'Allow Users to Sign Up') {sonar_property(org.sonar.api.CoreProperties.CORE_ALLOW_USERS_TO_SIGNUP_PROPERTY)}
     add_property(sonar_info, 'Force Authentication') {sonar_property(org.sonar.api.CoreProperties.CORE_FORCE_AUTHENTICATION_PROPERTY)}
+    add_property(sonar_info, 'Notifications in Queue (at last processing)') {notification_service.getQueueSize()}
+    add_property(sonar_info, 'Processed Notifications') {notification_service.getProcessedNotifications()}
+    add_property(sonar_info, 'Notifications Throughput (per second, at last processing)') {notification_service.getThroughput()}
     sonar_info
   end
   
@@ -120,6 +123,10 @@ class Server
     java.text.SimpleDateFormat.new("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(date)
   end
   
+  def notification_service
+    Java::OrgSonarServerUi::JRubyFacade.getInstance().getContainer().getComponentByType(Java::OrgSonarServerNotifications::NotificationService.java_class)
+  end
+
   def sonar_property(key)
     Java::OrgSonarServerUi::JRubyFacade.getInstance().getContainer().getComponentByType(Java::OrgApacheCommonsConfiguration::Configuration.java_class).getProperty(key)
   end
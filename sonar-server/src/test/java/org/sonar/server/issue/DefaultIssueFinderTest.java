@@ -82,10 +82,11 @@ public class DefaultIssueFinderTest {
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
+    when(issueDao.countIssues(eq(query), anyInt(), any(SqlSession.class))).thenReturn(2);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
-    verify(issueDao).selectIssues(eq(query), anyInt(), any(SqlSession.class));
+    verify(issueDao).selectIssues(eq(query), anyInt(), eq(0), eq(2), any(SqlSession.class));
 
     assertThat(results.issues()).hasSize(2);
     DefaultIssue issue = (DefaultIssue) results.issues().iterator().next();
@@ -109,8 +110,9 @@ public class DefaultIssueFinderTest {
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
-    when(issueDao.selectIssues(eq(query), anyInt(), any(SqlSession.class))).thenReturn(dtoList);
-    when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
+    when(issueDao.countIssues(eq(query), anyInt(), any(SqlSession.class))).thenReturn(2);
+    when(issueDao.selectIssues(eq(query), anyInt(), eq(0), eq(1), any(SqlSession.class))).thenReturn(newArrayList(issue1));
+    when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(newArrayList(issue1));
 
     IssueQueryResult results = finder.find(query);
     assertThat(results.paging().offset()).isEqualTo(0);
@@ -121,6 +123,20 @@ public class DefaultIssueFinderTest {
     verify(issueDao).selectByIds(eq(newHashSet(1L)), any(SqlSession.class));
   }
 
+  @Test
+  public void should_not_paginate_over_max_results() {
+    IssueQuery query = IssueQuery.builder().pageSize(100).pageIndex(100).build();
+    when(issueDao.countIssues(eq(query), anyInt(), any(SqlSession.class))).thenReturn(IssueQuery.MAX_RESULTS + 500);
+    when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(Collections.<IssueDto>emptyList());
+
+    IssueQueryResult results = finder.find(query);
+    assertThat(results.maxResultsReached()).isTrue();
+    assertThat(results.paging().total()).isEqualTo(IssueQuery.MAX_RESULTS);
+
+    // offset is 9900 and total is 10000
+    verify(issueDao).selectIssues(eq(query), anyInt(), eq(9900), eq(100), any(SqlSession.class));
+  }
+
   @Test
   public void should_find_by_key() {
     IssueDto issueDto = new IssueDto().setId(1L).setRuleId(1).setComponentId(1l).setRootComponentId(100l)
@@ -275,10 +291,11 @@ public class DefaultIssueFinderTest {
   @Test
   public void should_get_empty_result_when_no_issue() {
     IssueQuery query = IssueQuery.builder().build();
-    when(issueDao.selectIssues(eq(query), anyInt(), any(SqlSession.class))).thenReturn(Collections.<IssueDto>emptyList());
+    when(issueDao.countIssues(eq(query), anyInt(), any(SqlSession.class))).thenReturn(0);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(Collections.<IssueDto>emptyList());
 
     IssueQueryResult results = finder.find(query);
+    verify(issueDao, never()).selectIssues(eq(query), anyInt(), anyInt(), anyInt(), any(SqlSession.class));
     assertThat(results.issues()).isEmpty();
     assertThat(results.rules()).isEmpty();
     assertThat(results.components()).isEmpty();
@@ -27,20 +27,25 @@ import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RuleQuery;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.DryRunCache;
 import org.sonar.core.resource.ResourceDao;
 
 import java.util.Collection;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Fail.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class ServerIssueStorageTest extends AbstractDaoTestCase {
 
+  DryRunCache dryRunCache = mock(DryRunCache.class);
+
   @Test
   public void should_load_component_id_from_db() throws Exception {
     setupData("should_load_component_id_from_db");
 
-    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()));
+    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()), dryRunCache);
     long componentId = storage.componentId(new DefaultIssue().setComponentKey("struts:Action.java"));
 
     assertThat(componentId).isEqualTo(123);
@@ -50,7 +55,7 @@ public class ServerIssueStorageTest extends AbstractDaoTestCase {
   public void should_fail_to_load_component_id_if_unknown_component() throws Exception {
     setupData("should_fail_to_load_component_id_if_unknown_component");
 
-    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()));
+    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()), dryRunCache);
     try {
       storage.componentId(new DefaultIssue().setComponentKey("struts:Action.java"));
       fail();
@@ -63,7 +68,7 @@ public class ServerIssueStorageTest extends AbstractDaoTestCase {
   public void should_load_project_id_from_db() throws Exception {
     setupData("should_load_project_id_from_db");
 
-    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()));
+    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()), dryRunCache);
     long projectId = storage.projectId(new DefaultIssue().setComponentKey("struts:Action.java"));
 
     assertThat(projectId).isEqualTo(1);
@@ -73,7 +78,7 @@ public class ServerIssueStorageTest extends AbstractDaoTestCase {
   public void should_fail_to_load_project_id_if_unknown_component() throws Exception {
     setupData("should_fail_to_load_project_id_if_unknown_component");
 
-    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()));
+    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()), dryRunCache);
     try {
       storage.projectId(new DefaultIssue().setComponentKey("struts:Action.java"));
       fail();
@@ -82,6 +87,23 @@ public class ServerIssueStorageTest extends AbstractDaoTestCase {
     }
   }
 
+  @Test
+  public void should_invalidate_dry_run_cache_of_projects() throws Exception {
+    setupData("should_load_project_id_from_db");
+
+    ServerIssueStorage storage = new ServerIssueStorage(getMyBatis(), new FakeRuleFinder(), new ResourceDao(getMyBatis()), dryRunCache);
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ABCDE")
+      .setNew(true)
+      .setRuleKey(RuleKey.of("squid", "AvoidCycles"))
+      .setComponentKey("struts:Action.java")
+      .setSeverity("BLOCKER")
+      .setStatus("OPEN");
+    storage.save(issue);
+
+    verify(dryRunCache).reportResourceModification(1L);
+  }
+
   static class FakeRuleFinder implements RuleFinder {
 
     @Override
@@ -29,8 +29,12 @@ import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.core.notification.DefaultNotificationManager;
 import org.sonar.core.notification.NotificationQueueElement;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doAnswer;
@@ -61,7 +65,7 @@ public class NotificationServiceTest {
     when(commentOnReviewAssignedToMe.getKey()).thenReturn("comment on review assigned to me");
     when(commentOnReviewCreatedByMe.getKey()).thenReturn("comment on review created by me");
     when(queueElement.getNotification()).thenReturn(notification);
-    when(manager.getFromQueue()).thenReturn(queueElement).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(queueElement)).thenReturn(Collections.<NotificationQueueElement>emptyList());
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
@@ -176,6 +180,57 @@ public class NotificationServiceTest {
     verify(gtalkChannel, never()).deliver(any(Notification.class), anyString());
   }
 
+  @Test
+  public void should_deliver_batch_of_notifications_with_several_threads() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    Notification otherNotification = mock(Notification.class);
+    NotificationQueueElement otherQueueElement = mock(NotificationQueueElement.class);
+    when(otherQueueElement.getNotification()).thenReturn(otherNotification);
+    when(manager.getFromQueue(10)).thenReturn(Arrays.asList(queueElement, otherQueueElement)).thenReturn(Collections.<NotificationQueueElement>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, new NotificationChannel[] {emailChannel, gtalkChannel}))
+        .when(commentOnReviewAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+
+    Settings settings = new Settings()
+        .setProperty("sonar.notifications.delay", 1L)
+        .setProperty("sonar.notifications.batchSize", 10)
+        .setProperty("sonar.notifications.threads", 2);
+    service = new NotificationService(settings, manager, new NotificationDispatcher[] {commentOnReviewAssignedToMe});
+
+    service.start();
+    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(gtalkChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(otherNotification, ASSIGNEE_SIMON);
+    verify(gtalkChannel, timeout(2000)).deliver(otherNotification, ASSIGNEE_SIMON);
+    service.stop();
+  }
+
+  @Test
+  public void should_count_processed_notifications() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+
+    service.processQueue();
+
+    assertThat(service.getQueueSize()).isEqualTo(1L);
+    assertThat(service.getProcessedNotifications()).isEqualTo(1L);
+    // the queue holds less than a batch, so it's not counted
+    verify(manager, never()).countQueue();
+  }
+
+  @Test
+  public void should_count_queue_holding_several_batches() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    when(manager.getFromQueue(1)).thenReturn(Arrays.asList(queueElement)).thenReturn(Arrays.asList(queueElement))
+        .thenReturn(Collections.<NotificationQueueElement>emptyList());
+    when(manager.countQueue()).thenReturn(1L);
+    service = new NotificationService(new Settings().setProperty("sonar.notifications.batchSize", 1), manager,
+        new NotificationDispatcher[] {commentOnReviewAssignedToMe});
+
+    service.processQueue();
+
+    assertThat(service.getQueueSize()).isEqualTo(2L);
+    assertThat(service.getProcessedNotifications()).isEqualTo(2L);
+  }
+
   @Test
   public void shouldReturnDispatcherList() {
     setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
@@ -23,19 +23,24 @@ import org.junit.Test;
 import org.sonar.api.qualitymodel.Characteristic;
 import org.sonar.api.qualitymodel.Model;
 import org.sonar.api.qualitymodel.ModelDefinition;
+import org.sonar.core.persistence.DryRunCache;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class DefaultModelManagerTest extends AbstractDbUnitTestCase {
 
+  DryRunCache dryRunCache = mock(DryRunCache.class);
+
   @Test
   public void reset() {
     setupData("shared");
-    DefaultModelManager manager = new DefaultModelManager(getSessionFactory());
+    DefaultModelManager manager = new DefaultModelManager(getSessionFactory(), dryRunCache);
 
     Model model = Model.createByName("M1");
     Characteristic c1 = model.createCharacteristicByName("NEWM1C1");
@@ -50,12 +55,13 @@ public class DefaultModelManagerTest extends AbstractDbUnitTestCase {
     assertThat(model.getCharacteristics().size(), is(3));
     assertThat(model.getCharacteristicByName("NEWM1C1A").getParents().size(), is(1));
     assertNotNull(model.getCharacteristicByName("NEWM1C1A").getParent("NEWM1C1"));
+    verify(dryRunCache).reportGlobalModification();
   }
 
   @Test
   public void noDefinitionsToRegister() {
     setupData("shared");
-    ModelManager provider = new DefaultModelManager(getSessionFactory());
+    ModelManager provider = new DefaultModelManager(getSessionFactory(), dryRunCache);
     provider.registerDefinitions();
 
     // same state
@@ -71,7 +77,7 @@ public class DefaultModelManagerTest extends AbstractDbUnitTestCase {
     ModelDefinition newDefinition = new FakeDefinition("NEWMODEL", Model.create());
 
     ModelDefinition[] definitions = new ModelDefinition[]{existingDefinition, newDefinition};
-    ModelManager manager = new DefaultModelManager(getSessionFactory(), definitions);
+    ModelManager manager = new DefaultModelManager(getSessionFactory(), dryRunCache, definitions);
     manager.registerDefinitions();
 
     List<Model> models = getSession().getResults(Model.class);
@@ -87,7 +93,7 @@ public class DefaultModelManagerTest extends AbstractDbUnitTestCase {
 
     setupData("shared");
     ModelDefinition def = new FakeDefinition("with-properties", model);
-    ModelManager manager = new DefaultModelManager(getSessionFactory(), new ModelDefinition[]{def});
+    ModelManager manager = new DefaultModelManager(getSessionFactory(), dryRunCache, new ModelDefinition[]{def});
     manager.registerDefinitions();
     checkTables("registerModelProperties", "quality_models", "characteristics", "characteristic_properties");
   }
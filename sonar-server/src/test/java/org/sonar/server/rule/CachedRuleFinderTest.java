@@ -0,0 +1,148 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.rule;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.rules.Rule;
+import org.sonar.jpa.test.AbstractDbUnitTestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CachedRuleFinderTest extends AbstractDbUnitTestCase {
+
+  private CachedRuleFinder finder;
+
+  @Before
+  public void setUp() {
+    setupData("shared");
+    finder = new CachedRuleFinder(getSessionFactory());
+  }
+
+  @Test
+  public void should_find_by_id() {
+    Rule rule = finder.findById(1);
+    assertThat(rule.getKey()).isEqualTo("com.puppycrawl.tools.checkstyle.checks.header.HeaderCheck");
+    assertThat(rule.getParams()).hasSize(1);
+    assertThat(rule.getParam("headerFile")).isNotNull();
+  }
+
+  @Test
+  public void should_not_find_removed_rule() {
+    assertThat(finder.findById(2)).isNull();
+    assertThat(finder.findByKey("checkstyle", "DisabledCheck")).isNull();
+  }
+
+  @Test
+  public void should_find_by_ids() {
+    // 2 is returned even its status is REMOVED
+    assertThat(finder.findByIds(newArrayList(2, 3))).hasSize(2);
+    assertThat(finder.findByIds(newArrayList(3, 999))).hasSize(1);
+  }
+
+  @Test
+  public void should_find_by_key() {
+    assertThat(finder.findByKey("pmd", "CallSuperFirst").getId()).isEqualTo(3);
+    assertThat(finder.findByKey("pmd", "unknown")).isNull();
+    assertThat(finder.findByKey("unknown", "CallSuperFirst")).isNull();
+  }
+
+  @Test
+  public void should_return_same_instances_until_reload() {
+    Rule rule = finder.findById(1);
+    assertThat(finder.findByKey("checkstyle", "com.puppycrawl.tools.checkstyle.checks.header.HeaderCheck")).isSameAs(rule);
+
+    finder.reload();
+
+    assertThat(finder.findById(1)).isNotSameAs(rule);
+  }
+
+  @Test
+  public void should_find_rule_created_after_loading() {
+    assertThat(finder.findByKey("pmd", "CallSuperFirst")).isNotNull();
+
+    Rule rule = Rule.create("pmd", "NewRule", "New Rule");
+    getSession().saveWithoutFlush(rule);
+    getSession().commit();
+
+    assertThat(finder.findByKey("pmd", "NewRule")).isNotNull();
+    assertThat(finder.findById(rule.getId())).isNotNull();
+  }
+
+  @Test
+  public void should_see_changes_after_reload() {
+    assertThat(finder.findById(3).getName()).isEqualTo("Call Super First");
+
+    Rule rule = getSession().getSingleResult(Rule.class, "id", 3);
+    rule.setName("Call super first");
+    rule.setStatus(Rule.STATUS_DEPRECATED);
+    getSession().commit();
+    assertThat(finder.findById(3).getName()).isEqualTo("Call Super First");
+
+    finder.reload();
+    assertThat(finder.findById(3).getName()).isEqualTo("Call super first");
+    assertThat(finder.findByKey("pmd", "CallSuperFirst").getStatus()).isEqualTo(Rule.STATUS_DEPRECATED);
+  }
+
+  @Test
+  public void should_support_concurrent_lookups_and_reloads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    try {
+      Future<Integer> reloads = executor.submit(new Callable<Integer>() {
+        public Integer call() {
+          for (int i = 0; i < 20; i++) {
+            finder.reload();
+          }
+          return 20;
+        }
+      });
+      Callable<Integer> lookups = new Callable<Integer>() {
+        public Integer call() {
+          int found = 0;
+          for (int i = 0; i < 2000; i++) {
+            Rule rule = finder.findByKey("checkstyle", "com.puppycrawl.tools.checkstyle.checks.header.HeaderCheck");
+            if (rule != null && rule.getParams().size() == 1 && finder.findById(3) != null && finder.findById(2) == null) {
+              found++;
+            }
+          }
+          return found;
+        }
+      };
+      Future[] results = new Future[4];
+      for (int i = 0; i < results.length; i++) {
+        results[i] = executor.submit(lookups);
+      }
+
+      assertThat(reloads.get(1, TimeUnit.MINUTES)).isEqualTo(20);
+      for (Future result : results) {
+        assertThat(result.get(1, TimeUnit.MINUTES)).isEqualTo(2000);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
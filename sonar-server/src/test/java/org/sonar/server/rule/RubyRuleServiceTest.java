@@ -28,12 +28,14 @@ import java.util.Locale;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class RubyRuleServiceTest {
 
   RuleI18nManager i18n = mock(RuleI18nManager.class);
-  RubyRuleService facade = new RubyRuleService(i18n);
+  CachedRuleFinder ruleFinder = mock(CachedRuleFinder.class);
+  RubyRuleService facade = new RubyRuleService(i18n, ruleFinder);
 
   @Test
   public void should_get_localized_rule_name() {
@@ -75,6 +77,13 @@ public class RubyRuleServiceTest {
     assertThat(desc).isEqualTo("Cycles are evil");
   }
 
+  @Test
+  public void should_reload_rules() {
+    facade.reloadRules();
+
+    verify(ruleFinder).reload();
+  }
+
   @Test
   public void just_for_fun_and_coverage() throws Exception {
     facade.start();
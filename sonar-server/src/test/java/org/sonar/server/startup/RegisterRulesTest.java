@@ -32,6 +32,7 @@ import org.sonar.api.utils.SonarException;
 import org.sonar.core.i18n.RuleI18nManager;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 import org.sonar.server.configuration.ProfilesManager;
+import org.sonar.server.rule.CachedRuleFinder;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -58,11 +59,13 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
 
   private RegisterRules task;
   private ProfilesManager profilesManager;
+  private CachedRuleFinder ruleFinder;
 
   @Before
   public void init() {
     profilesManager = mock(ProfilesManager.class);
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new FakeRepository()}, null, profilesManager);
+    ruleFinder = mock(CachedRuleFinder.class);
+    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new FakeRepository()}, null, profilesManager, ruleFinder);
   }
 
   @Test
@@ -83,6 +86,14 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
     assertThat(first.getParams().size(), is(2));
   }
 
+  @Test
+  public void should_reload_rule_cache() {
+    setupData("shared");
+    task.start();
+
+    verify(ruleFinder).reload();
+  }
+
   @Test
   public void should_disable_deprecated_repositories() {
     setupData("shared");
@@ -239,7 +250,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
 
   @Test
   public void volume_testing() {
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new VolumeRepository()}, null, profilesManager);
+    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new VolumeRepository()}, null, profilesManager, ruleFinder);
     setupData("shared");
     task.start();
 
@@ -251,7 +262,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   @Test
   public void should_fail_with_rule_without_name() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager, ruleFinder);
     setupData("shared");
 
     // the rule has no name, it should fail
@@ -273,7 +284,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   public void should_fail_with_rule_with_blank_name() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
     when(ruleI18nManager.getName(anyString(), anyString(), any(Locale.class))).thenReturn("");
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager, ruleFinder);
     setupData("shared");
 
     // the rule has no name, it should fail
@@ -290,7 +301,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   public void should_fail_with_rule_without_description() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
     when(ruleI18nManager.getName(anyString(), anyString(), any(Locale.class))).thenReturn("Name");
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager, ruleFinder);
     setupData("shared");
 
     // the rule has no name, it should fail
@@ -311,7 +322,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   @Test
   public void should_fail_with_rule_without_name_in_bundle() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager, ruleFinder);
     setupData("shared");
 
     // the rule has no name, it should fail